@@ -0,0 +1,368 @@
+package aco;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.Objective;
+import cost.QueryAnalysis;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * This class implements ant colony optimization to find the optimal multi-replicas strategy. Each ant builds
+ * the column order of every replica position by position, choosing the next column with probability
+ * proportional to pheromone^alpha * desirability^beta. There is a pheromone matrix for each replica, indexed
+ * by column and position.
+ * Desirability of a column is the expected log reduction of rows to scan when a query meets the column,
+ * derived from its point selectivity, range selectivity and range frequency (QueryAnalysis.getRangeQueryNumber).
+ * While an ant places columns, the scanned fraction of each query is kept as a partial product of the prefix,
+ * so the cost of an order is ready when the order is complete.
+ * Ants of an iteration construct in parallel. After each iteration, pheromone evaporates and the best-so-far
+ * strategy reinforces the trails, bounded in [min pheromone, 1] as in MAX-MIN ant system.
+ */
+public class AntColony implements Optimizer {
+
+  private DataTable data;
+  private Query[] queries;
+  private SelectivityTable selectivityTable;
+
+  private int replicaNumber;
+  private boolean isNewMethod;
+
+  // parameters
+  private int antNumber;
+  private int maxIteration;
+  private int noImproveThreshold;
+  private double alpha;
+  private double beta;
+  private double evaporationRate;
+  private double minPheromone;
+  private int threadNumber = Runtime.getRuntime().availableProcessors();
+
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+
+  private double[][][] pheromone;
+  private double[] desirability;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // the solution
+  private int[][] bestOrders = null;
+  private double bestCost = Double.POSITIVE_INFINITY;
+  private MultiReplicas multiReplicas = null;
+  private BigDecimal optimalCost;
+  private List<Double> costHistory = new ArrayList<>();
+
+  /**
+   * Constructor, using constant values in Constant class
+   *
+   * @param dataTable info of the data table
+   * @param queries   workload
+   */
+  public AntColony(DataTable dataTable, Query[] queries) {
+    this(dataTable, queries, Constant.REPLICA_NUMBER, Constant.IS_NEW_METHOD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dataTable     info of the data table
+   * @param queries       workload
+   * @param replicaNumber number of replica
+   * @param isNewMethod   if use cask effect objective function or total cost
+   */
+  public AntColony(DataTable dataTable, Query[] queries, int replicaNumber, boolean isNewMethod) {
+    this.data = dataTable;
+    this.queries = queries;
+    this.replicaNumber = replicaNumber;
+    this.isNewMethod = isNewMethod;
+    this.antNumber = Constant.ACO_ANT_NUMBER;
+    this.maxIteration = Constant.ACO_MAX_ITERATION;
+    this.noImproveThreshold = Constant.ACO_NO_IMPROVE_THRESHOLD;
+    this.alpha = Constant.ACO_ALPHA;
+    this.beta = Constant.ACO_BETA;
+    this.evaporationRate = Constant.ACO_EVAPORATION_RATE;
+    this.minPheromone = Constant.ACO_MIN_PHEROMONE;
+  }
+
+  @Override
+  public AntColony withReplicaNumber(int n) {
+    this.replicaNumber = n;
+    return this;
+  }
+
+  @Override
+  public AntColony withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  public AntColony withAntNumber(int n) {
+    this.antNumber = n;
+    return this;
+  }
+
+  public AntColony withMaxIteration(int maxIteration) {
+    this.maxIteration = maxIteration;
+    return this;
+  }
+
+  /**
+   * Set the number of iterations without improvement, before terminating
+   *
+   * @param threshold customized threshold
+   * @return the ant colony instance
+   */
+  public AntColony withNoImproveThreshold(int threshold) {
+    this.noImproveThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Set the exponents of pheromone and desirability in the probability of choosing a column
+   *
+   * @param alpha exponent of pheromone
+   * @param beta  exponent of desirability
+   * @return the ant colony instance
+   */
+  public AntColony withExponents(double alpha, double beta) {
+    this.alpha = alpha;
+    this.beta = beta;
+    return this;
+  }
+
+  public AntColony withEvaporationRate(double rate) {
+    if (rate <= 0 || rate >= 1) throw new IllegalArgumentException();
+    this.evaporationRate = rate;
+    return this;
+  }
+
+  public AntColony withMinPheromone(double minPheromone) {
+    if (minPheromone <= 0 || minPheromone > 1) throw new IllegalArgumentException();
+    this.minPheromone = minPheromone;
+    return this;
+  }
+
+  /**
+   * Set the number of threads constructing ants, number of processors by default
+   *
+   * @param n number of threads
+   * @return the ant colony instance
+   */
+  public AntColony withThreadNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.threadNumber = n;
+    return this;
+  }
+
+  /**
+   * Evaluate strategies of ants by an objective instead of the cost matrix of the workload. Ants still choose
+   * columns by pheromone and desirability of the workload.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the ant colony instance
+   */
+  @Override
+  public AntColony withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /*
+   * Run the algorithm
+   * 1. initialize pheromone with 1, and desirability of each column
+   * 2. loop [not converge]
+   * 3.  | ants construct strategies in parallel
+   * 4.  | update global best
+   * 5.  | evaporate pheromone, and reinforce trails of the best strategy
+   * 6. end loop
+   * 7. return the best solution
+   */
+  public MultiReplicas optimal() {
+    selectivityTable = new SelectivityTable(data, queries);
+    initDesirability();
+    int colNum = data.getColNum();
+    pheromone = new double[replicaNumber][colNum][colNum];
+    for (double[][] matrix : pheromone)
+      for (double[] row : matrix)
+        Arrays.fill(row, 1);
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadNumber);
+    try {
+      List<Callable<Ant>> ants = new ArrayList<>();
+      for (int i = 0; i < antNumber; i++)
+        ants.add(() -> new Ant().construct());
+      int noImprove = 0;
+      // at least one iteration, to have a solution
+      for (int it = 0; it < maxIteration && noImprove < noImproveThreshold && (it == 0 || !runControl.isStopped());
+           it++) {
+        noImprove++;
+        for (Future<Ant> future : threadPool.invokeAll(ants)) {
+          Ant ant = future.get();
+          if (ant.cost < bestCost) {
+            bestCost = ant.cost;
+            bestOrders = ant.orders;
+            noImprove = 0;
+          }
+        }
+        if (noImprove == 0) runControl.offer(toMultiReplicas(bestOrders), bestCost, getName());
+        updatePheromone();
+        costHistory.add(bestCost);
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      threadPool.shutdown();
+    }
+
+    multiReplicas = toMultiReplicas(bestOrders);
+    if (objective != null) optimalCost = objective.cost(multiReplicas);
+    else optimalCost = isNewMethod
+            ? CostModel.cost(multiReplicas, queries)
+            : CostModel.totalCost(multiReplicas, queries);
+    return multiReplicas;
+  }
+
+  /**
+   * Desirability of a column is the expected reduction of log(rows to scan) by the column, for a query with
+   * a point predicate on it with probability (1 - f), and a range predicate with probability f, where f is the
+   * frequency of range queries on the column.
+   */
+  private void initDesirability() {
+    int colNum = data.getColNum();
+    int queryNum = selectivityTable.getQueryNum();
+    int[] rangeQueryNumber = QueryAnalysis.getRangeQueryNumber(queries);
+    desirability = new double[colNum];
+    for (int c = 0; c < colNum; c++) {
+      double pointLog = 0;
+      double rangeLog = 0;
+      for (int q = 0; q < queryNum; q++) {
+        double log = -Math.log(Math.max(selectivityTable.getSelectivity(q, c), Double.MIN_NORMAL));
+        if (selectivityTable.isRange(q, c)) rangeLog += log;
+        else pointLog += log;
+      }
+      double f = (double) rangeQueryNumber[c] / queryNum;
+      int pointNumber = queryNum - rangeQueryNumber[c];
+      desirability[c] = (pointNumber == 0 ? 0 : (1 - f) * pointLog / pointNumber)
+              + (rangeQueryNumber[c] == 0 ? 0 : f * rangeLog / rangeQueryNumber[c])
+              + Double.MIN_NORMAL;
+    }
+  }
+
+  /**
+   * Evaporate pheromone on all trails, and deposit on trails of the best strategy.
+   */
+  private void updatePheromone() {
+    for (int r = 0; r < replicaNumber; r++) {
+      for (double[] row : pheromone[r])
+        for (int p = 0; p < row.length; p++)
+          row[p] = Math.max(minPheromone, row[p] * (1 - evaporationRate));
+      for (int p = 0; p < bestOrders[r].length; p++) {
+        int c = bestOrders[r][p];
+        pheromone[r][c][p] = Math.min(1, pheromone[r][c][p] + evaporationRate);
+      }
+    }
+  }
+
+  private MultiReplicas toMultiReplicas(int[][] orders) {
+    MultiReplicas m = new MultiReplicas();
+    for (int[] order : orders) m.add(new Replica(data, order));
+    return m;
+  }
+
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  /**
+   * Get the optimal cost after running algorithm
+   *
+   * @return the optimal cost
+   */
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
+  }
+
+  /**
+   * Get the record history of best cost, one for each iteration.
+   *
+   * @return the record history
+   */
+  @Override
+  public List<Double> getHistory() {
+    return costHistory;
+  }
+
+  /**
+   * An ant, constructing column orders of all replicas, and the cost of its strategy.
+   */
+  private class Ant {
+    private int[][] orders = new int[replicaNumber][];
+    private double cost;
+
+    Ant construct() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int colNum = data.getColNum();
+      int queryNum = selectivityTable.getQueryNum();
+      double scale = selectivityTable.getRowNum() * Constant.COST_SCALE.doubleValue();
+      double[] weight = new double[colNum];
+      double[][] costMatrix = new double[replicaNumber][];
+      for (int r = 0; r < replicaNumber; r++) {
+        // scanned fraction of each query on the prefix, and whether its first range column is placed
+        double[] product = new double[queryNum];
+        boolean[] terminated = new boolean[queryNum];
+        Arrays.fill(product, 1);
+        boolean[] used = new boolean[colNum];
+        orders[r] = new int[colNum];
+        for (int p = 0; p < colNum; p++) {
+          double sum = 0;
+          for (int c = 0; c < colNum; c++) {
+            weight[c] = used[c] ? 0 : Math.pow(pheromone[r][c][p], alpha) * Math.pow(desirability[c], beta);
+            sum += weight[c];
+          }
+          double x = random.nextDouble() * sum;
+          int chosen = -1;
+          for (int c = 0; c < colNum; c++) {
+            if (used[c]) continue;
+            chosen = c;
+            x -= weight[c];
+            if (x < 0) break;
+          }
+          used[chosen] = true;
+          orders[r][p] = chosen;
+          for (int q = 0; q < queryNum; q++) {
+            if (terminated[q]) continue;
+            product[q] *= selectivityTable.getSelectivity(q, chosen);
+            terminated[q] = selectivityTable.isRange(q, chosen);
+          }
+        }
+        costMatrix[r] = new double[queryNum];
+        for (int q = 0; q < queryNum; q++) costMatrix[r][q] = product[q] * scale;
+      }
+      cost = objective == null
+              ? CostModel.cost(costMatrix, isNewMethod)
+              : objective.cost(toMultiReplicas(orders)).doubleValue();
+      runControl.countEvaluation();
+      return this;
+    }
+  }
+}
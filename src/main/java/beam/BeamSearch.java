@@ -0,0 +1,375 @@
+package beam;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.Objective;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+import searchall.DynamicProgramming;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * This class implements a deterministic beam search to find the optimal multi-replicas strategy. Column orders
+ * of all replicas grow jointly, one position at a time: at each depth every replica is extended by one column
+ * in turn, and after each extension only the best B partial strategies are kept.
+ * As in Replica.scanProbability, the scanned fraction of a query is a product over the prefix of an order,
+ * which is final once the prefix contains a range column of the query. A partial strategy is scored by its
+ * cask effect cost (or total cost) where a finished query counts with its exact cost, and an unfinished one
+ * with a lower bound of its cost over all completions of the prefix: the prefix product, times the
+ * selectivity of all remaining point columns, times the least selectivity of remaining range columns.
+ * Replicas are interchangeable, so a strategy is only kept if prefixes of replicas at the same depth are in
+ * lexicographic order. Children of partial strategies are expanded in parallel. Runtime is predictable,
+ * O(k^2 * R * B) expansions for k columns and R replicas, and beam width B trades quality for time.
+ */
+public class BeamSearch implements Optimizer {
+
+  private DataTable data;
+  private Query[] queries;
+  private SelectivityTable selectivityTable;
+
+  private int replicaNumber;
+  private boolean isNewMethod;
+
+  // parameters
+  private int beamWidth;
+  private int threadNumber = Runtime.getRuntime().availableProcessors();
+
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // the solution
+  private MultiReplicas multiReplicas = null;
+  private BigDecimal optimalCost;
+  private List<Double> costHistory = new ArrayList<>();
+
+  /**
+   * Constructor, using constant values in Constant class
+   *
+   * @param dataTable info of the data table
+   * @param queries   workload
+   */
+  public BeamSearch(DataTable dataTable, Query[] queries) {
+    this(dataTable, queries, Constant.REPLICA_NUMBER, Constant.IS_NEW_METHOD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dataTable     info of the data table
+   * @param queries       workload
+   * @param replicaNumber number of replica
+   * @param isNewMethod   if use cask effect objective function or total cost
+   */
+  public BeamSearch(DataTable dataTable, Query[] queries, int replicaNumber, boolean isNewMethod) {
+    this.data = dataTable;
+    this.queries = queries;
+    this.replicaNumber = replicaNumber;
+    this.isNewMethod = isNewMethod;
+    this.beamWidth = Constant.BEAM_WIDTH;
+  }
+
+  @Override
+  public BeamSearch withReplicaNumber(int n) {
+    this.replicaNumber = n;
+    return this;
+  }
+
+  @Override
+  public BeamSearch withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /**
+   * Set the number of partial strategies kept after each extension
+   *
+   * @param beamWidth the beam width
+   * @return the beam search instance
+   */
+  public BeamSearch withBeamWidth(int beamWidth) {
+    if (beamWidth <= 0) throw new IllegalArgumentException();
+    this.beamWidth = beamWidth;
+    return this;
+  }
+
+  /**
+   * Set the number of threads expanding partial strategies, number of processors by default
+   *
+   * @param n number of threads
+   * @return the beam search instance
+   */
+  public BeamSearch withThreadNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.threadNumber = n;
+    return this;
+  }
+
+  /**
+   * Choose the strategy by an objective instead of cask effect cost or total cost of the workload. Partial
+   * strategies are still scored by lower bounds of the workload, an objective has none for them, and every
+   * strategy of the last beam is completed and evaluated by the objective.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the beam search instance
+   */
+  @Override
+  public BeamSearch withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /*
+   * Run the algorithm
+   * 1. the beam contains the empty strategy
+   * 2. for each depth
+   * 3.  | for each replica
+   * 4.  |  | extend the replica of each strategy in the beam by each unused column, in parallel
+   * 5.  |  | keep the best B strategies as the beam
+   * 6.  | end for
+   * 7. end for
+   * 8. return the best strategy in the beam
+   * If it is stopped, each replica of the best partial strategy is completed by dynamic programming. With an
+   * objective, every strategy in the beam is completed, and the one of least cost by the objective is returned.
+   */
+  public MultiReplicas optimal() {
+    selectivityTable = new SelectivityTable(data, queries);
+    int colNum = data.getColNum();
+    List<Design> beam = new ArrayList<>();
+    beam.add(new Design());
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadNumber);
+    try {
+      search:
+      for (int depth = 0; depth < colNum; depth++) {
+        for (int r = 0; r < replicaNumber; r++) {
+          if (runControl.isStopped()) break search;
+          final int replica = r;
+          List<Callable<List<Design>>> tasks = new ArrayList<>();
+          for (Design design : beam)
+            tasks.add(() -> design.expand(replica));
+          List<Design> children = new ArrayList<>();
+          for (Future<List<Design>> future : threadPool.invokeAll(tasks))
+            children.addAll(future.get());
+          // stable sort, so that ties keep the order of expansion
+          children.sort(Comparator.comparingDouble(d -> d.score));
+          beam = new ArrayList<>(children.subList(0, Math.min(beamWidth, children.size())));
+          costHistory.add(beam.get(0).score);
+        }
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      threadPool.shutdown();
+    }
+
+    if (objective == null) {
+      multiReplicas = complete(beam.get(0));
+      optimalCost = isNewMethod
+              ? CostModel.cost(multiReplicas, queries)
+              : CostModel.totalCost(multiReplicas, queries);
+    } else {
+      multiReplicas = null;
+      for (Design design : beam) {
+        MultiReplicas m = complete(design);
+        BigDecimal cost = objective.cost(m);
+        runControl.countEvaluation();
+        if (multiReplicas == null || cost.compareTo(optimalCost) < 0) {
+          multiReplicas = m;
+          optimalCost = cost;
+        }
+      }
+    }
+    runControl.offer(multiReplicas, optimalCost.doubleValue(), getName());
+    return multiReplicas;
+  }
+
+  private MultiReplicas complete(Design design) {
+    MultiReplicas res = new MultiReplicas();
+    for (int r = 0; r < replicaNumber; r++) res.add(complete(design.orders[r], design.depth[r]));
+    return res;
+  }
+
+  /**
+   * Complete a prefix to a replica, by dynamic programming over the remaining columns, or in the original
+   * order if there are too many of them.
+   *
+   * @param order the order, whose first depth columns are the prefix
+   * @param depth length of the prefix
+   * @return the replica
+   */
+  private Replica complete(int[] order, int depth) {
+    int colNum = data.getColNum();
+    if (depth == colNum) return new Replica(data, order);
+    int[] prefix = Arrays.copyOf(order, depth);
+    if (colNum - depth <= Constant.DP_MAX_COLUMN_NUMBER)
+      return new DynamicProgramming(data, queries, selectivityTable).withPrefix(prefix).optimalReplica();
+    boolean[] used = new boolean[colNum];
+    for (int c : prefix) used[c] = true;
+    int[] res = Arrays.copyOf(prefix, colNum);
+    int p = depth;
+    for (int c = 0; c < colNum; c++)
+      if (!used[c]) res[p++] = c;
+    return new Replica(data, res);
+  }
+
+  /**
+   * Get the optimal cost after running algorithm
+   *
+   * @return the optimal cost
+   */
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
+  }
+
+  /**
+   * Get the record history of the best score in the beam, one for each extension.
+   *
+   * @return the record history
+   */
+  @Override
+  public List<Double> getHistory() {
+    return costHistory;
+  }
+
+  /**
+   * A partial strategy: prefixes of all replicas, the prefix product of each query on each replica, and the
+   * lower bound of each query on each replica.
+   */
+  private class Design {
+    private int[][] orders;
+    private int[] depth;
+    private double[][] product;
+    private boolean[][] terminated;
+    private double[][] bound;
+    private double score;
+
+    /**
+     * The empty strategy.
+     */
+    Design() {
+      int queryNum = selectivityTable.getQueryNum();
+      orders = new int[replicaNumber][data.getColNum()];
+      depth = new int[replicaNumber];
+      product = new double[replicaNumber][queryNum];
+      terminated = new boolean[replicaNumber][queryNum];
+      bound = new double[replicaNumber][];
+      for (int r = 0; r < replicaNumber; r++) {
+        Arrays.fill(product[r], 1);
+        bound[r] = lowerBound(r);
+      }
+      score = CostModel.cost(bound, isNewMethod);
+    }
+
+    /**
+     * A copy of the parent, sharing rows of unchanged replicas.
+     */
+    Design(Design parent) {
+      orders = parent.orders.clone();
+      depth = parent.depth.clone();
+      product = parent.product.clone();
+      terminated = parent.terminated.clone();
+      bound = parent.bound.clone();
+    }
+
+    /**
+     * Extend a replica by each unused column.
+     *
+     * @param r index of the replica
+     * @return the children strategies, which keep replicas in lexicographic order
+     */
+    List<Design> expand(int r) {
+      List<Design> children = new ArrayList<>();
+      int colNum = data.getColNum();
+      boolean[] used = new boolean[colNum];
+      for (int p = 0; p < depth[r]; p++) used[orders[r][p]] = true;
+      for (int c = 0; c < colNum; c++) {
+        if (used[c]) continue;
+        if (r > 0 && depth[r - 1] == depth[r] + 1 && compare(r - 1, r, c) > 0) continue;
+        children.add(extend(r, c));
+      }
+      return children;
+    }
+
+    /**
+     * Compare the prefix of replica a, with the prefix of replica b followed by column c.
+     */
+    private int compare(int a, int b, int c) {
+      for (int p = 0; p < depth[b]; p++)
+        if (orders[a][p] != orders[b][p]) return Integer.compare(orders[a][p], orders[b][p]);
+      return Integer.compare(orders[a][depth[b]], c);
+    }
+
+    private Design extend(int r, int c) {
+      Design child = new Design(this);
+      int queryNum = selectivityTable.getQueryNum();
+      child.orders[r] = orders[r].clone();
+      child.orders[r][depth[r]] = c;
+      child.depth[r]++;
+      child.product[r] = product[r].clone();
+      child.terminated[r] = terminated[r].clone();
+      for (int q = 0; q < queryNum; q++) {
+        if (terminated[r][q]) continue;
+        child.product[r][q] *= selectivityTable.getSelectivity(q, c);
+        child.terminated[r][q] = selectivityTable.isRange(q, c);
+      }
+      child.bound[r] = child.lowerBound(r);
+      child.score = CostModel.cost(child.bound, isNewMethod);
+      runControl.countEvaluation();
+      return child;
+    }
+
+    /**
+     * Lower bound of cost of each query on a replica, over all completions of its prefix.
+     *
+     * @param r index of the replica
+     * @return an array of cost, one for each query
+     */
+    private double[] lowerBound(int r) {
+      int colNum = data.getColNum();
+      int queryNum = selectivityTable.getQueryNum();
+      double scale = selectivityTable.getRowNum() * Constant.COST_SCALE.doubleValue();
+      boolean[] used = new boolean[colNum];
+      for (int p = 0; p < depth[r]; p++) used[orders[r][p]] = true;
+      double[] res = new double[queryNum];
+      for (int q = 0; q < queryNum; q++) {
+        res[q] = product[r][q] * scale;
+        if (terminated[r][q]) continue;
+        double leastRange = 1;
+        for (int c = 0; c < colNum; c++) {
+          if (used[c]) continue;
+          if (selectivityTable.isRange(q, c))
+            leastRange = Math.min(leastRange, selectivityTable.getSelectivity(q, c));
+          else
+            res[q] *= selectivityTable.getSelectivity(q, c);
+        }
+        res[q] *= leastRange;
+      }
+      return res;
+    }
+  }
+}
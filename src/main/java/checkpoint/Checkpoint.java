@@ -0,0 +1,99 @@
+package checkpoint;
+
+import datamodel.DataTable;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Binary format of checkpoints. A checkpoint begins with a header: a magic number, the format version, the
+ * kind of optimizer, and the number of columns of the data table, so that a checkpoint is not resumed by
+ * another optimizer or on another table. The state of the optimizer follows, written by the optimizer with
+ * the helpers of this class. A design is written as the number of replicas and the column order of each
+ * replica, one byte per column if the table has less than 256 columns. Costs are not written, the resumed
+ * optimizer evaluates them again.
+ */
+public class Checkpoint {
+
+  private static final int MAGIC = 0x44425243; // "DBRC"
+  private static final short VERSION = 1;
+
+  public static final byte SIMULATE_ANNEAL = 1;
+  public static final byte GENETIC = 2;
+  public static final byte DIVERGENT_DESIGN = 3;
+
+  private Checkpoint() {
+  }
+
+  /**
+   * Start a checkpoint.
+   *
+   * @param kind   kind of the optimizer
+   * @param colNum number of columns of the data table
+   * @param bytes  the buffer of the checkpoint
+   * @return an output stream to write the state to
+   */
+  public static DataOutputStream begin(byte kind, int colNum, ByteArrayOutputStream bytes) throws IOException {
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    out.writeByte(kind);
+    out.writeShort(colNum);
+    return out;
+  }
+
+  /**
+   * Read a checkpoint file, and check its header.
+   *
+   * @param path   path of the checkpoint file
+   * @param kind   kind of the optimizer
+   * @param colNum number of columns of the data table
+   * @return an input stream to read the state from
+   * @throws IOException if the file can not be read, or it is not a checkpoint of the optimizer and table
+   */
+  public static DataInputStream open(String path, byte kind, int colNum) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(Paths.get(path))));
+    if (in.readInt() != MAGIC) throw new IOException("Not a checkpoint: " + path);
+    if (in.readShort() != VERSION) throw new IOException("Unsupported checkpoint version: " + path);
+    if (in.readByte() != kind) throw new IOException("Checkpoint of another optimizer: " + path);
+    if (in.readShort() != colNum) throw new IOException("Checkpoint of another data table: " + path);
+    return in;
+  }
+
+  public static void writeOrder(DataOutputStream out, int[] order) throws IOException {
+    for (int c : order) {
+      if (order.length < 256) out.writeByte(c);
+      else out.writeShort(c);
+    }
+  }
+
+  public static int[] readOrder(DataInputStream in, int colNum) throws IOException {
+    int[] order = new int[colNum];
+    for (int i = 0; i < colNum; i++) order[i] = colNum < 256 ? in.readUnsignedByte() : in.readUnsignedShort();
+    return order;
+  }
+
+  public static void writeMultiReplicas(DataOutputStream out, MultiReplicas m) throws IOException {
+    Replica[] replicas = m.getReplicasArray(true);
+    out.writeShort(replicas.length);
+    for (Replica r : replicas) writeOrder(out, r.getOrder());
+  }
+
+  public static MultiReplicas readMultiReplicas(DataInputStream in, DataTable data) throws IOException {
+    int n = in.readUnsignedShort();
+    MultiReplicas m = new MultiReplicas();
+    for (int i = 0; i < n; i++) m.add(new Replica(data, readOrder(in, data.getColNum())));
+    return m;
+  }
+
+  public static void writeRandom(DataOutputStream out, RestorableRandom random) throws IOException {
+    out.writeLong(random.getState());
+  }
+
+  public static void readRandom(DataInputStream in, RestorableRandom random) throws IOException {
+    random.setState(in.readLong());
+  }
+}
@@ -0,0 +1,98 @@
+package checkpoint;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Write checkpoints of an optimizer to a file asynchronously. The optimizer serializes its state in its
+ * own thread, and hands the bytes to the writer, which writes them in a background thread. If checkpoints
+ * are handed faster than they are written, only the latest pending one is written. A checkpoint is written
+ * to a temporary file first, and then moved to the target file, so that the file always holds a complete
+ * checkpoint. A failed write is not retried, and its exception is thrown by the next call to write() or close().
+ * The writer also decides when a checkpoint is due, at a fixed interval.
+ */
+public class CheckpointWriter {
+
+  private final Path path;
+  private final long interval;
+  private long lastTime;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "checkpoint-writer");
+    t.setDaemon(true);
+    return t;
+  });
+  private final AtomicReference<byte[]> pending = new AtomicReference<>();
+  // the first failure of a background write, not thrown yet
+  private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+  /**
+   * Constructor
+   *
+   * @param path     path of the checkpoint file
+   * @param interval milliseconds between two checkpoints
+   */
+  public CheckpointWriter(String path, long interval) {
+    if (interval < 0) throw new IllegalArgumentException();
+    this.path = Paths.get(path);
+    this.interval = interval;
+    this.lastTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Check if a checkpoint is due, i.e. the interval has passed since the last one.
+   *
+   * @return true if a checkpoint is due
+   */
+  public boolean isDue() {
+    return System.currentTimeMillis() - lastTime >= interval;
+  }
+
+  /**
+   * Hand a checkpoint to the writer, it returns without waiting for the write.
+   *
+   * @param checkpoint the serialized state
+   * @throws IOException if an earlier checkpoint failed to be written
+   */
+  public void write(byte[] checkpoint) throws IOException {
+    throwFailure();
+    lastTime = System.currentTimeMillis();
+    // a write is already scheduled if there is a pending checkpoint, and it will take the latest one
+    if (pending.getAndSet(checkpoint) != null) return;
+    executor.execute(() -> {
+      byte[] bytes = pending.getAndSet(null);
+      if (bytes == null) return;
+      try {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, bytes);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        failure.compareAndSet(null, e);
+      }
+    });
+  }
+
+  /**
+   * Wait for pending checkpoints to be written, and stop the background thread.
+   *
+   * @throws IOException if a checkpoint failed to be written
+   */
+  public void close() throws IOException {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throwFailure();
+  }
+
+  private void throwFailure() throws IOException {
+    IOException e = failure.getAndSet(null);
+    if (e != null) throw e;
+  }
+}
@@ -0,0 +1,48 @@
+package checkpoint;
+
+import java.util.Random;
+
+/**
+ * A random number generator whose state can be saved and restored, so that a resumed optimizer draws the
+ * same numbers as if it was never stopped. It is the linear congruential generator of java.util.Random,
+ * with the 48-bit seed exposed as the state. nextGaussian() keeps a second value, which is not a part of
+ * the state, so it should not be used by optimizers that are checkpointed.
+ */
+public class RestorableRandom extends Random {
+
+  private static final long serialVersionUID = 1L;
+  private static final long MULTIPLIER = 0x5DEECE66DL;
+  private static final long ADDEND = 0xBL;
+  private static final long MASK = (1L << 48) - 1;
+
+  // no initializer, it is set by setSeed() in the constructor of Random
+  private long state;
+
+  public RestorableRandom() {
+    super();
+  }
+
+  public RestorableRandom(long seed) {
+    super(seed);
+  }
+
+  @Override
+  public synchronized void setSeed(long seed) {
+    super.setSeed(seed);
+    state = (seed ^ MULTIPLIER) & MASK;
+  }
+
+  @Override
+  protected synchronized int next(int bits) {
+    state = (state * MULTIPLIER + ADDEND) & MASK;
+    return (int) (state >>> (48 - bits));
+  }
+
+  public synchronized long getState() {
+    return state;
+  }
+
+  public synchronized void setState(long state) {
+    this.state = state & MASK;
+  }
+}
@@ -19,6 +19,9 @@ public class Constant {
   public static final double TEMPERATURE_INIT_SEED = 0.8;
   public static final int OPTIMAL_COUNT_THRESHOLD = 60;
 
+  // Dynamic Programming
+  public static final int DP_MAX_COLUMN_NUMBER = 22;
+
   // Divergent Design
   public static  final int LOAD_BALANCE_FACTOR = 1;
   public static  final int MAX_ITERATION = 1000;
@@ -36,5 +39,85 @@ public class Constant {
   public static final double MUTATION_RATE = 0.0001;
   public static final int GENE_CHANGE_NUMBER = 1;
 
+  // Pareto GA
+  public static final int PARETO_POPULATION = 100;
+  public static final int PARETO_MAX_ITERATION = 300;
+  public static final double PARETO_CROSSOVER_RATE = 0.9;
+  public static final double PARETO_MUTATION_RATE = 0.3;
+  public static final double PARETO_REPLICA_MUTATION_RATE = 0.1;
+
+  // Tabu Search
+  public static final int TABU_TENURE = 7;
+  public static final int TABU_MAX_ITERATION = 1000;
+  public static final int TABU_NO_IMPROVE_THRESHOLD = 100;
+  public static final double TABU_FREQUENCY_PENALTY = 0.01;
+
+  // Large Neighborhood Search
+  public static final int LNS_MAX_ITERATION = 500;
+  public static final int LNS_NO_IMPROVE_THRESHOLD = 50;
+  public static final int LNS_EXACT_COLUMN_NUMBER = 6;
+
+  // Ant Colony Optimization
+  public static final int ACO_ANT_NUMBER = 32;
+  public static final int ACO_MAX_ITERATION = 300;
+  public static final int ACO_NO_IMPROVE_THRESHOLD = 40;
+  public static final double ACO_ALPHA = 1;
+  public static final double ACO_BETA = 2;
+  public static final double ACO_EVAPORATION_RATE = 0.1;
+  public static final double ACO_MIN_PHEROMONE = 0.01;
+
+  // Beam Search
+  public static final int BEAM_WIDTH = 32;
+
+  // Greedy Construction
+  public static final long GREEDY_DP_STATE_BUDGET = 1L << 26;
+
+  // Replica number sweep
+  public static final int SWEEP_OPTIMAL_COUNT_THRESHOLD = 20;
+
+  // Hyperparameter tuning
+  public static final int TUNING_ITERATION_NUMBER = 3;
+  public static final int TUNING_CONFIGURATION_NUMBER = 16;
+  public static final int TUNING_ELITE_NUMBER = 4;
+  public static final int TUNING_STEP_NUMBER = 10;
+  public static final int TUNING_MIN_STEP_NUMBER = 3;
+  public static final double TUNING_CONFIDENCE_Z = 1.645;
+  public static final long TUNING_RUN_TIME_LIMIT = 60000;
+
+  // Design cache
+  public static final int DESIGN_CACHE_CAPACITY = 10000;
+  public static final long VISITED_FILTER_SIZE = 1L << 20;
+  public static final double VISITED_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+  // Partition key
+  public static final double PARTITION_SEEK_ROWS = 100;
+  public static final double PARTITION_ROW_LIMIT = 100000;
+
+  // Write cost
+  public static final double WRITE_ROW_COST = 1;
+  public static final double WRITE_COMPACTION_FACTOR = 0.1;
+
+  // Compression estimation
+  public static final double COMPRESSION_VALUE_BYTES = 8;
+  public static final double COMPRESSION_RUN_BYTES = 2;
+  public static final int COMPRESSION_SAMPLE_SIZE = 10000;
+
+  // Cache locality
+  public static final double CACHE_HIT_DISCOUNT = 0.5;
+  public static final int AFFINITY_OVERLAP_CACHE_CAPACITY = 256;
+
+  // Queueing
+  public static final double QUEUEING_SCAN_RATE = 1000000;
+  public static final double QUEUEING_QUANTILE = 0.99;
+  public static final double QUEUEING_MAX_UTILIZATION = 0.99;
+
+  // Tail cost
+  public static final double TAIL_QUANTILE = 0.99;
+  public static final double SKETCH_RELATIVE_ACCURACY = 0.01;
+
+  // Sampled cost estimation
+  public static final int SAMPLE_SIZE = 200;
+  public static final double SAMPLE_CONFIDENCE_Z = 1.96;
+
 
 }
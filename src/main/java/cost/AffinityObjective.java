@@ -0,0 +1,271 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import query.MiniQuery;
+import query.PointQuery;
+import query.Query;
+import query.RangeQuery;
+import replica.DesignKey;
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Cask effect cost under cache-locality-aware routing. A query scans a key range of a replica, its intervals on
+ * the columns of the order up to the first range column, a point taking a step of the domain as in Histogram.
+ * A scan overlapping key ranges scanned before on the same replica finds them in the page and row caches, so the
+ * cost of a query on a replica is its cost in CostModel times 1 - CACHE_HIT_DISCOUNT * overlap, where overlap is
+ * the greatest fraction of its key range scanned by an earlier query of the workload routed to the replica.
+ * Routing partitions queries into affinity classes, one per replica, instead of splitting ties: each query goes to
+ * a single replica, first the least cost one, preferring the replica whose class it overlaps most, and then
+ * queries move between classes while it decreases the greatest load. The cost of a strategy is the greatest load
+ * under this routing, see route(). With no discount nothing is gained by affinity, so ties are split as in
+ * CostModel and the cost is cask effect cost.
+ * Overlaps of queries are cached by the rank of the order, see DesignKey, up to AFFINITY_OVERLAP_CACHE_CAPACITY
+ * orders, and the objective may be shared by threads.
+ */
+public class AffinityObjective implements Objective {
+
+  private SelectivityTable selectivityTable;
+  private double discount = Constant.CACHE_HIT_DISCOUNT;
+  // interval of each query on each column of the original table
+  private double[][] lowerBounds;
+  private double[][] upperBounds;
+  private DesignCache<double[][]> overlaps = new DesignCache<>(Constant.AFFINITY_OVERLAP_CACHE_CAPACITY,
+          Constant.AFFINITY_OVERLAP_CACHE_CAPACITY, Constant.VISITED_FILTER_FALSE_POSITIVE_RATE);
+
+  /**
+   * Constructor
+   *
+   * @param dataTable info of the data table
+   * @param queries   the workload, in the order queries are evaluated
+   */
+  public AffinityObjective(DataTable dataTable, Query[] queries) {
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+    int colNum = dataTable.getColNum();
+    this.lowerBounds = new double[queries.length][colNum];
+    this.upperBounds = new double[queries.length][colNum];
+    for (int q = 0; q < queries.length; q++) {
+      MiniQuery[] miniQueries = queries[q].getMiniQueries();
+      for (int c = 0; c < colNum; c++) {
+        if (miniQueries[c] instanceof RangeQuery) {
+          lowerBounds[q][c] = ((RangeQuery) miniQueries[c]).getLowerBound();
+          upperBounds[q][c] = ((RangeQuery) miniQueries[c]).getUpperBound();
+        } else {
+          lowerBounds[q][c] = ((PointQuery) miniQueries[c]).getValue();
+          upperBounds[q][c] = lowerBounds[q][c] + Constant.HISTOGRAM_STEP;
+        }
+      }
+    }
+  }
+
+  /**
+   * Set the fraction of cost saved on cached key ranges
+   *
+   * @param discount the discount, in [0, 1]
+   * @return the objective
+   */
+  public AffinityObjective withDiscount(double discount) {
+    if (discount < 0 || discount > 1) throw new IllegalArgumentException();
+    this.discount = discount;
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    return BigDecimal.valueOf(route(multiReplicas).getCost());
+  }
+
+  /**
+   * Route queries of the workload on a strategy
+   *
+   * @param multiReplicas the strategy
+   * @return the routing
+   */
+  public Routing route(MultiReplicas multiReplicas) {
+    return route(multiReplicas.getOrders().toArray(new int[0][]));
+  }
+
+  /*
+   * Route queries
+   * 0. if no discount, return the routing of CostModel, each query to its first least cost replica
+   * 1. for each query, in the order of the workload
+   * 2.  | send it to a least cost replica, the one it overlaps most with queries sent before, then the least load
+   * 3. end for
+   * 4. loop [an improving move is found]
+   * 5.  | move a query to another replica, if it decreases the greatest load, or the total load with the same
+   * 6.  | greatest load
+   * 7. end loop
+   */
+  public Routing route(int[][] orders) {
+    int replicaNumber = orders.length;
+    int queryNum = selectivityTable.getQueryNum();
+    double[][] costMatrix = new double[replicaNumber][];
+    for (int r = 0; r < replicaNumber; r++) costMatrix[r] = selectivityTable.cost(orders[r]);
+    int[] replicaOf = new int[queryNum];
+    if (discount == 0) {
+      for (int q = 0; q < queryNum; q++)
+        for (int r = 1; r < replicaNumber; r++) if (costMatrix[r][q] < costMatrix[replicaOf[q]][q]) replicaOf[q] = r;
+      double[] load = CostModel.costOnEachReplica(costMatrix);
+      double cost = 0;
+      for (double l : load) cost = Math.max(cost, l);
+      return new Routing(replicaOf, load, cost);
+    }
+    double[][][] overlap = new double[replicaNumber][][];
+    for (int r = 0; r < replicaNumber; r++) overlap[r] = overlap(orders[r]);
+    Arrays.fill(replicaOf, -1);
+    double[] load = new double[replicaNumber];
+    for (int q = 0; q < queryNum; q++) {
+      double min = Double.POSITIVE_INFINITY;
+      for (int r = 0; r < replicaNumber; r++) min = Math.min(min, costMatrix[r][q]);
+      int best = -1;
+      double bestOverlap = -1;
+      for (int r = 0; r < replicaNumber; r++) {
+        if (costMatrix[r][q] != min) continue;
+        double o = 0;
+        for (int p = 0; p < q; p++) if (replicaOf[p] == r) o = Math.max(o, overlap[r][q][p]);
+        if (o > bestOverlap || (o == bestOverlap && load[r] < load[best])) {
+          best = r;
+          bestOverlap = o;
+        }
+      }
+      replicaOf[q] = best;
+      load[best] += min * (1 - discount * bestOverlap);
+    }
+
+    load = CostModel.costOnEachReplica(costMatrix, overlap, discount, replicaOf);
+    double max = 0;
+    for (double l : load) max = Math.max(max, l);
+    boolean isImproved = true;
+    while (isImproved) {
+      isImproved = false;
+      for (int q = 0; q < queryNum; q++) {
+        int from = replicaOf[q];
+        for (int to = 0; to < replicaNumber; to++) {
+          if (to == from) continue;
+          replicaOf[q] = to;
+          double[] newLoad = load.clone();
+          newLoad[to] = CostModel.costOnReplica(costMatrix[to], overlap[to], discount, replicaOf, to);
+          // the greatest load increases, whatever the load left on the replica it moves from
+          if (newLoad[to] > max) {
+            replicaOf[q] = from;
+            continue;
+          }
+          newLoad[from] = CostModel.costOnReplica(costMatrix[from], overlap[from], discount, replicaOf, from);
+          if (isBetter(newLoad, load)) {
+            load = newLoad;
+            max = 0;
+            for (double l : load) max = Math.max(max, l);
+            from = to;
+            isImproved = true;
+          } else {
+            replicaOf[q] = from;
+          }
+        }
+      }
+    }
+    double cost = 0;
+    for (double l : load) cost = Math.max(cost, l);
+    return new Routing(replicaOf, load, cost);
+  }
+
+  private static boolean isBetter(double[] newLoad, double[] load) {
+    double newMax = 0, max = 0, newSum = 0, sum = 0;
+    for (int r = 0; r < load.length; r++) {
+      newMax = Math.max(newMax, newLoad[r]);
+      max = Math.max(max, load[r]);
+      newSum += newLoad[r];
+      sum += load[r];
+    }
+    return newMax < max || (newMax == max && newSum < sum);
+  }
+
+  /**
+   * Overlap of key ranges of queries on a column order. The key range of a query spans the columns up to its
+   * first range column, and a query spans all values of columns after its first range column.
+   *
+   * @param order column order of the replica
+   * @return overlap[q][p], the fraction of the key range of query q also scanned by query p
+   */
+  private double[][] overlap(int[] order) {
+    DesignKey key = DesignKey.of(new int[][]{order});
+    double[][] res = overlaps.get(key);
+    if (res == null) {
+      res = computeOverlap(order);
+      overlaps.put(key, res);
+    }
+    return res;
+  }
+
+  private double[][] computeOverlap(int[] order) {
+    int queryNum = selectivityTable.getQueryNum();
+    int[] prefix = new int[queryNum];
+    for (int q = 0; q < queryNum; q++) {
+      prefix[q] = order.length - 1;
+      for (int i = 0; i < order.length; i++)
+        if (selectivityTable.isRange(q, order[i])) {
+          prefix[q] = i;
+          break;
+        }
+    }
+    double[][] res = new double[queryNum][queryNum];
+    for (int q = 0; q < queryNum; q++) {
+      for (int p = 0; p < queryNum; p++) {
+        if (p == q) continue;
+        double fraction = 1;
+        for (int i = 0; i <= Math.min(prefix[q], prefix[p]) && fraction > 0; i++) {
+          int c = order[i];
+          double length = upperBounds[q][c] - lowerBounds[q][c];
+          double common = Math.min(upperBounds[q][c], upperBounds[p][c]) - Math.max(lowerBounds[q][c], lowerBounds[p][c]);
+          fraction *= length <= 0 ? 0 : Math.max(0, common) / length;
+        }
+        res[q][p] = fraction;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * A query costs at least its least cost, discounted as if it were always cached.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    double sum = 0;
+    for (double c : LowerBound.leastCost(selectivityTable)) sum += c;
+    return sum * (1 - discount) / replicaNumber;
+  }
+
+  /**
+   * A routing: the replica of each query, the load of each replica and the greatest load.
+   */
+  public static class Routing {
+    private int[] replicaOf;
+    private double[] load;
+    private double cost;
+
+    Routing(int[] replicaOf, double[] load, double cost) {
+      this.replicaOf = replicaOf;
+      this.load = load;
+      this.cost = cost;
+    }
+
+    /**
+     * Get the replica of each query
+     *
+     * @return index of the replica of each query, in the order of replicas given to route()
+     */
+    public int[] getReplicaOf() {
+      return replicaOf;
+    }
+
+    public double[] getLoad() {
+      return load;
+    }
+
+    public double getCost() {
+      return cost;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package cost;
+
+import constant.Constant;
+import replica.DesignKey;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimate of the compressed size of a replica for each column order, from a sample of rows, e.g. by
+ * GenerateDataTable.getRowSampleFromCsv. Rows of a replica are sorted by its column order, so a column has runs
+ * of equal adjacent values, long for leading columns and short for trailing ones. A column is stored run-length
+ * encoded, a value and a run length of COMPRESSION_RUN_BYTES per run, or plain if that is smaller. The estimate of
+ * an order is its compression ratio, the compressed bytes of the sample sorted by the order over its plain bytes.
+ * A sample has shorter runs than the table, so the ratio is an upper bound rather than an exact estimate, and it
+ * is meant to compare orders.
+ * Ratios are cached by the rank of the order, see DesignKey, and the estimator may be shared by threads.
+ */
+public class CompressionEstimator {
+
+  private double[][] sample;
+  private double[] widths;
+  private Map<DesignKey, Double> ratios = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor, of COMPRESSION_VALUE_BYTES for each value
+   *
+   * @param sample rows of the sample, sample[row][column], columns of the original table
+   */
+  public CompressionEstimator(double[][] sample) {
+    if (sample.length == 0) throw new IllegalArgumentException();
+    this.sample = sample;
+    this.widths = new double[sample[0].length];
+    Arrays.fill(widths, Constant.COMPRESSION_VALUE_BYTES);
+  }
+
+  /**
+   * Set the bytes of a value of each column
+   *
+   * @param widths bytes of each column of the original table
+   * @return the estimator
+   */
+  public CompressionEstimator withColumnWidths(double[] widths) {
+    if (widths.length != this.widths.length) throw new IllegalArgumentException();
+    for (double w : widths) if (w <= 0) throw new IllegalArgumentException();
+    this.widths = widths.clone();
+    ratios.clear();
+    return this;
+  }
+
+  /**
+   * Compression ratio of an order, compressed bytes over plain bytes, at most 1.
+   *
+   * @param order column order of the replica
+   * @return the ratio
+   */
+  public double ratio(int[] order) {
+    return ratios.computeIfAbsent(DesignKey.of(new int[][]{order}), key -> estimate(order));
+  }
+
+  /*
+   * Estimate the ratio of an order
+   * 1. sort rows of the sample by the order
+   * 2. for each column, count runs of equal adjacent values
+   * 3. bytes of the column are the least of plain values and runs of a value and a run length
+   * 4. return bytes over plain bytes of all columns
+   */
+  private double estimate(int[] order) {
+    double[][] rows = sample.clone();
+    Arrays.sort(rows, (a, b) -> {
+      for (int c : order) {
+        int cmp = Double.compare(a[c], b[c]);
+        if (cmp != 0) return cmp;
+      }
+      return 0;
+    });
+    double bytes = 0;
+    double plain = 0;
+    for (int c = 0; c < widths.length; c++) {
+      int runs = 1;
+      for (int i = 1; i < rows.length; i++)
+        if (rows[i][c] != rows[i - 1][c]) runs++;
+      plain += rows.length * widths[c];
+      bytes += Math.min(rows.length * widths[c], runs * (widths[c] + Constant.COMPRESSION_RUN_BYTES));
+    }
+    return bytes / plain;
+  }
+
+  /**
+   * Bytes of a full row, uncompressed
+   *
+   * @return the bytes
+   */
+  public double getRowBytes() {
+    double res = 0;
+    for (double w : widths) res += w;
+    return res;
+  }
+
+  public int getSampleSize() {
+    return sample.length;
+  }
+}
@@ -0,0 +1,105 @@
+package cost;
+
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Cask effect cost of a strategy with compressed replicas, by a CompressionEstimator. Compression is used in
+ * either or both ways:
+ * 1. as a scan cost multiplier: a scanned row costs its compressed bytes, so the cost of a query on a replica is
+ * its cost in CostModel times the compression ratio of the order, as in CostModel.cost(Replica, Query,
+ * CompressionEstimator),
+ * 2. as a storage constraint: a replica takes rows * row bytes * ratio of storage, and a strategy over the
+ * storage budget pays the over-budget penalty of Objective, so well compressing orders also make room for more
+ * replicas.
+ */
+public class CompressionObjective implements Objective {
+
+  private SelectivityTable selectivityTable;
+  private CompressionEstimator estimator;
+  private boolean isScanMultiplier = true;
+  private double storageBudget = Double.POSITIVE_INFINITY;
+
+  /**
+   * Constructor, using compression as a scan cost multiplier, of no storage budget
+   *
+   * @param dataTable info of the data table
+   * @param queries   the workload
+   * @param estimator the compression estimator of the table
+   */
+  public CompressionObjective(DataTable dataTable, Query[] queries, CompressionEstimator estimator) {
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+    this.estimator = estimator;
+  }
+
+  /**
+   * Set if the cost of a query is multiplied by the compression ratio
+   *
+   * @param isScanMultiplier true to scan compressed bytes, false to scan rows as in CostModel
+   * @return the objective
+   */
+  public CompressionObjective withScanMultiplier(boolean isScanMultiplier) {
+    this.isScanMultiplier = isScanMultiplier;
+    return this;
+  }
+
+  /**
+   * Set the storage budget of all replicas, in bytes
+   *
+   * @param storageBudget the budget
+   * @return the objective
+   */
+  public CompressionObjective withStorageBudget(double storageBudget) {
+    if (storageBudget <= 0) throw new IllegalArgumentException();
+    this.storageBudget = storageBudget;
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    double[][] costMatrix = new double[orders.size()][];
+    for (int r = 0; r < costMatrix.length; r++) {
+      costMatrix[r] = selectivityTable.cost(orders.get(r));
+      if (isScanMultiplier) {
+        double ratio = estimator.ratio(orders.get(r));
+        for (int q = 0; q < costMatrix[r].length; q++) costMatrix[r][q] *= ratio;
+      }
+    }
+    double res = CostModel.cost(costMatrix, true);
+    double storage = storage(orders);
+    if (storage > storageBudget) res *= storage / storageBudget;
+    return BigDecimal.valueOf(res);
+  }
+
+  /**
+   * The lower bound of LowerBound when costs are not multiplied by compression ratios, none otherwise.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    if (isScanMultiplier) return 0;
+    double sum = 0;
+    for (double c : LowerBound.leastCost(selectivityTable)) sum += c;
+    return sum / replicaNumber;
+  }
+
+  /**
+   * Compressed storage of a strategy, in bytes
+   *
+   * @param multiReplicas the strategy
+   * @return the storage
+   */
+  public double storage(MultiReplicas multiReplicas) {
+    return storage(multiReplicas.getOrders());
+  }
+
+  private double storage(List<int[]> orders) {
+    double res = 0;
+    for (int[] order : orders) res += estimator.ratio(order);
+    return res * selectivityTable.getRowNum() * estimator.getRowBytes();
+  }
+}
@@ -1,6 +1,7 @@
 package cost;
 
 import constant.Constant;
+import datamodel.DataTable;
 import javafx.util.Pair;
 import query.Query;
 import replica.MultiReplicas;
@@ -28,7 +29,26 @@ public class CostModel {
    * @return the cost
    */
   public static BigDecimal cost(Replica replica, Query query) {
-    return replica.scanRows(query).multiply(Constant.COST_SCALE);
+    BigDecimal res = replica.scanRows(query).multiply(Constant.COST_SCALE);
+    // a partial replica reads the bytes of its stored columns only, of unit width
+    int colNum = replica.getOrder().length;
+    if (replica.getColumnNumber() < colNum)
+      res = res.multiply(BigDecimal.valueOf(replica.getColumnNumber()))
+              .divide(BigDecimal.valueOf(colNum), 100, BigDecimal.ROUND_HALF_UP);
+    return res;
+  }
+
+  /**
+   * Cost of evaluating a query on a compressed replica, each scanned row costs its compressed bytes relative to
+   * plain bytes.
+   *
+   * @param replica   the replica
+   * @param query     the query
+   * @param estimator compression estimator of the table
+   * @return the cost
+   */
+  public static BigDecimal cost(Replica replica, Query query, CompressionEstimator estimator) {
+    return cost(replica, query).multiply(BigDecimal.valueOf(estimator.ratio(replica.getOrder())));
   }
 
   public static BigDecimal cost(Replica replica, Query[] queries) {
@@ -91,17 +111,17 @@ public class CostModel {
   public static Pair<Set<Replica>, BigDecimal> cost(MultiReplicas multiReplicas, Query query) {
 
     Replica[] replicas = multiReplicas.getReplicasArray(true);
-    BigDecimal[] costs = new BigDecimal[replicas.length];
-    for (int i = 0; i < costs.length; i++) costs[i] = CostModel.cost(replicas[i], query);
+    BigDecimal[] costs = getCostArray(replicas, query);
     BigDecimal[] temp = new BigDecimal[replicas.length];
     System.arraycopy(costs, 0, temp, 0, temp.length);
-    Arrays.sort(temp);
+    Arrays.sort(temp, Comparator.nullsLast(Comparator.naturalOrder()));
+    if (temp[0] == null) throw new IllegalArgumentException("No replica covers the query");
     int cnt = 1;
     for (int i = 1; i < temp.length; i++)
-      if (temp[i].compareTo(temp[0]) == 0) cnt++;
+      if (temp[i] != null && temp[i].compareTo(temp[0]) == 0) cnt++;
     Set<Replica> resSet = new HashSet<>();
     for (int i = 0; i < costs.length; i++)
-      if (costs[i].compareTo(temp[0]) == 0) resSet.add(replicas[i]);
+      if (costs[i] != null && costs[i].compareTo(temp[0]) == 0) resSet.add(replicas[i]);
     return new Pair<>(resSet, temp[0].divide(BigDecimal.valueOf(cnt), 100, BigDecimal.ROUND_HALF_UP));
 
   }
@@ -189,12 +209,16 @@ public class CostModel {
     for (Query query : queries) {
       BigDecimal[] costArray = getCostArray(replicas, query);
       int[] order = getLeastCostConfOrder(costArray);
+      if (costArray[order[0]] == null) throw new IllegalArgumentException("No replica covers the query");
       int number = 1;
       for (int i = 1; i < costArray.length; i++) {
-        if (costArray[order[i]].compareTo(costArray[order[0]]) == 0)
+        if (costArray[order[i]] != null && costArray[order[i]].compareTo(costArray[order[0]]) == 0)
           number++;
       }
       if (number < loadBalanceFactor) number = loadBalanceFactor;
+      int covering = 0;
+      for (BigDecimal c : costArray) if (c != null) covering++;
+      if (number > covering) number = covering;
       for (int i = 0; i < number; i++) {
         res[order[i]] = res[order[i]].add(costArray[order[i]].divide(BigDecimal.valueOf(number), 1000, BigDecimal.ROUND_HALF_UP));
       }
@@ -211,19 +235,19 @@ public class CostModel {
    *
    * @param replicas given replica array
    * @param query    given query
-   * @return an array of cost
+   * @return an array of cost, null for a partial replica not covering the query
    */
   public static BigDecimal[] getCostArray(Replica[] replicas, Query query) {
     BigDecimal[] res = new BigDecimal[replicas.length];
     for (int i = 0; i < replicas.length; i++)
-      res[i] = cost(replicas[i], query);
+      res[i] = replicas[i].isCovering(query) ? cost(replicas[i], query) : null;
     return res;
   }
 
   public static int[] getLeastCostConfOrder(BigDecimal[] costArray) {
     Integer[] order = new Integer[costArray.length];
     for (int i = 0; i < order.length; i++) order[i] = i;
-    Arrays.sort(order, Comparator.comparing(o -> costArray[o]));
+    Arrays.sort(order, Comparator.comparing(o -> costArray[o], Comparator.nullsLast(Comparator.naturalOrder())));
     int[] res = new int[costArray.length];
     for (int i = 0; i < res.length; i++) res[i] = order[i];
     return res;
@@ -266,6 +290,114 @@ public class CostModel {
 ////    return ans;
 //  }
 
+  /**
+   * Same as costOnEachReplica(MultiReplicas, Query[]), on a matrix of costs evaluated in advance, e.g. by
+   * SelectivityTable. Each query is routed to the least cost replicas, and the cost is divided among them
+   * if there are more than one.
+   *
+   * @param costMatrix cost of each query on each replica, costMatrix[replica][query]
+   * @return cost on each replica
+   */
+  public static double[] costOnEachReplica(double[][] costMatrix) {
+    double[] res = new double[costMatrix.length];
+    int queryNum = costMatrix.length == 0 ? 0 : costMatrix[0].length;
+    for (int q = 0; q < queryNum; q++) {
+      double min = costMatrix[0][q];
+      int number = 1;
+      for (int r = 1; r < costMatrix.length; r++) {
+        if (costMatrix[r][q] < min) {
+          min = costMatrix[r][q];
+          number = 1;
+        } else if (costMatrix[r][q] == min) number++;
+      }
+      for (int r = 0; r < costMatrix.length; r++)
+        if (costMatrix[r][q] == min) res[r] += min / number;
+    }
+    return res;
+  }
+
+  /**
+   * Same as costOnEachReplica(double[][]), with each query routed to a single replica and discounted by the key
+   * ranges cached on it, see AffinityObjective. A query costs 1 - discount * overlap of its cost, where overlap is
+   * its greatest overlap with earlier queries routed to the same replica.
+   *
+   * @param costMatrix cost of each query on each replica, costMatrix[replica][query]
+   * @param overlap    overlap[replica][q][p], the fraction of the key range of query q also scanned by query p
+   * @param discount   the fraction of cost saved on cached key ranges
+   * @param replicaOf  the replica of each query
+   * @return cost on each replica
+   */
+  public static double[] costOnEachReplica(double[][] costMatrix, double[][][] overlap, double discount, int[] replicaOf) {
+    double[] res = new double[costMatrix.length];
+    for (int r = 0; r < res.length; r++) res[r] = costOnReplica(costMatrix[r], overlap[r], discount, replicaOf, r);
+    return res;
+  }
+
+  static double costOnReplica(double[] costRow, double[][] overlap, double discount, int[] replicaOf, int r) {
+    // queries routed to the replica, in the order of the workload
+    int[] routed = new int[costRow.length];
+    int number = 0;
+    for (int q = 0; q < costRow.length; q++) if (replicaOf[q] == r) routed[number++] = q;
+    double res = 0;
+    for (int i = 0; i < number; i++) {
+      double o = 0;
+      for (int j = 0; j < i; j++) o = Math.max(o, overlap[routed[i]][routed[j]]);
+      res += costRow[routed[i]] * (1 - discount * o);
+    }
+    return res;
+  }
+
+  /**
+   * Same as cost(MultiReplicas, Query[]) and totalCost(MultiReplicas, Query[]), on a matrix of costs
+   * evaluated in advance.
+   *
+   * @param costMatrix  cost of each query on each replica, costMatrix[replica][query]
+   * @param isNewMethod true for cask effect cost, false for total cost
+   * @return the cost
+   */
+  public static double cost(double[][] costMatrix, boolean isNewMethod) {
+    if (isNewMethod) {
+      double res = 0;
+      for (double n : costOnEachReplica(costMatrix)) res = Math.max(res, n);
+      return res;
+    }
+    double res = 0;
+    int queryNum = costMatrix.length == 0 ? 0 : costMatrix[0].length;
+    for (int q = 0; q < queryNum; q++) {
+      double min = costMatrix[0][q];
+      int number = 1;
+      for (int r = 1; r < costMatrix.length; r++) {
+        if (costMatrix[r][q] < min) {
+          min = costMatrix[r][q];
+          number = 1;
+        } else if (costMatrix[r][q] == min) number++;
+      }
+      res += min / number;
+    }
+    return res;
+  }
+
+  /**
+   * Cost of a strategy of column orders with the order of a replica replaced, as local search evaluates a move:
+   * by the objective if it is set, otherwise on the cost matrix, whose row of the replica is replaced already.
+   *
+   * @param objective   the objective, null for cask effect cost or total cost
+   * @param dataTable   info of the data table
+   * @param orders      orders of the strategy, unchanged on return
+   * @param r           index of the replica
+   * @param order       the new order of the replica
+   * @param costMatrix  cost of each query on each replica, costMatrix[replica][query]
+   * @param isNewMethod true for cask effect cost, false for total cost
+   * @return the cost
+   */
+  public static double cost(Objective objective, DataTable dataTable, int[][] orders, int r, int[] order,
+                            double[][] costMatrix, boolean isNewMethod) {
+    if (objective == null) return cost(costMatrix, isNewMethod);
+    MultiReplicas multiReplicas = new MultiReplicas();
+    for (int i = 0; i < orders.length; i++) multiReplicas.add(new Replica(dataTable, i == r ? order : orders[i]));
+    return objective.cost(multiReplicas).doubleValue();
+  }
+
   public static BigDecimal totalCost(MultiReplicas multiReplicas, Query[] queries) {
     BigDecimal ans = new BigDecimal("0");
     for (Query q : queries)
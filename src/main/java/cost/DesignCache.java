@@ -0,0 +1,128 @@
+package cost;
+
+import constant.Constant;
+import replica.DesignKey;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of costs of multi-replica strategies, keyed by their canonical encoding, so that optimizers revisiting
+ * a strategy, or a permutation of its replicas, do not evaluate it again. Memory is bounded: the cost cache keeps
+ * the least recently used strategies up to a capacity, and every strategy ever put is also recorded in a Bloom
+ * filter of fixed size. A strategy evicted from the cost cache is still known to be visited, so optimizers can
+ * skip it by policy instead of evaluating it again. The filter has no false negatives, and a false positive
+ * rate close to the one it is sized for until more strategies than expected are put.
+ * It is thread safe, so that strategies evaluated in parallel can share it.
+ *
+ * @param <V> type of the cost, e.g. BigDecimal
+ */
+public class DesignCache<V> {
+
+  private final LinkedHashMap<DesignKey, V> costs;
+  private final long[] bits;
+  private final long bitNumber;
+  private final int hashNumber;
+
+  private long hitNumber = 0;
+  private long missNumber = 0;
+
+  /**
+   * Constructor, using the default capacity and size of the visited filter in Constant class.
+   */
+  public DesignCache() {
+    this(Constant.DESIGN_CACHE_CAPACITY);
+  }
+
+  /**
+   * Constructor, using the default size of the visited filter in Constant class.
+   *
+   * @param capacity number of costs cached
+   */
+  public DesignCache(int capacity) {
+    this(capacity, Constant.VISITED_FILTER_SIZE, Constant.VISITED_FILTER_FALSE_POSITIVE_RATE);
+  }
+
+  /**
+   * Constructor. The Bloom filter has m = -n * ln(p) / ln(2)^2 bits and k = m / n * ln(2) hash functions for
+   * n expected strategies and false positive rate p.
+   *
+   * @param capacity          number of costs cached
+   * @param expectedDesigns   number of strategies expected to be put in the visited filter
+   * @param falsePositiveRate false positive rate of the visited filter at the expected number
+   */
+  public DesignCache(int capacity, long expectedDesigns, double falsePositiveRate) {
+    if (capacity <= 0 || expectedDesigns <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+      throw new IllegalArgumentException();
+    this.costs = new LinkedHashMap<DesignKey, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<DesignKey, V> eldest) {
+        return size() > capacity;
+      }
+    };
+    long m = (long) Math.ceil(-expectedDesigns * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    this.bits = new long[(int) Math.min((m + 63) / 64, Integer.MAX_VALUE)];
+    this.bitNumber = bits.length * 64L;
+    this.hashNumber = Math.max(1, (int) Math.round((double) bitNumber / expectedDesigns * Math.log(2)));
+  }
+
+  /**
+   * Get the cached cost of a strategy.
+   *
+   * @param key the canonical key of the strategy
+   * @return the cost, null if it is not cached
+   */
+  public synchronized V get(DesignKey key) {
+    V cost = costs.get(key);
+    if (cost == null) missNumber++;
+    else hitNumber++;
+    return cost;
+  }
+
+  /**
+   * Cache the cost of a strategy, and record it as visited.
+   *
+   * @param key  the canonical key of the strategy
+   * @param cost the cost
+   */
+  public synchronized void put(DesignKey key, V cost) {
+    costs.put(key, cost);
+    long h = key.longHash();
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+    for (int i = 0; i < hashNumber; i++) {
+      long bit = Math.floorMod(h1 + (long) i * h2, bitNumber);
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Check if a strategy is visited, i.e. put before. It may be a false positive, but never a false negative.
+   *
+   * @param key the canonical key of the strategy
+   * @return true if it is probably visited
+   */
+  public synchronized boolean isVisited(DesignKey key) {
+    if (costs.containsKey(key)) return true;
+    long h = key.longHash();
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+    for (int i = 0; i < hashNumber; i++) {
+      long bit = Math.floorMod(h1 + (long) i * h2, bitNumber);
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+    }
+    return true;
+  }
+
+  public synchronized long getHitNumber() {
+    return hitNumber;
+  }
+
+  public synchronized long getMissNumber() {
+    return missNumber;
+  }
+
+  public synchronized int size() {
+    return costs.size();
+  }
+}
@@ -0,0 +1,74 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import query.Query;
+
+/**
+ * Lower bound of cost of any multi-replica strategy, to certify how far a design is from optimal. The least
+ * cost of a query over all column orders is reached by putting all its point columns first, followed by its
+ * most selective range column, so it is the product of the selectivity of all point columns and the least
+ * selectivity of range columns. It is a lower bound of the cost of the query on any replica.
+ * Under total cost, a query costs its least cost over replicas divided by the number of replicas reaching
+ * it, at most R. Under cask effect cost, the loads of R replicas sum up to the least cost over replicas of
+ * all queries, so the greatest load is at least 1/R of it. In both cases, the sum of least costs of queries
+ * divided by R is a lower bound. It is tight when every query can have its own best order, e.g. when there
+ * are as many replicas as distinct best orders of equally loaded queries.
+ */
+public class LowerBound {
+
+  private LowerBound() {
+  }
+
+  /**
+   * Least cost of each query over all column orders.
+   *
+   * @param selectivityTable selectivity of the workload
+   * @return an array of least cost, one for each query
+   */
+  public static double[] leastCost(SelectivityTable selectivityTable) {
+    double[] res = new double[selectivityTable.getQueryNum()];
+    for (int q = 0; q < res.length; q++) {
+      double product = 1;
+      double leastRange = 1;
+      boolean hasRange = false;
+      for (int c = 0; c < selectivityTable.getColNum(); c++) {
+        double s = selectivityTable.getSelectivity(q, c);
+        if (selectivityTable.isRange(q, c)) {
+          leastRange = hasRange ? Math.min(leastRange, s) : s;
+          hasRange = true;
+        } else {
+          product *= s;
+        }
+      }
+      res[q] = selectivityTable.getRowNum() * product * leastRange * Constant.COST_SCALE.doubleValue();
+    }
+    return res;
+  }
+
+  /**
+   * Lower bound of cost of any multi-replica strategy, the same for cask effect cost and total cost.
+   *
+   * @param dataTable     info of the data table
+   * @param queries       the workload
+   * @param replicaNumber number of replica
+   * @return the lower bound
+   */
+  public static double cost(DataTable dataTable, Query[] queries, int replicaNumber) {
+    double sum = 0;
+    for (double c : leastCost(new SelectivityTable(dataTable, queries))) sum += c;
+    return sum / replicaNumber;
+  }
+
+  /**
+   * Optimality gap of a cost, relative to the cost: (cost - lower bound) / cost.
+   *
+   * @param cost       cost of a design
+   * @param lowerBound lower bound of cost
+   * @return the gap, in [0, 1]
+   */
+  public static double gap(double cost, double lowerBound) {
+    if (cost <= 0 || Double.isInfinite(cost)) return cost <= 0 ? 0 : 1;
+    return Math.max(0, (cost - lowerBound) / cost);
+  }
+}
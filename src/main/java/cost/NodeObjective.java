@@ -0,0 +1,228 @@
+package cost;
+
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Cask effect cost on a cluster of heterogeneous nodes. Each node has a throughput factor, the scan work it
+ * does per unit of time relative to a reference node, and a capacity, the number of replicas it can host. The
+ * time of a query on a replica is its cost divided by the throughput of the node hosting the replica, queries
+ * are routed to the replicas of least time, ties split as in CostModel, and the normalized load of a node is
+ * the time of the queries routed to its replicas. The cost of a strategy is the greatest normalized load, so
+ * faster nodes absorb proportionally more scan work. With all throughput factors 1 and one replica per node,
+ * it is the cask effect cost of CostModel.
+ * The cost of a strategy is on the best assignment of its replicas to nodes found by assign(), so optimizers
+ * using this objective choose the column orders and the placement together.
+ */
+public class NodeObjective implements Objective {
+
+  private SelectivityTable selectivityTable;
+  private List<Double> throughputs = new ArrayList<>();
+  private List<Integer> capacities = new ArrayList<>();
+
+  /**
+   * Constructor, of no node
+   *
+   * @param dataTable info of the data table
+   * @param queries   the workload
+   */
+  public NodeObjective(DataTable dataTable, Query[] queries) {
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+  }
+
+  /**
+   * Nodes of given throughput factors, each hosting one replica
+   *
+   * @param dataTable   info of the data table
+   * @param queries     the workload
+   * @param throughputs throughput factor of each node
+   * @return the objective
+   */
+  public static NodeObjective ofNodes(DataTable dataTable, Query[] queries, double[] throughputs) {
+    NodeObjective res = new NodeObjective(dataTable, queries);
+    for (double t : throughputs) res.addNode(t, 1);
+    return res;
+  }
+
+  /**
+   * Add a node
+   *
+   * @param throughput scan work per unit of time, relative to a reference node
+   * @param capacity   number of replicas the node can host
+   * @return the objective
+   */
+  public NodeObjective addNode(double throughput, int capacity) {
+    if (throughput <= 0 || capacity <= 0) throw new IllegalArgumentException();
+    throughputs.add(throughput);
+    capacities.add(capacity);
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    return BigDecimal.valueOf(assign(multiReplicas).getCost());
+  }
+
+  /*
+   * Assign replicas to nodes
+   * 1. route queries with all throughput factors 1, and get the load of each replica
+   * 2. assign replicas to nodes, the greatest load to the fastest node with a free slot
+   * 3. loop [an improving move is found]
+   * 4.  | move a replica to another node with a free slot, or swap nodes of two replicas,
+   * 5.  | if it decreases the greatest normalized load
+   * 6. end loop
+   */
+  public Assignment assign(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    int replicaNumber = orders.size();
+    int capacity = 0;
+    for (int c : capacities) capacity += c;
+    if (replicaNumber > capacity)
+      throw new IllegalArgumentException("Nodes can host " + capacity + " replicas, less than " + replicaNumber);
+
+    double[][] costMatrix = new double[replicaNumber][];
+    for (int r = 0; r < replicaNumber; r++) costMatrix[r] = selectivityTable.cost(orders.get(r));
+
+    double[] load = CostModel.costOnEachReplica(costMatrix);
+    Integer[] byLoad = new Integer[replicaNumber];
+    for (int r = 0; r < replicaNumber; r++) byLoad[r] = r;
+    Arrays.sort(byLoad, (a, b) -> Double.compare(load[b], load[a]));
+    Integer[] byThroughput = new Integer[throughputs.size()];
+    for (int n = 0; n < byThroughput.length; n++) byThroughput[n] = n;
+    Arrays.sort(byThroughput, (a, b) -> Double.compare(throughputs.get(b), throughputs.get(a)));
+    int[] nodes = new int[replicaNumber];
+    int[] free = new int[throughputs.size()];
+    for (int n = 0; n < free.length; n++) free[n] = capacities.get(n);
+    // spread replicas over nodes before filling a node
+    int slot = 0;
+    for (int r : byLoad) {
+      while (free[byThroughput[slot]] == 0) slot = (slot + 1) % byThroughput.length;
+      nodes[r] = byThroughput[slot];
+      free[nodes[r]]--;
+      slot = (slot + 1) % byThroughput.length;
+    }
+
+    double best = cost(costMatrix, nodes);
+    boolean isImproved = true;
+    while (isImproved) {
+      isImproved = false;
+      for (int r = 0; r < replicaNumber; r++) {
+        for (int n = 0; n < free.length; n++) {
+          if (free[n] == 0 || n == nodes[r]) continue;
+          int old = nodes[r];
+          nodes[r] = n;
+          double c = cost(costMatrix, nodes);
+          if (c < best) {
+            best = c;
+            free[old]++;
+            free[n]--;
+            isImproved = true;
+          } else {
+            nodes[r] = old;
+          }
+        }
+        for (int s = r + 1; s < replicaNumber; s++) {
+          if (throughputs.get(nodes[r]).equals(throughputs.get(nodes[s]))) continue;
+          swap(nodes, r, s);
+          double c = cost(costMatrix, nodes);
+          if (c < best) {
+            best = c;
+            isImproved = true;
+          } else {
+            swap(nodes, r, s);
+          }
+        }
+      }
+    }
+    return new Assignment(orders, nodes, best);
+  }
+
+  private static void swap(int[] nodes, int r, int s) {
+    int temp = nodes[r];
+    nodes[r] = nodes[s];
+    nodes[s] = temp;
+  }
+
+  /**
+   * The greatest normalized load over nodes, for an assignment of replicas to nodes.
+   *
+   * @param costMatrix cost of each query on each replica, costMatrix[replica][query]
+   * @param nodes      node of each replica
+   * @return the greatest normalized load
+   */
+  private double cost(double[][] costMatrix, int[] nodes) {
+    double[][] timeMatrix = new double[costMatrix.length][];
+    for (int r = 0; r < costMatrix.length; r++) {
+      double throughput = throughputs.get(nodes[r]);
+      timeMatrix[r] = new double[costMatrix[r].length];
+      for (int q = 0; q < timeMatrix[r].length; q++) timeMatrix[r][q] = costMatrix[r][q] / throughput;
+    }
+    double[] time = CostModel.costOnEachReplica(timeMatrix);
+    double[] nodeLoad = new double[throughputs.size()];
+    for (int r = 0; r < time.length; r++) nodeLoad[nodes[r]] += time[r];
+    double res = 0;
+    for (double l : nodeLoad) res = Math.max(res, l);
+    return res;
+  }
+
+  /**
+   * A query costs at least its least cost over column orders, and the work of all queries is done by at
+   * most R nodes, so the greatest normalized load is at least the sum of least costs divided by the sum of
+   * the R greatest throughput factors.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    List<Double> sorted = new ArrayList<>(throughputs);
+    sorted.sort(Collections.reverseOrder());
+    double throughput = 0;
+    for (int n = 0; n < Math.min(replicaNumber, sorted.size()); n++) throughput += sorted.get(n);
+    if (throughput == 0) return 0;
+    double sum = 0;
+    for (double c : LowerBound.leastCost(selectivityTable)) sum += c;
+    return sum / throughput;
+  }
+
+  public int getNodeNumber() {
+    return throughputs.size();
+  }
+
+  /**
+   * An assignment of replicas to nodes: the order of each replica, the node hosting it, and the greatest
+   * normalized load.
+   */
+  public static class Assignment {
+    private List<int[]> orders;
+    private int[] nodes;
+    private double cost;
+
+    Assignment(List<int[]> orders, int[] nodes, double cost) {
+      this.orders = orders;
+      this.nodes = nodes;
+      this.cost = cost;
+    }
+
+    public List<int[]> getOrders() {
+      return orders;
+    }
+
+    public int[] getNodes() {
+      return nodes;
+    }
+
+    public double getCost() {
+      return cost;
+    }
+
+    @Override
+    public String toString() {
+      String str = "assignment: { ";
+      for (int r = 0; r < orders.size(); r++)
+        str += Arrays.toString(orders.get(r)) + "->node " + nodes[r] + " ";
+      return str + "} cost: " + cost;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package cost;
+
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+
+/**
+ * Objective function of a multi-replica strategy, to optimize something other than cask effect cost or total
+ * cost of a single workload, e.g. cost over several workload scenarios. Optimizers take one by withObjective(),
+ * and evaluate every strategy by it instead of CostModel. Costs are minimized.
+ * Optimizers need a cost for every strategy they visit, so an objective with a budget, e.g. of storage, does not
+ * reject a strategy over it. By convention such a strategy costs its cost times used / budget, the over-budget
+ * penalty: it grows with the overrun, and is 1 at the budget, so costs stay continuous across it.
+ */
+public interface Objective {
+
+  /**
+   * Cost of a strategy. It may be called from several threads at once.
+   *
+   * @param multiReplicas the strategy
+   * @return the cost
+   */
+  BigDecimal cost(MultiReplicas multiReplicas);
+
+  /**
+   * Lower bound of cost of any strategy of a replica number, see LowerBound.
+   *
+   * @param replicaNumber number of replica
+   * @return the lower bound, 0 if there is none
+   */
+  default double lowerBound(int replicaNumber) {
+    return 0;
+  }
+}
@@ -0,0 +1,234 @@
+package cost;
+
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Cask effect cost of a strategy of partial replicas, each storing a prefix of its column order. A query has
+ * predicates on the columns it narrows, selectivity less than 1, and is routed only to replicas storing all of
+ * them. Cost is bytes read: the rows scanned, as in SelectivityTable, times the width of the stored columns,
+ * relative to the width of a full row, so a full replica costs the same as in CostModel. A replica takes rows *
+ * width of its stored columns of storage, and the strategy may have a storage budget.
+ * The number of stored columns is a design dimension chosen here rather than by optimizers: for the column orders
+ * of a strategy, assign() drops trailing columns of replicas while every query stays covered, first to fit the
+ * budget and then while it decreases the cost. With unit widths the costs are those of CostModel on the replicas
+ * of assign(). A strategy still over the budget after dropping columns pays the over-budget penalty of
+ * Objective on its storage.
+ */
+public class PartialObjective implements Objective {
+
+  private SelectivityTable selectivityTable;
+  private double[] widths;
+  private double rowWidth;
+  private double storageBudget = Double.POSITIVE_INFINITY;
+  // columns each query has predicates on
+  private boolean[][] isTouched;
+
+  /**
+   * Constructor, of unit column widths and no storage budget
+   *
+   * @param dataTable info of the data table
+   * @param queries   the workload
+   */
+  public PartialObjective(DataTable dataTable, Query[] queries) {
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+    int colNum = dataTable.getColNum();
+    this.isTouched = new boolean[queries.length][colNum];
+    for (int q = 0; q < queries.length; q++)
+      for (int c = 0; c < colNum; c++)
+        isTouched[q][c] = !selectivityTable.isRange(q, c) || selectivityTable.getSelectivity(q, c) < 1;
+    double[] unit = new double[colNum];
+    Arrays.fill(unit, 1);
+    withColumnWidths(unit);
+  }
+
+  /**
+   * Set the width of each column, e.g. in bytes
+   *
+   * @param widths width of each column of the original table
+   * @return the objective
+   */
+  public PartialObjective withColumnWidths(double[] widths) {
+    if (widths.length != selectivityTable.getColNum()) throw new IllegalArgumentException();
+    this.widths = widths.clone();
+    this.rowWidth = 0;
+    for (double w : widths) {
+      if (w <= 0) throw new IllegalArgumentException();
+      rowWidth += w;
+    }
+    return this;
+  }
+
+  /**
+   * Set the storage budget of all replicas, in rows * column widths
+   *
+   * @param storageBudget the budget
+   * @return the objective
+   */
+  public PartialObjective withStorageBudget(double storageBudget) {
+    if (storageBudget <= 0) throw new IllegalArgumentException();
+    this.storageBudget = storageBudget;
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    int[] columnNumbers = columnNumbers(orders);
+    double res = cost(orders, columnNumbers);
+    double storage = storage(orders, columnNumbers);
+    if (storage > storageBudget) res *= storage / storageBudget;
+    return BigDecimal.valueOf(res);
+  }
+
+  /**
+   * The strategy with the stored columns of each replica chosen.
+   *
+   * @param multiReplicas the strategy
+   * @return replicas of the same orders, storing prefixes of them
+   */
+  public MultiReplicas assign(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    int[] columnNumbers = columnNumbers(orders);
+    DataTable dataTable = multiReplicas.getReplicas().keySet().iterator().next().getOriginalDataTable();
+    MultiReplicas res = new MultiReplicas();
+    for (int r = 0; r < orders.size(); r++) res.add(new Replica(dataTable, orders.get(r), 0, columnNumbers[r]));
+    return res;
+  }
+
+  /**
+   * Storage of the strategy with the stored columns chosen by assign(), in rows * column widths.
+   *
+   * @param multiReplicas the strategy
+   * @return the storage
+   */
+  public double storage(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    return storage(orders, columnNumbers(orders));
+  }
+
+  /*
+   * Choose stored columns
+   * 1. store all columns of every replica
+   * 2. loop [the storage is over the budget]
+   * 3.  | among dropping trailing columns of a replica with every query still covered, take the one of least cost
+   * 4. end loop
+   * 5. loop [an improving drop is found]
+   * 6.  | drop trailing columns of a replica with every query still covered, if it decreases the cost
+   * 7. end loop
+   */
+  private int[] columnNumbers(List<int[]> orders) {
+    int replicaNumber = orders.size();
+    int[] columnNumbers = new int[replicaNumber];
+    double[][] costMatrix = new double[replicaNumber][];
+    for (int r = 0; r < replicaNumber; r++) {
+      columnNumbers[r] = orders.get(r).length;
+      costMatrix[r] = cost(orders.get(r), columnNumbers[r]);
+    }
+    double best = CostModel.cost(costMatrix, true);
+    double storage = storage(orders, columnNumbers);
+    while (storage > storageBudget) {
+      int bestReplica = -1, bestNumber = -1;
+      double bestCost = Double.POSITIVE_INFINITY;
+      for (int r = 0; r < replicaNumber; r++) {
+        double[] old = costMatrix[r];
+        for (int k = 1; k < columnNumbers[r]; k++) {
+          costMatrix[r] = cost(orders.get(r), k);
+          if (!isCovered(costMatrix)) continue;
+          double c = CostModel.cost(costMatrix, true);
+          if (c < bestCost) {
+            bestCost = c;
+            bestReplica = r;
+            bestNumber = k;
+          }
+        }
+        costMatrix[r] = old;
+      }
+      if (bestReplica == -1) break;
+      columnNumbers[bestReplica] = bestNumber;
+      costMatrix[bestReplica] = cost(orders.get(bestReplica), bestNumber);
+      best = bestCost;
+      storage = storage(orders, columnNumbers);
+    }
+    boolean isImproved = true;
+    while (isImproved) {
+      isImproved = false;
+      for (int r = 0; r < replicaNumber; r++) {
+        for (int k = 1; k < columnNumbers[r]; k++) {
+          double[] old = costMatrix[r];
+          costMatrix[r] = cost(orders.get(r), k);
+          double c = isCovered(costMatrix) ? CostModel.cost(costMatrix, true) : Double.POSITIVE_INFINITY;
+          if (c < best) {
+            best = c;
+            columnNumbers[r] = k;
+            isImproved = true;
+          } else {
+            costMatrix[r] = old;
+          }
+        }
+      }
+    }
+    return columnNumbers;
+  }
+
+  private static boolean isCovered(double[][] costMatrix) {
+    for (int q = 0; q < costMatrix[0].length; q++) {
+      boolean isCovered = false;
+      for (int r = 0; r < costMatrix.length && !isCovered; r++) isCovered = costMatrix[r][q] < Double.POSITIVE_INFINITY;
+      if (!isCovered) return false;
+    }
+    return true;
+  }
+
+  private double cost(List<int[]> orders, int[] columnNumbers) {
+    double[][] costMatrix = new double[orders.size()][];
+    for (int r = 0; r < costMatrix.length; r++) costMatrix[r] = cost(orders.get(r), columnNumbers[r]);
+    return CostModel.cost(costMatrix, true);
+  }
+
+  private double storage(List<int[]> orders, int[] columnNumbers) {
+    double res = 0;
+    for (int r = 0; r < orders.size(); r++)
+      for (int i = 0; i < columnNumbers[r]; i++) res += widths[orders.get(r)[i]];
+    return res * selectivityTable.getRowNum();
+  }
+
+  /**
+   * Cost of evaluating all queries on a partial replica, Double.POSITIVE_INFINITY for a query it does not cover.
+   *
+   * @param order        column order of the replica
+   * @param columnNumber number of leading columns stored
+   * @return an array of cost, one for each query
+   */
+  public double[] cost(int[] order, int columnNumber) {
+    double[] res = selectivityTable.cost(order);
+    double width = 0;
+    for (int i = 0; i < columnNumber; i++) width += widths[order[i]];
+    for (int q = 0; q < res.length; q++) {
+      boolean isCovering = true;
+      for (int i = columnNumber; i < order.length && isCovering; i++) isCovering = !isTouched[q][order[i]];
+      res[q] = isCovering ? res[q] * width / rowWidth : Double.POSITIVE_INFINITY;
+    }
+    return res;
+  }
+
+  /**
+   * A query reads at least its least cost in rows, and the bytes of the columns it has predicates on.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    double[] leastCost = LowerBound.leastCost(selectivityTable);
+    double sum = 0;
+    for (int q = 0; q < leastCost.length; q++) {
+      double width = 0;
+      for (int c = 0; c < widths.length; c++) if (isTouched[q][c]) width += widths[c];
+      sum += leastCost[q] * width / rowWidth;
+    }
+    return sum / replicaNumber;
+  }
+}
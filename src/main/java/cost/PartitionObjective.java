@@ -0,0 +1,178 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Cask effect cost of a strategy when each replica may promote a prefix of its column order to the partition key,
+ * same as Replica.scanRows with a partition key. A query restricting all partition key columns by points reads a
+ * single partition. A query with a range on a partition key column fans out to all partitions, is narrowed only
+ * by clustering columns, and pays PARTITION_SEEK_ROWS rows for each partition. A partition holds rows / partitions
+ * rows on average, and a replica is feasible if it is at most the partition row limit, so a table too large for a
+ * single partition must spread over partitions.
+ * The partition key length is a design dimension chosen here rather than by optimizers: for the column orders of a
+ * strategy, assign() picks the feasible partition key length of each replica giving the least cask effect cost.
+ * With partition key length 0 for all replicas, the cost is that of CostModel.
+ */
+public class PartitionObjective implements Objective {
+
+  private SelectivityTable selectivityTable;
+  private double[] distinctNum;
+  private double partitionRowLimit = Constant.PARTITION_ROW_LIMIT;
+
+  /**
+   * Constructor
+   *
+   * @param dataTable info of the data table
+   * @param queries   the workload
+   */
+  public PartitionObjective(DataTable dataTable, Query[] queries) {
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+    this.distinctNum = new double[dataTable.getColNum()];
+    for (int c = 0; c < distinctNum.length; c++) distinctNum[c] = dataTable.getColHistograms()[c].getDistinctNum();
+  }
+
+  /**
+   * Set the greatest number of rows in a partition, Double.POSITIVE_INFINITY for no limit
+   *
+   * @param partitionRowLimit the limit
+   * @return the objective
+   */
+  public PartitionObjective withPartitionRowLimit(double partitionRowLimit) {
+    if (partitionRowLimit <= 0) throw new IllegalArgumentException();
+    this.partitionRowLimit = partitionRowLimit;
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    return BigDecimal.valueOf(cost(orders, partitionKeyLengths(orders)));
+  }
+
+  /**
+   * The strategy with the partition key of each replica chosen.
+   *
+   * @param multiReplicas the strategy
+   * @return replicas of the same orders, with partition keys
+   */
+  public MultiReplicas assign(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    int[] lengths = partitionKeyLengths(orders);
+    DataTable dataTable = multiReplicas.getReplicas().keySet().iterator().next().getOriginalDataTable();
+    MultiReplicas res = new MultiReplicas();
+    for (int r = 0; r < orders.size(); r++) res.add(new Replica(dataTable, orders.get(r), lengths[r]));
+    return res;
+  }
+
+  /*
+   * Choose partition key lengths
+   * 1. give each replica the shortest partition key within the row limit
+   * 2. loop [an improving length is found]
+   * 3.  | change the partition key length of a replica to another one within the row limit,
+   * 4.  | if it decreases the cask effect cost
+   * 5. end loop
+   */
+  private int[] partitionKeyLengths(List<int[]> orders) {
+    int replicaNumber = orders.size();
+    int[] lengths = new int[replicaNumber];
+    double[][] costMatrix = new double[replicaNumber][];
+    for (int r = 0; r < replicaNumber; r++) {
+      lengths[r] = shortestLength(orders.get(r));
+      costMatrix[r] = cost(orders.get(r), lengths[r]);
+    }
+    double best = CostModel.cost(costMatrix, true);
+    boolean isImproved = true;
+    while (isImproved) {
+      isImproved = false;
+      for (int r = 0; r < replicaNumber; r++) {
+        int[] order = orders.get(r);
+        for (int p = shortestLength(order); p < order.length; p++) {
+          if (p == lengths[r]) continue;
+          double[] old = costMatrix[r];
+          costMatrix[r] = cost(order, p);
+          double c = CostModel.cost(costMatrix, true);
+          if (c < best) {
+            best = c;
+            lengths[r] = p;
+            isImproved = true;
+          } else {
+            costMatrix[r] = old;
+          }
+        }
+      }
+    }
+    return lengths;
+  }
+
+  private double cost(List<int[]> orders, int[] lengths) {
+    double[][] costMatrix = new double[orders.size()][];
+    for (int r = 0; r < costMatrix.length; r++) costMatrix[r] = cost(orders.get(r), lengths[r]);
+    return CostModel.cost(costMatrix, true);
+  }
+
+  /**
+   * The shortest partition key within the row limit, the longest one if none is.
+   */
+  private int shortestLength(int[] order) {
+    for (int p = 0; p < order.length - 1; p++)
+      if (selectivityTable.getRowNum() / partitionNumber(order, p) <= partitionRowLimit) return p;
+    return order.length - 1;
+  }
+
+  /**
+   * Estimate the number of partitions, as Replica.getPartitionNumber
+   *
+   * @param order              column order of the replica
+   * @param partitionKeyLength number of leading columns in the partition key
+   * @return the number of partitions
+   */
+  public double partitionNumber(int[] order, int partitionKeyLength) {
+    double res = 1;
+    for (int i = 0; i < partitionKeyLength; i++) res *= distinctNum[order[i]];
+    return Math.min(res, selectivityTable.getRowNum());
+  }
+
+  /**
+   * Cost of evaluating all queries on a replica, same as CostModel.cost(Replica, Query) of a replica with the
+   * partition key.
+   *
+   * @param order              column order of the replica
+   * @param partitionKeyLength number of leading columns in the partition key
+   * @return an array of cost, one for each query
+   */
+  public double[] cost(int[] order, int partitionKeyLength) {
+    double[] res = selectivityTable.cost(order);
+    if (partitionKeyLength == 0) return res;
+    double seekRows = partitionNumber(order, partitionKeyLength) * Constant.PARTITION_SEEK_ROWS;
+    for (int q = 0; q < res.length; q++) {
+      boolean isFanOut = false;
+      for (int i = 0; i < partitionKeyLength && !isFanOut; i++) isFanOut = selectivityTable.isRange(q, order[i]);
+      if (!isFanOut) continue;
+      double rows = selectivityTable.getRowNum();
+      for (int i = partitionKeyLength; i < order.length; i++) {
+        rows *= selectivityTable.getSelectivity(q, order[i]);
+        if (selectivityTable.isRange(q, order[i])) break;
+      }
+      res[q] = (rows + seekRows) * Constant.COST_SCALE.doubleValue();
+    }
+    return res;
+  }
+
+  /**
+   * A fanned out query reads at least the rows of an order starting with the clustering columns, so the lower
+   * bound of LowerBound holds.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    double sum = 0;
+    for (double c : LowerBound.leastCost(selectivityTable)) sum += c;
+    return sum / replicaNumber;
+  }
+}
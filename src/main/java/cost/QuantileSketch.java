@@ -0,0 +1,85 @@
+package cost;
+
+import java.util.Arrays;
+
+/**
+ * A streaming sketch of weighted quantiles of non-negative values, of relative accuracy. Values are counted in
+ * logarithmic buckets, bucket i holding values in (g^(i-1), g^i] for g = (1 + a) / (1 - a), and a quantile is
+ * estimated by the middle of its bucket, within a relative error a of the exact quantile. Adding a value takes
+ * constant time, and a quantile takes time linear in the number of buckets between the least and greatest
+ * values, so a sketch is as cheap as a sum for a workload of costs spanning a few orders of magnitude.
+ */
+public class QuantileSketch {
+
+  private double gamma;
+  private double logGamma;
+  // weights of buckets minIndex, minIndex + 1, ..., and of zero values
+  private double[] weights = new double[0];
+  private int minIndex = 0;
+  private double zeroWeight = 0;
+  private double totalWeight = 0;
+
+  /**
+   * Constructor
+   *
+   * @param relativeAccuracy the relative error of quantiles, in (0, 1)
+   */
+  public QuantileSketch(double relativeAccuracy) {
+    if (relativeAccuracy <= 0 || relativeAccuracy >= 1) throw new IllegalArgumentException();
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(gamma);
+  }
+
+  /**
+   * Add a value
+   *
+   * @param value  the value, non-negative
+   * @param weight its weight, non-negative
+   */
+  public void add(double value, double weight) {
+    if (value < 0 || weight < 0) throw new IllegalArgumentException();
+    totalWeight += weight;
+    if (value == 0) {
+      zeroWeight += weight;
+      return;
+    }
+    int index = (int) Math.ceil(Math.log(value) / logGamma);
+    if (weights.length == 0) {
+      weights = new double[1];
+      minIndex = index;
+    } else if (index < minIndex) {
+      double[] grown = new double[weights.length + minIndex - index];
+      System.arraycopy(weights, 0, grown, minIndex - index, weights.length);
+      weights = grown;
+      minIndex = index;
+    } else if (index >= minIndex + weights.length) {
+      weights = Arrays.copyOf(weights, index - minIndex + 1);
+    }
+    weights[index - minIndex] += weight;
+  }
+
+  /**
+   * Estimate a quantile, the least value v such that values not greater than v weigh at least quantile * total
+   * weight.
+   *
+   * @param quantile the quantile, in [0, 1]
+   * @return the estimate, 0 for an empty sketch
+   */
+  public double quantile(double quantile) {
+    if (quantile < 0 || quantile > 1) throw new IllegalArgumentException();
+    double rank = quantile * totalWeight;
+    double cumulative = zeroWeight;
+    if (totalWeight == 0 || (cumulative >= rank && zeroWeight > 0)) return 0;
+    for (int i = 0; i < weights.length; i++) {
+      cumulative += weights[i];
+      if (cumulative >= rank && weights[i] > 0) return 2 * Math.pow(gamma, minIndex + i) / (gamma + 1);
+    }
+    // rounding of cumulative weights, the greatest bucket
+    for (int i = weights.length - 1; ; i--)
+      if (weights[i] > 0) return 2 * Math.pow(gamma, minIndex + i) / (gamma + 1);
+  }
+
+  public double getTotalWeight() {
+    return totalWeight;
+  }
+}
@@ -76,4 +76,22 @@ public class QueryAnalysis {
       res[i] = order[i];
     return res;
   }
+
+  /**
+   * Get the predicate pattern of a query, a bit mask where the i-th bit is set if the query has a range
+   * predicate on i-th column of the original table, and cleared if it has a point predicate.
+   *
+   * @param query the query
+   * @return the predicate pattern
+   */
+  public static long getPredicatePattern(Query query) {
+    MiniQuery[] miniQueries = query.getMiniQueries();
+    if (miniQueries.length > Long.SIZE)
+      throw new IllegalArgumentException("Too many columns for a predicate pattern.");
+    long pattern = 0;
+    for (int i = 0; i < miniQueries.length; i++)
+      if (miniQueries[i] instanceof RangeQuery)
+        pattern |= 1L << i;
+    return pattern;
+  }
 }
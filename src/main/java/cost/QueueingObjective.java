@@ -0,0 +1,218 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Latency of a strategy under concurrent load, in seconds. Queries of the workload arrive at an arrival rate,
+ * each query of the workload equally likely, and are routed as in CostModel, to the least cost replicas with ties
+ * split. Each replica is an M/M/c queue of c servers, the service parallelism of a node: its arrival rate is its
+ * share of queries times the arrival rate, and its mean service time is the routed cost per query over the scan
+ * rate of a server, in rows per second. The latency of a replica is its response time, waiting time in the queue
+ * by the Erlang C formula plus service time, and the latency of the strategy is either the mean over queries or a
+ * quantile, e.g. p99, of the mixture of response times of replicas.
+ * A replica close to saturation has a latency growing without bound, and a saturated one has none. Utilization is
+ * capped at QUEUEING_MAX_UTILIZATION, as a budget: a strategy with replicas over the cap costs its latency at the
+ * cap, with the over-budget penalty of Objective on the greatest utilization. Saturated strategies are thus still
+ * ranked, by how far they are from keeping up with the load.
+ */
+public class QueueingObjective implements Objective {
+
+  public enum Metric {MEAN, QUANTILE}
+
+  private SelectivityTable selectivityTable;
+  private double arrivalRate;
+  private int serverNumber;
+  private double scanRate = Constant.QUEUEING_SCAN_RATE;
+  private Metric metric = Metric.MEAN;
+  private double quantile = Constant.QUEUEING_QUANTILE;
+
+  /**
+   * Constructor, of mean latency
+   *
+   * @param dataTable    info of the data table
+   * @param queries      the workload
+   * @param arrivalRate  queries per second arriving to the strategy
+   * @param serverNumber number of queries a replica serves at once
+   */
+  public QueueingObjective(DataTable dataTable, Query[] queries, double arrivalRate, int serverNumber) {
+    if (arrivalRate <= 0 || serverNumber <= 0) throw new IllegalArgumentException();
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+    this.arrivalRate = arrivalRate;
+    this.serverNumber = serverNumber;
+  }
+
+  /**
+   * Set the rows a server scans per second, for cost of CostModel divided by COST_SCALE
+   *
+   * @param scanRate the scan rate
+   * @return the objective
+   */
+  public QueueingObjective withScanRate(double scanRate) {
+    if (scanRate <= 0) throw new IllegalArgumentException();
+    this.scanRate = scanRate;
+    return this;
+  }
+
+  /**
+   * Set the latency minimized, mean or a quantile
+   *
+   * @param metric the metric
+   * @return the objective
+   */
+  public QueueingObjective withMetric(Metric metric) {
+    this.metric = metric;
+    return this;
+  }
+
+  /**
+   * Minimize a quantile of latency
+   *
+   * @param quantile the quantile, e.g. 0.99 for p99
+   * @return the objective
+   */
+  public QueueingObjective withQuantile(double quantile) {
+    if (quantile <= 0 || quantile >= 1) throw new IllegalArgumentException();
+    this.quantile = quantile;
+    this.metric = Metric.QUANTILE;
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    double[][] costMatrix = new double[orders.size()][];
+    for (int r = 0; r < costMatrix.length; r++) costMatrix[r] = selectivityTable.cost(orders.get(r));
+    return BigDecimal.valueOf(latency(costMatrix));
+  }
+
+  /*
+   * Latency of a cost matrix
+   * 1. route queries to the least cost replicas, ties split, summing cost and share of queries of each replica
+   * 2. for each replica with queries
+   * 3.  | arrival rate = share / queries * arrival rate, mean service time = cost / share / scan rate
+   * 4.  | utilization = arrival rate * service time / servers, capped at the max utilization
+   * 5. end for
+   * 6. mean: sum of response times of replicas, weighted by share
+   *    quantile: the time t at which the weighted tail probability of response times of replicas is 1 - quantile
+   * 7. return the latency times the greatest utilization over the cap, if any
+   */
+  private double latency(double[][] costMatrix) {
+    int replicaNumber = costMatrix.length;
+    int queryNum = selectivityTable.getQueryNum();
+    double[] load = new double[replicaNumber];
+    double[] share = new double[replicaNumber];
+    for (int q = 0; q < queryNum; q++) {
+      double min = Double.POSITIVE_INFINITY;
+      int number = 0;
+      for (double[] row : costMatrix) {
+        if (row[q] < min) {
+          min = row[q];
+          number = 1;
+        } else if (row[q] == min) number++;
+      }
+      for (int r = 0; r < replicaNumber; r++) {
+        if (costMatrix[r][q] != min) continue;
+        load[r] += min / number;
+        share[r] += 1.0 / number;
+      }
+    }
+    double rate = scanRate * Constant.COST_SCALE.doubleValue();
+    double penalty = 1;
+    Queue[] queues = new Queue[replicaNumber];
+    for (int r = 0; r < replicaNumber; r++) {
+      if (share[r] == 0) continue;
+      double lambda = arrivalRate * share[r] / queryNum;
+      double serviceTime = load[r] / share[r] / rate;
+      double utilization = lambda * serviceTime / serverNumber;
+      if (utilization > Constant.QUEUEING_MAX_UTILIZATION) {
+        penalty = Math.max(penalty, utilization / Constant.QUEUEING_MAX_UTILIZATION);
+        lambda = Constant.QUEUEING_MAX_UTILIZATION * serverNumber / serviceTime;
+      }
+      queues[r] = new Queue(lambda, serviceTime, serverNumber, share[r] / queryNum);
+    }
+    if (metric == Metric.MEAN) {
+      double res = 0;
+      for (Queue queue : queues) if (queue != null) res += queue.weight * queue.meanResponseTime();
+      return res * penalty;
+    }
+    return quantile(queues) * penalty;
+  }
+
+  /**
+   * The quantile of the mixture of response times, by bisection on the tail probability.
+   */
+  private double quantile(Queue[] queues) {
+    double tail = 1 - quantile;
+    double high = 0;
+    for (Queue queue : queues) if (queue != null) high = Math.max(high, queue.meanResponseTime());
+    if (high == 0) return 0;
+    while (tail(queues, high) > tail) high *= 2;
+    double low = 0;
+    for (int i = 0; i < 100 && high - low > high * 1e-9; i++) {
+      double mid = (low + high) / 2;
+      if (tail(queues, mid) > tail) low = mid;
+      else high = mid;
+    }
+    return high;
+  }
+
+  private static double tail(Queue[] queues, double t) {
+    double res = 0;
+    for (Queue queue : queues) if (queue != null) res += queue.weight * queue.tail(t);
+    return res;
+  }
+
+  /**
+   * Mean latency is at least the mean service time, each query served at its least cost.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    if (metric != Metric.MEAN) return 0;
+    double sum = 0;
+    for (double c : LowerBound.leastCost(selectivityTable)) sum += c;
+    return sum / selectivityTable.getQueryNum() / (scanRate * Constant.COST_SCALE.doubleValue());
+  }
+
+  /**
+   * An M/M/c queue, and the share of queries it serves.
+   */
+  private static class Queue {
+    private double mu;
+    private double theta;
+    private double waitProbability;
+    private double weight;
+
+    Queue(double lambda, double serviceTime, int c, double weight) {
+      this.mu = 1 / serviceTime;
+      this.theta = c * mu - lambda;
+      this.weight = weight;
+      // Erlang C from the recursion of Erlang B
+      double a = lambda * serviceTime;
+      double b = 1;
+      for (int k = 1; k <= c; k++) b = a * b / (k + a * b);
+      this.waitProbability = b / (1 - a / c * (1 - b));
+    }
+
+    double meanResponseTime() {
+      return waitProbability / theta + 1 / mu;
+    }
+
+    /**
+     * Probability of response time over t: no wait with probability 1 - C, otherwise an exponential wait of rate
+     * c * mu - lambda, followed by an exponential service of rate mu.
+     */
+    double tail(double t) {
+      double service = Math.exp(-mu * t);
+      double waitAndService = Math.abs(theta - mu) < 1e-12 * mu
+              ? (1 + mu * t) * service
+              : (theta * service - mu * Math.exp(-theta * t)) / (theta - mu);
+      return (1 - waitProbability) * service + waitProbability * waitAndService;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package cost;
+
+import constant.Constant;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Estimate the cost of a multi-replica strategy on a stratified random sample of the workload, instead of
+ * evaluating every query. Queries are stratified by predicate pattern (see QueryAnalysis.getPredicatePattern),
+ * the sample size of each stratum is proportional to its total query weight, and inside a stratum queries are
+ * drawn with replacement with probability proportional to Query.getWeight(). A stratum that is not larger than
+ * its share of the sample is evaluated completely.
+ * The load of each replica is estimated with the Hansen-Hurwitz estimator, so the result comes with a
+ * confidence interval, which optimizers use to decide whether a candidate should be confirmed on the full
+ * workload. The sample is drawn once and kept until resample() is called, so that all candidates of a run are
+ * compared on the same queries. Set a seed by withRandomSeed to draw the same sample again.
+ */
+public class SampledCostModel {
+
+  private Query[] queries;
+  private int sampleSize;
+  private double confidenceZ;
+  private int loadBalanceFactor = 1;
+  private boolean isWeighted = false;
+  private Random random = new Random();
+
+  private List<Stratum> strata;
+
+  /**
+   * Constructor, using default sample size and confidence in Constant class.
+   *
+   * @param queries the workload
+   */
+  public SampledCostModel(Query[] queries) {
+    this(queries, Constant.SAMPLE_SIZE, Constant.SAMPLE_CONFIDENCE_Z);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param queries     the workload
+   * @param sampleSize  the number of queries drawn from the workload
+   * @param confidenceZ the z-value of the confidence interval, e.g. 1.96 for 95% confidence
+   */
+  public SampledCostModel(Query[] queries, int sampleSize, double confidenceZ) {
+    if (queries == null || queries.length == 0 || sampleSize <= 0 || confidenceZ < 0)
+      throw new IllegalArgumentException();
+    this.queries = queries;
+    this.sampleSize = sampleSize;
+    this.confidenceZ = confidenceZ;
+    resample();
+  }
+
+  /**
+   * Set the load balance factor used to route sampled queries, same as in CostModel.costOnEachReplica.
+   *
+   * @param loadBalanceFactor the load balance factor
+   * @return the sampled cost model
+   */
+  public SampledCostModel withLoadBalanceFactor(int loadBalanceFactor) {
+    this.loadBalanceFactor = loadBalanceFactor;
+    return this;
+  }
+
+  /**
+   * Set if the cost of a query is multiplied by its weight. CostModel ignores weights, while Rita uses them.
+   *
+   * @param isWeighted true to multiply costs by query weights
+   * @return the sampled cost model
+   */
+  public SampledCostModel withWeightedCost(boolean isWeighted) {
+    this.isWeighted = isWeighted;
+    return this;
+  }
+
+  /**
+   * Set the seed of the random number generator, and draw a new sample with it, to reproduce a run. A run
+   * resumed from a checkpoint should use a sampled cost model with the same seed as the original run, so that
+   * candidates are screened on the same sample.
+   *
+   * @param seed the seed
+   * @return the sampled cost model
+   */
+  public SampledCostModel withRandomSeed(long seed) {
+    this.random = new Random(seed);
+    return resample();
+  }
+
+  /**
+   * Draw a new sample from the workload.
+   *
+   * @return the sampled cost model
+   */
+  public SampledCostModel resample() {
+    Map<Long, List<Query>> groups = new LinkedHashMap<>();
+    double totalWeight = 0;
+    for (Query q : queries) {
+      groups.computeIfAbsent(QueryAnalysis.getPredicatePattern(q), k -> new ArrayList<>()).add(q);
+      totalWeight += q.getWeight();
+    }
+    strata = new ArrayList<>();
+    for (List<Query> group : groups.values()) {
+      double groupWeight = 0;
+      for (Query q : group) groupWeight += q.getWeight();
+      double share = totalWeight > 0 ? groupWeight / totalWeight : (double) group.size() / queries.length;
+      int n = Math.max(2, (int) Math.round(sampleSize * share));
+      strata.add(new Stratum(group.toArray(new Query[0]), groupWeight, n));
+    }
+    return this;
+  }
+
+  /**
+   * Estimate the cost of a multi-replica strategy on the sample.
+   *
+   * @param multiReplicas the multi-replica strategy
+   * @param isNewMethod   true for cask effect cost (max load of replicas), false for total cost
+   * @return the estimate, with its confidence interval
+   */
+  public Estimate estimate(MultiReplicas multiReplicas, boolean isNewMethod) {
+    Replica[] replicas = multiReplicas.getReplicasArray(true);
+    double[] load = new double[replicas.length];
+    double[] variance = new double[replicas.length];
+    double total = 0;
+    double totalVariance = 0;
+    for (Stratum stratum : strata) {
+      if (stratum.isCensus()) {
+        for (Query q : stratum.queries) {
+          double[] x = routedCost(replicas, q);
+          for (int i = 0; i < replicas.length; i++) load[i] += x[i];
+          total += x[replicas.length];
+        }
+        continue;
+      }
+      int n = stratum.sample.length;
+      double[][] y = new double[n][];
+      double[] sum = new double[replicas.length + 1];
+      for (int j = 0; j < n; j++) {
+        Query q = stratum.queries[stratum.sample[j]];
+        double[] x = routedCost(replicas, q);
+        double p = stratum.probability(stratum.sample[j]);
+        y[j] = new double[replicas.length + 1];
+        for (int i = 0; i <= replicas.length; i++) y[j][i] = x[i] / p;
+        for (int i = 0; i <= replicas.length; i++) sum[i] += y[j][i];
+      }
+      for (int i = 0; i <= replicas.length; i++) {
+        double mean = sum[i] / n;
+        double squares = 0;
+        for (int j = 0; j < n; j++) squares += (y[j][i] - mean) * (y[j][i] - mean);
+        double var = squares / (n - 1) / n;
+        if (i < replicas.length) {
+          load[i] += mean;
+          variance[i] += var;
+        } else {
+          total += mean;
+          totalVariance += var;
+        }
+      }
+    }
+    if (!isNewMethod) {
+      double halfWidth = confidenceZ * Math.sqrt(totalVariance);
+      return new Estimate(total, Math.max(0, total - halfWidth), total + halfWidth);
+    }
+    // the maximum of the estimated loads, bounded by the maximum of per-replica bounds
+    double value = 0;
+    double lower = 0;
+    double upper = 0;
+    for (int i = 0; i < load.length; i++) {
+      double halfWidth = confidenceZ * Math.sqrt(variance[i]);
+      value = Math.max(value, load[i]);
+      lower = Math.max(lower, load[i] - halfWidth);
+      upper = Math.max(upper, load[i] + halfWidth);
+    }
+    return new Estimate(value, lower, upper);
+  }
+
+  /**
+   * Route a query to the least cost replicas, and get the cost it puts on each replica. The last element
+   * of the result is the cost of the query in total cost, same as CostModel.cost(MultiReplicas, Query).
+   * Partial replicas not covering the query get no cost, as in CostModel.costOnEachReplica.
+   *
+   * @param replicas the replicas
+   * @param query    the query
+   * @return cost on each replica, followed by the cost in total cost
+   */
+  private double[] routedCost(Replica[] replicas, Query query) {
+    BigDecimal[] costArray = CostModel.getCostArray(replicas, query);
+    int[] order = CostModel.getLeastCostConfOrder(costArray);
+    if (costArray[order[0]] == null) throw new IllegalArgumentException("No replica covers the query");
+    int leastCostNumber = 1;
+    for (int i = 1; i < costArray.length; i++)
+      if (costArray[order[i]] != null && costArray[order[i]].compareTo(costArray[order[0]]) == 0) leastCostNumber++;
+    int covering = 0;
+    for (BigDecimal c : costArray) if (c != null) covering++;
+    int number = Math.min(Math.max(leastCostNumber, loadBalanceFactor), covering);
+    double weight = isWeighted ? query.getWeight() : 1;
+    double[] res = new double[replicas.length + 1];
+    for (int i = 0; i < number; i++)
+      res[order[i]] = costArray[order[i]].doubleValue() * weight / number;
+    res[replicas.length] = costArray[order[0]].doubleValue() * weight / leastCostNumber;
+    return res;
+  }
+
+  public int getSampleSize() {
+    int n = 0;
+    for (Stratum stratum : strata)
+      n += stratum.isCensus() ? stratum.queries.length : stratum.sample.length;
+    return n;
+  }
+
+  /**
+   * A group of queries sharing the same predicate pattern, and the indexes of sampled queries in it.
+   */
+  private class Stratum {
+    private Query[] queries;
+    private double totalWeight;
+    private int[] sample;
+
+    Stratum(Query[] queries, double totalWeight, int n) {
+      this.queries = queries;
+      this.totalWeight = totalWeight;
+      if (n >= queries.length) return;
+      double[] cumulative = new double[queries.length];
+      for (int i = 0; i < queries.length; i++)
+        cumulative[i] = (i == 0 ? 0 : cumulative[i - 1]) + weight(i);
+      sample = new int[n];
+      for (int j = 0; j < n; j++) {
+        int idx = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[queries.length - 1]);
+        if (idx < 0) idx = -idx - 1;
+        sample[j] = Math.min(idx, queries.length - 1);
+      }
+    }
+
+    boolean isCensus() {
+      return sample == null;
+    }
+
+    /**
+     * weight of a query in the stratum, queries are drawn uniformly if the stratum has no weight
+     */
+    double weight(int i) {
+      return totalWeight > 0 ? queries[i].getWeight() : 1;
+    }
+
+    double probability(int i) {
+      return totalWeight > 0 ? queries[i].getWeight() / totalWeight : 1.0 / queries.length;
+    }
+  }
+
+  /**
+   * An estimated cost, with lower and upper bound of its confidence interval.
+   */
+  public static class Estimate {
+    private double value;
+    private double lowerBound;
+    private double upperBound;
+
+    Estimate(double value, double lowerBound, double upperBound) {
+      this.value = value;
+      this.lowerBound = lowerBound;
+      this.upperBound = upperBound;
+    }
+
+    public double getValue() {
+      return value;
+    }
+
+    public double getLowerBound() {
+      return lowerBound;
+    }
+
+    public double getUpperBound() {
+      return upperBound;
+    }
+  }
+}
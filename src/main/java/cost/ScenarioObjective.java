@@ -0,0 +1,225 @@
+package cost;
+
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Cask effect cost of a strategy over several weighted workload scenarios, so that a design stays good when the
+ * workload drifts. A scenario is a workload, e.g. a snapshot of queries, with an optional weight of each query
+ * scaling its cost, and a probability weight of the scenario. The objective is
+ * 1. EXPECTED: the weighted mean of cask effect cost over scenarios,
+ * 2. MINIMAX: the greatest cask effect cost over scenarios.
+ * Uncertain query weights of a single workload are modeled by sampled scenarios, see ofWeightUncertainty().
+ * Costs are evaluated by SelectivityTable, and scenarios of a strategy are evaluated in parallel. Query weights
+ * scale the cost of a query on every replica alike, so a query is routed to the same replicas as without them.
+ */
+public class ScenarioObjective implements Objective, AutoCloseable {
+
+  public enum Mode {
+    EXPECTED, MINIMAX
+  }
+
+  private DataTable dataTable;
+  private List<Scenario> scenarios = new ArrayList<>();
+  private Mode mode = Mode.EXPECTED;
+  private int threadNumber = Runtime.getRuntime().availableProcessors();
+  private ExecutorService threadPool = null;
+
+  /**
+   * Constructor, of no scenario
+   *
+   * @param dataTable info of the data table
+   */
+  public ScenarioObjective(DataTable dataTable) {
+    this.dataTable = dataTable;
+  }
+
+  /**
+   * Model uncertain query weights by scenarios. Each scenario multiplies the cost of each query by a log-normal
+   * factor of median 1, and all scenarios are equally likely.
+   *
+   * @param dataTable      info of the data table
+   * @param queries        the workload
+   * @param deviation      standard deviation of the logarithm of factors, e.g. 0.3 for about +-30%
+   * @param scenarioNumber number of scenarios
+   * @param seed           seed of the random number generator
+   * @return the objective
+   */
+  public static ScenarioObjective ofWeightUncertainty(DataTable dataTable, Query[] queries, double deviation,
+                                                      int scenarioNumber, long seed) {
+    if (deviation < 0 || scenarioNumber <= 0) throw new IllegalArgumentException();
+    ScenarioObjective res = new ScenarioObjective(dataTable);
+    Random random = new Random(seed);
+    for (int s = 0; s < scenarioNumber; s++) {
+      double[] queryWeights = new double[queries.length];
+      for (int q = 0; q < queryWeights.length; q++) queryWeights[q] = Math.exp(deviation * random.nextGaussian());
+      res.addScenario(queries, queryWeights, 1);
+    }
+    return res;
+  }
+
+  /**
+   * Add a scenario
+   *
+   * @param queries the workload of the scenario
+   * @param weight  probability weight of the scenario
+   * @return the objective
+   */
+  public ScenarioObjective addScenario(Query[] queries, double weight) {
+    return addScenario(queries, null, weight);
+  }
+
+  /**
+   * Add a scenario with query weights
+   *
+   * @param queries      the workload of the scenario
+   * @param queryWeights weight of each query, null for 1
+   * @param weight       probability weight of the scenario
+   * @return the objective
+   */
+  public ScenarioObjective addScenario(Query[] queries, double[] queryWeights, double weight) {
+    if (weight <= 0 || (queryWeights != null && queryWeights.length != queries.length))
+      throw new IllegalArgumentException();
+    scenarios.add(new Scenario(new SelectivityTable(dataTable, queries), queryWeights, weight));
+    return this;
+  }
+
+  public ScenarioObjective withMode(Mode mode) {
+    this.mode = mode;
+    return this;
+  }
+
+  /**
+   * Set the number of threads evaluating scenarios of a strategy, 1 to evaluate them in the calling thread
+   *
+   * @param n number of threads
+   * @return the objective
+   */
+  public ScenarioObjective withThreadNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.threadNumber = n;
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    double[] costs = costOnEachScenario(multiReplicas);
+    double res = 0;
+    if (mode == Mode.MINIMAX) {
+      for (double c : costs) res = Math.max(res, c);
+    } else {
+      double weightSum = 0;
+      for (int s = 0; s < costs.length; s++) {
+        res += scenarios.get(s).weight * costs[s];
+        weightSum += scenarios.get(s).weight;
+      }
+      res /= weightSum;
+    }
+    return BigDecimal.valueOf(res);
+  }
+
+  /**
+   * Cask effect cost of a strategy in each scenario, in the order scenarios are added.
+   *
+   * @param multiReplicas the strategy
+   * @return cost in each scenario
+   */
+  public double[] costOnEachScenario(MultiReplicas multiReplicas) {
+    if (scenarios.isEmpty()) throw new IllegalStateException("No scenario");
+    List<int[]> orders = multiReplicas.getOrders();
+    double[] res = new double[scenarios.size()];
+    if (threadNumber == 1 || scenarios.size() == 1) {
+      for (int s = 0; s < res.length; s++) res[s] = scenarios.get(s).cost(orders);
+      return res;
+    }
+    List<Callable<Double>> tasks = new ArrayList<>();
+    for (Scenario scenario : scenarios) tasks.add(() -> scenario.cost(orders));
+    try {
+      List<Future<Double>> futures = getThreadPool().invokeAll(tasks);
+      for (int s = 0; s < res.length; s++) res[s] = futures.get(s).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+    return res;
+  }
+
+  /**
+   * The lower bound of LowerBound in each scenario, with query weights, combined by the mode.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    double res = 0;
+    double weightSum = 0;
+    for (Scenario scenario : scenarios) {
+      double[] leastCost = LowerBound.leastCost(scenario.selectivityTable);
+      double sum = 0;
+      for (int q = 0; q < leastCost.length; q++) sum += scenario.getQueryWeight(q) * leastCost[q];
+      double bound = sum / replicaNumber;
+      if (mode == Mode.MINIMAX) {
+        res = Math.max(res, bound);
+      } else {
+        res += scenario.weight * bound;
+        weightSum += scenario.weight;
+      }
+    }
+    return mode == Mode.MINIMAX || weightSum == 0 ? res : res / weightSum;
+  }
+
+  private synchronized ExecutorService getThreadPool() {
+    // daemon threads, so that an objective not closed does not keep the JVM alive
+    if (threadPool == null)
+      threadPool = Executors.newFixedThreadPool(threadNumber, r -> {
+        Thread t = new Thread(r, "scenario-objective");
+        t.setDaemon(true);
+        return t;
+      });
+    return threadPool;
+  }
+
+  /**
+   * Shut down the threads evaluating scenarios.
+   */
+  @Override
+  public synchronized void close() {
+    if (threadPool != null) threadPool.shutdown();
+    threadPool = null;
+  }
+
+  public int getScenarioNumber() {
+    return scenarios.size();
+  }
+
+  /**
+   * A workload scenario: selectivity of its queries, weight of each query, and its probability weight.
+   */
+  private static class Scenario {
+    private SelectivityTable selectivityTable;
+    private double[] queryWeights;
+    private double weight;
+
+    Scenario(SelectivityTable selectivityTable, double[] queryWeights, double weight) {
+      this.selectivityTable = selectivityTable;
+      this.queryWeights = queryWeights;
+      this.weight = weight;
+    }
+
+    private double getQueryWeight(int query) {
+      return queryWeights == null ? 1 : queryWeights[query];
+    }
+
+    private double cost(List<int[]> orders) {
+      double[][] costMatrix = new double[orders.size()][];
+      for (int r = 0; r < costMatrix.length; r++) {
+        costMatrix[r] = selectivityTable.cost(orders.get(r));
+        if (queryWeights != null)
+          for (int q = 0; q < queryWeights.length; q++) costMatrix[r][q] *= queryWeights[q];
+      }
+      return CostModel.cost(costMatrix, true);
+    }
+  }
+}
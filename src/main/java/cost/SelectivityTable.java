@@ -0,0 +1,118 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import query.MiniQuery;
+import query.PointQuery;
+import query.Query;
+import query.RangeQuery;
+
+/**
+ * Selectivity of each query on each column of the original table, evaluated once from column histograms.
+ * For a point query on a column it records the probability of getting the value, and for a range query the
+ * probability of accessing the range. With this table, cost of a query on a column order is a product of
+ * doubles, same as Replica.scanRows, without building replicas and re-ordering queries. Optimizers which
+ * evaluate many orders use it for fast, incremental evaluation.
+ */
+public class SelectivityTable {
+
+  private double rowNum;
+  private int colNum;
+  private double[][] selectivity;
+  private long[] rangeMask;
+
+  /**
+   * Constructor
+   *
+   * @param dataTable info of the data table
+   * @param queries   the workload
+   */
+  public SelectivityTable(DataTable dataTable, Query[] queries) {
+    this.rowNum = dataTable.getRowNum().doubleValue();
+    this.colNum = dataTable.getColNum();
+    this.selectivity = new double[queries.length][colNum];
+    this.rangeMask = new long[queries.length];
+    for (int q = 0; q < queries.length; q++) {
+      MiniQuery[] miniQueries = queries[q].getMiniQueries();
+      if (miniQueries.length != colNum) throw new IllegalArgumentException();
+      rangeMask[q] = QueryAnalysis.getPredicatePattern(queries[q]);
+      for (int c = 0; c < colNum; c++) {
+        if (miniQueries[c] instanceof RangeQuery) {
+          RangeQuery r = (RangeQuery) miniQueries[c];
+          selectivity[q][c] = dataTable.getColHistograms()[c].getProbability(r.getLowerBound(), r.getUpperBound());
+        } else {
+          selectivity[q][c] = dataTable.getColHistograms()[c].getProbability(((PointQuery) miniQueries[c]).getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Estimated rows to scan, evaluating a query on a replica with given column order. Same as
+   * Replica.scanRows, columns before the first range column narrow the scan. Selectivities are multiplied in
+   * the same order as Replica.scanProbability, the order of columns, so that a query has the same cost on
+   * replicas of the same prefix columns, and is routed with the same ties as by CostModel.
+   *
+   * @param query index of the query
+   * @param order column order of the replica
+   * @return the number of rows to scan
+   */
+  public double scanRows(int query, int[] order) {
+    long prefix = 0;
+    for (int c : order) {
+      prefix |= 1L << c;
+      if (isRange(query, c)) break;
+    }
+    double res = 1.0;
+    for (int c = 0; c < colNum; c++)
+      if ((prefix & (1L << c)) != 0) res *= selectivity[query][c];
+    return rowNum * res;
+  }
+
+  /**
+   * Cost of evaluating a query on a replica with given column order, same as CostModel.cost(Replica, Query).
+   *
+   * @param query index of the query
+   * @param order column order of the replica
+   * @return the cost
+   */
+  public double cost(int query, int[] order) {
+    return scanRows(query, order) * Constant.COST_SCALE.doubleValue();
+  }
+
+  /**
+   * Cost of evaluating all queries on a replica with given column order.
+   *
+   * @param order column order of the replica
+   * @return an array of cost, one for each query
+   */
+  public double[] cost(int[] order) {
+    double[] res = new double[selectivity.length];
+    for (int q = 0; q < res.length; q++) res[q] = cost(q, order);
+    return res;
+  }
+
+  public boolean isRange(int query, int column) {
+    return (rangeMask[query] & (1L << column)) != 0;
+  }
+
+  public double getSelectivity(int query, int column) {
+    return selectivity[query][column];
+  }
+
+  public long getRangeMask(int query) {
+    return rangeMask[query];
+  }
+
+  public double getRowNum() {
+    return rowNum;
+  }
+
+  public int getColNum() {
+    return colNum;
+  }
+
+  public int getQueryNum() {
+    return selectivity.length;
+  }
+}
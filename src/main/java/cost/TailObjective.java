@@ -0,0 +1,189 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Tail cost of a strategy: a weighted quantile, e.g. p99, of the routed cost of each query, its least cost on the
+ * replicas, weighted by Query.getWeight(), or equally if all weights are 0. Unlike cask effect cost and total
+ * cost, a design is not helped by queries already cheap, and it is hurt by a few queries of expensive scans.
+ * Quantiles are estimated by a QuantileSketch fed one query at a time, within a relative error of
+ * SKETCH_RELATIVE_ACCURACY, so evaluation costs about as much as summing cost.
+ * Query classes are predicate patterns, see QueryAnalysis.getPredicatePattern, and a class may have an SLO, a
+ * ceiling of the same quantile of its queries. SLOs are hard constraints, unlike the budgets of Objective: a
+ * strategy violating any costs more than every strategy meeting all of them. No query costs more than scanning
+ * the whole table, and an estimate is at most 1 + the relative accuracy times that, so a violating strategy
+ * costs this bound times 1 plus the sum of relative violations, ranked by how far it is from feasible.
+ */
+public class TailObjective implements Objective {
+
+  private SelectivityTable selectivityTable;
+  private double quantile = Constant.TAIL_QUANTILE;
+  private double relativeAccuracy = Constant.SKETCH_RELATIVE_ACCURACY;
+  private double[] weights;
+  // class of each query, -1 for no SLO, and the SLO of each class
+  private long[] patterns;
+  private int[] sloClass;
+  private List<Double> slos = new ArrayList<>();
+  private Map<Long, Integer> sloIndex = new HashMap<>();
+
+  /**
+   * Constructor, of no SLO
+   *
+   * @param dataTable info of the data table
+   * @param queries   the workload
+   */
+  public TailObjective(DataTable dataTable, Query[] queries) {
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+    this.weights = new double[queries.length];
+    this.patterns = new long[queries.length];
+    this.sloClass = new int[queries.length];
+    double totalWeight = 0;
+    for (Query q : queries) totalWeight += q.getWeight();
+    for (int q = 0; q < queries.length; q++) {
+      weights[q] = totalWeight > 0 ? queries[q].getWeight() : 1;
+      patterns[q] = QueryAnalysis.getPredicatePattern(queries[q]);
+      sloClass[q] = -1;
+    }
+  }
+
+  /**
+   * Set the quantile minimized, also the quantile of SLOs
+   *
+   * @param quantile the quantile, e.g. 0.99 for p99
+   * @return the objective
+   */
+  public TailObjective withQuantile(double quantile) {
+    if (quantile <= 0 || quantile > 1) throw new IllegalArgumentException();
+    this.quantile = quantile;
+    return this;
+  }
+
+  /**
+   * Set the relative error of quantile estimates
+   *
+   * @param relativeAccuracy the relative error, in (0, 1)
+   * @return the objective
+   */
+  public TailObjective withRelativeAccuracy(double relativeAccuracy) {
+    if (relativeAccuracy <= 0 || relativeAccuracy >= 1) throw new IllegalArgumentException();
+    this.relativeAccuracy = relativeAccuracy;
+    return this;
+  }
+
+  /**
+   * Set the SLO of a query class, replacing the one set before
+   *
+   * @param pattern the predicate pattern of the class
+   * @param ceiling the greatest quantile of cost of queries of the class
+   * @return the objective
+   */
+  public TailObjective withSlo(long pattern, double ceiling) {
+    if (ceiling <= 0) throw new IllegalArgumentException();
+    Integer index = sloIndex.get(pattern);
+    if (index != null) {
+      slos.set(index, ceiling);
+      return this;
+    }
+    boolean isPresent = false;
+    for (int q = 0; q < patterns.length; q++)
+      if (patterns[q] == pattern) {
+        sloClass[q] = slos.size();
+        isPresent = true;
+      }
+    if (!isPresent) throw new IllegalArgumentException("No query of the class: " + pattern);
+    sloIndex.put(pattern, slos.size());
+    slos.add(ceiling);
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    QuantileSketch[] sketches = sketches(multiReplicas);
+    double violation = violation(sketches);
+    if (violation > 0)
+      return BigDecimal.valueOf((1 + relativeAccuracy) * selectivityTable.getRowNum()
+              * Constant.COST_SCALE.doubleValue() * (1 + violation));
+    return BigDecimal.valueOf(sketches[0].quantile(quantile));
+  }
+
+  /**
+   * If a strategy meets the SLOs of all classes
+   *
+   * @param multiReplicas the strategy
+   * @return true if it meets all SLOs
+   */
+  public boolean isFeasible(MultiReplicas multiReplicas) {
+    return violation(sketches(multiReplicas)) == 0;
+  }
+
+  /**
+   * Estimate the quantile of cost of a query class
+   *
+   * @param multiReplicas the strategy
+   * @param pattern       the predicate pattern of the class
+   * @return the estimate, 0 if no query is of the class
+   */
+  public double quantile(MultiReplicas multiReplicas, long pattern) {
+    double[][] costMatrix = costMatrix(multiReplicas);
+    QuantileSketch sketch = new QuantileSketch(relativeAccuracy);
+    for (int q = 0; q < weights.length; q++)
+      if (patterns[q] == pattern) sketch.add(routedCost(costMatrix, q), weights[q]);
+    return sketch.quantile(quantile);
+  }
+
+  /**
+   * Sketches of routed cost, of all queries and of each class with an SLO.
+   */
+  private QuantileSketch[] sketches(MultiReplicas multiReplicas) {
+    double[][] costMatrix = costMatrix(multiReplicas);
+    QuantileSketch[] sketches = new QuantileSketch[slos.size() + 1];
+    for (int i = 0; i < sketches.length; i++) sketches[i] = new QuantileSketch(relativeAccuracy);
+    for (int q = 0; q < weights.length; q++) {
+      double cost = routedCost(costMatrix, q);
+      sketches[0].add(cost, weights[q]);
+      if (sloClass[q] >= 0) sketches[sloClass[q] + 1].add(cost, weights[q]);
+    }
+    return sketches;
+  }
+
+  /**
+   * Sum of relative violations of SLOs, 0 if all are met.
+   */
+  private double violation(QuantileSketch[] sketches) {
+    double res = 0;
+    for (int i = 0; i < slos.size(); i++)
+      res += Math.max(0, sketches[i + 1].quantile(quantile) / slos.get(i) - 1);
+    return res;
+  }
+
+  private static double routedCost(double[][] costMatrix, int q) {
+    double res = Double.POSITIVE_INFINITY;
+    for (double[] row : costMatrix) res = Math.min(res, row[q]);
+    return res;
+  }
+
+  /**
+   * A query costs at least its least cost on any order, so the quantile of least costs is a lower bound, up to
+   * the relative error of the sketch.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    double[] leastCost = LowerBound.leastCost(selectivityTable);
+    QuantileSketch sketch = new QuantileSketch(relativeAccuracy);
+    for (int q = 0; q < leastCost.length; q++) sketch.add(leastCost[q], weights[q]);
+    return sketch.quantile(quantile) * (1 - relativeAccuracy) / (1 + relativeAccuracy);
+  }
+
+  private double[][] costMatrix(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    double[][] costMatrix = new double[orders.size()][];
+    for (int r = 0; r < costMatrix.length; r++) costMatrix[r] = selectivityTable.cost(orders.get(r));
+    return costMatrix;
+  }
+}
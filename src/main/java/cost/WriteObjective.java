@@ -0,0 +1,139 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Cost of a mixed read and write workload. Reads are the queries of the workload, routed as in CostModel. Every
+ * replica also absorbs every insert, and the write cost of an insert on a replica is WRITE_ROW_COST rows times an
+ * amplification factor of its column order. Inserts arrive in the order of an insert column, e.g. a timestamp,
+ * and are scattered over as many sorted runs as there are distinct values of the columns before the insert column
+ * in the order. The more runs, the more overlapping data compaction rewrites, so the factor is
+ * 1 + WRITE_COMPACTION_FACTOR * log2(runs): 1 if the order starts with the insert column, and the same for all
+ * orders if there is no insert column, as if inserts were random.
+ * The load of a replica is its read load plus its write load, and the cost is the greatest load, the cask effect.
+ * As every replica adds write work to the cluster, a write capacity limits the total write load of all replicas,
+ * and a strategy over it pays the over-budget penalty of Objective on its total write load.
+ */
+public class WriteObjective implements Objective {
+
+  private SelectivityTable selectivityTable;
+  private double[] distinctNum;
+  private double writeNumber = 0;
+  private int insertColumn = -1;
+  private double writeCapacity = Double.POSITIVE_INFINITY;
+
+  /**
+   * Constructor, of no write
+   *
+   * @param dataTable info of the data table
+   * @param queries   the read workload
+   */
+  public WriteObjective(DataTable dataTable, Query[] queries) {
+    this.selectivityTable = new SelectivityTable(dataTable, queries);
+    this.distinctNum = new double[dataTable.getColNum()];
+    for (int c = 0; c < distinctNum.length; c++) distinctNum[c] = dataTable.getColHistograms()[c].getDistinctNum();
+  }
+
+  /**
+   * Set the number of inserts, in the same period as the read workload
+   *
+   * @param writeNumber number of inserted rows
+   * @return the objective
+   */
+  public WriteObjective withWriteNumber(double writeNumber) {
+    if (writeNumber < 0) throw new IllegalArgumentException();
+    this.writeNumber = writeNumber;
+    return this;
+  }
+
+  /**
+   * Set the column whose values increase with inserts
+   *
+   * @param column index of the column in the original table, -1 if inserts are random
+   * @return the objective
+   */
+  public WriteObjective withInsertColumn(int column) {
+    if (column < -1 || column >= distinctNum.length) throw new IllegalArgumentException();
+    this.insertColumn = column;
+    return this;
+  }
+
+  /**
+   * Set the greatest total write load of all replicas the cluster sustains
+   *
+   * @param writeCapacity the capacity, in cost units
+   * @return the objective
+   */
+  public WriteObjective withWriteCapacity(double writeCapacity) {
+    if (writeCapacity <= 0) throw new IllegalArgumentException();
+    this.writeCapacity = writeCapacity;
+    return this;
+  }
+
+  @Override
+  public BigDecimal cost(MultiReplicas multiReplicas) {
+    List<int[]> orders = multiReplicas.getOrders();
+    double[] load = costOnEachReplica(orders);
+    double res = 0;
+    for (double l : load) res = Math.max(res, l);
+    double write = 0;
+    for (int[] order : orders) write += writeCost(order);
+    if (write > writeCapacity) res *= write / writeCapacity;
+    return BigDecimal.valueOf(res);
+  }
+
+  /**
+   * Read load plus write load of each replica
+   *
+   * @param multiReplicas the strategy
+   * @return load of each replica, in the order of getReplicasArray(true)
+   */
+  public double[] costOnEachReplica(MultiReplicas multiReplicas) {
+    return costOnEachReplica(multiReplicas.getOrders());
+  }
+
+  private double[] costOnEachReplica(List<int[]> orders) {
+    double[][] costMatrix = new double[orders.size()][];
+    for (int r = 0; r < costMatrix.length; r++) costMatrix[r] = selectivityTable.cost(orders.get(r));
+    double[] res = CostModel.costOnEachReplica(costMatrix);
+    for (int r = 0; r < res.length; r++) res[r] += writeCost(orders.get(r));
+    return res;
+  }
+
+  /**
+   * Write cost of all inserts on a replica
+   *
+   * @param order column order of the replica
+   * @return the cost
+   */
+  public double writeCost(int[] order) {
+    double runs = 1;
+    if (insertColumn == -1) {
+      runs = selectivityTable.getRowNum();
+    } else {
+      for (int i = 0; i < order.length && order[i] != insertColumn; i++) runs *= distinctNum[order[i]];
+      runs = Math.min(runs, selectivityTable.getRowNum());
+    }
+    double amplification = 1 + Constant.WRITE_COMPACTION_FACTOR * Math.log(runs) / Math.log(2);
+    return writeNumber * Constant.WRITE_ROW_COST * amplification * Constant.COST_SCALE.doubleValue();
+  }
+
+  /**
+   * The read load of LowerBound, plus the least write load of a replica.
+   */
+  @Override
+  public double lowerBound(int replicaNumber) {
+    double sum = 0;
+    for (double c : LowerBound.leastCost(selectivityTable)) sum += c;
+    int[] order = new int[distinctNum.length];
+    order[0] = Math.max(insertColumn, 0);
+    for (int i = 1, c = 0; i < order.length; c++) if (c != order[0]) order[i++] = c;
+    return sum / replicaNumber + writeCost(order);
+  }
+}
@@ -153,6 +153,16 @@ public class Histogram implements Serializable {
     return result;
   }
 
+  /**
+   * Estimate the number of distinct values in the column. As in getProbability(double), a value takes a step of
+   * the domain, so there are at most (max - min) / step values, and at most one per row.
+   *
+   * @return the number of distinct values
+   */
+  public double getDistinctNum() {
+    return Math.max(1, Math.min(pointsNum, Math.ceil((maxX - minX) / step)));
+  }
+
   public double getMinX() {
     return minX;
   }
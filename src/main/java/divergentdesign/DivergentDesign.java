@@ -1,14 +1,24 @@
 package divergentdesign;
 
 
+import checkpoint.Checkpoint;
+import checkpoint.CheckpointWriter;
 import constant.Constant;
 import cost.CostModel;
+import cost.LowerBound;
+import cost.Objective;
 import datamodel.DataTable;
+import optimizer.Optimizer;
+import optimizer.RunControl;
 import query.Query;
 import replica.MultiReplicas;
 import replica.Replica;
-import searchall.SearchAll;
+import searchall.DynamicProgramming;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -24,7 +34,7 @@ import static cost.CostModel.getLeastCostConfOrder;
  * and current optimalCost and workloadSubsets is consistent with the optimal strategy.
  * Experiments shows that evaluate cost is higher in SA, because we set replica num = 1 in SA here.
  */
-public class DivergentDesign {
+public class DivergentDesign implements Optimizer {
 
   // input workload and data table
   private Query[] workload;
@@ -38,6 +48,8 @@ public class DivergentDesign {
 
   // subset of workload, group queries
   private List<Query>[] workloadSubsets;
+  // indices of subsets each query of the workload is put into, with equal weight in each of them
+  private int[][] membership;
 
   // record optimal cost of design
   private double optimalCost;
@@ -45,6 +57,17 @@ public class DivergentDesign {
 
   private boolean isNewMethod = Constant.IS_NEW_METHOD;
 
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+  private MultiReplicas optimalMultiReplicas = null;
+
+  private CheckpointWriter checkpointWriter = null;
+  private boolean isResumed = false;
+  private int resumedIteration = 0;
+
   /**
    * Constructor, using customized input variables, replica number, load balancing factor, iteration
    * threshold, epsilon threshold.
@@ -89,6 +112,7 @@ public class DivergentDesign {
   }
 
 
+  @Override
   public  DivergentDesign withReplicaNumber(int m){
     this.replicaNum = m;
     workloadSubsets = new List[replicaNum];
@@ -117,6 +141,67 @@ public class DivergentDesign {
     return this;
   }
 
+  /**
+   * Evaluate designs by an objective instead of cask effect cost or total cost of the workload. Queries are
+   * still grouped by their least cost replicas, and the iteration ends when the objective stops improving.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the divergent design instance
+   */
+  @Override
+  public DivergentDesign withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /**
+   * Write checkpoints to a file at an interval, and when the algorithm returns. Checkpoints are written
+   * asynchronously at the beginning of an iteration, and can be resumed by resume().
+   *
+   * @param path     path of the checkpoint file
+   * @param interval milliseconds between two checkpoints
+   * @return the divergent design instance
+   */
+  public DivergentDesign withCheckpoint(String path, long interval) {
+    this.checkpointWriter = new CheckpointWriter(path, interval);
+    return this;
+  }
+
+  /**
+   * Resume from a checkpoint, optimal() continues from the iteration where the checkpoint is written.
+   * Parameters are not a part of the checkpoint, they should be set as in the original run.
+   *
+   * @param path path of the checkpoint file
+   * @return the divergent design instance
+   * @throws IOException if the file is not a checkpoint of divergent design on the data table and workload
+   */
+  public DivergentDesign resume(String path) throws IOException {
+    DataInputStream in = Checkpoint.open(path, Checkpoint.DIVERGENT_DESIGN, data.getColNum());
+    resumedIteration = in.readInt();
+    optimalCost = in.readDouble();
+    if (in.readUnsignedShort() != replicaNum)
+      throw new IllegalArgumentException("Replica numbers are inconsistent");
+    if (in.readInt() != workload.length) throw new IOException("Checkpoint of another workload: " + path);
+    membership = new int[workload.length][];
+    for (int i = 0; i < membership.length; i++) {
+      membership[i] = new int[in.readUnsignedShort()];
+      for (int j = 0; j < membership[i].length; j++) membership[i][j] = in.readUnsignedShort();
+    }
+    isResumed = true;
+    return this;
+  }
+
+  @Override
+  public DivergentDesign withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
 
 
   /**
@@ -134,30 +219,49 @@ public class DivergentDesign {
    * @return
    */
   public MultiReplicas optimal() throws NoSuchAlgorithmException {
-    initDesign();
-    Replica[] multiReplicas = new Replica[replicaNum];
+    // the optimality gap of designs offered is relative to this lower bound
+    runControl.withLowerBound(objective == null
+            ? LowerBound.cost(data, workload, replicaNum)
+            : objective.lowerBound(replicaNum));
     int it = 0;
+    if (isResumed) {
+      isResumed = false;
+      it = resumedIteration;
+      assignSubsets();
+    } else {
+      initDesign();
+    }
+    Replica[] multiReplicas = new Replica[replicaNum];
     double curCost;
+    byte[] state = null;
     while (true) { // here begins the iteration
+      if (checkpointWriter != null) {
+        state = checkpoint(it);
+        if (checkpointWriter.isDue()) writeCheckpoint(state, false);
+      }
       MultiReplicas m = new MultiReplicas();
       for (int i = 0; i < replicaNum; i++) {
         multiReplicas[i] = recommendReplica(workloadSubsets[i]);
         m.add(new Replica(recommendReplica(workloadSubsets[i])));
       }
-      if (isNewMethod)
+      if (objective != null)
+        curCost = objective.cost(m).doubleValue();
+      else if (isNewMethod)
         curCost = CostModel.cost(m, workload, loadBalanceFactor).doubleValue();
       else
         curCost = totalCost(multiReplicas);
-      if (isIterationTerminate(it, curCost)) break;
+      // offer with cost of CostModel, or of the objective, shared with other optimizers
+      BigDecimal sharedCost = objective != null ? BigDecimal.valueOf(curCost)
+              : isNewMethod ? CostModel.cost(m, workload) : CostModel.totalCost(m, workload);
+      runControl.offer(m, sharedCost.doubleValue(), getName());
+      runControl.countEvaluation();
+      if (isIterationTerminate(it, curCost) || runControl.isStopped()) break;
       optimalCost = curCost;
       history.add(optimalCost);
       it++;
-      List<Query>[] curSubQueries = new List[replicaNum];
-      for (int i = 0; i < curSubQueries.length; i++)
-        curSubQueries[i] = new ArrayList<>();
       // add queries to cost least groups
-      for (Query query : workload) {
-        BigDecimal[] costArray = getCostArray(multiReplicas, query);
+      for (int q = 0; q < workload.length; q++) {
+        BigDecimal[] costArray = getCostArray(multiReplicas, workload[q]);
         int[] order = getLeastCostConfOrder(costArray);
         int leastCostNumber = 1;
         for (int i = 1; i < costArray.length; i++) {
@@ -165,17 +269,18 @@ public class DivergentDesign {
             leastCostNumber++;
         }
         if (leastCostNumber < loadBalanceFactor) leastCostNumber = loadBalanceFactor;
-        for (int i = 0; i < leastCostNumber; i++)
-          curSubQueries[order[i]].add(new Query(query)
-                  .setWeight(query.getWeight() / leastCostNumber));
+        membership[q] = Arrays.copyOf(order, leastCostNumber);
       }
-      System.arraycopy(curSubQueries, 0, workloadSubsets, 0, replicaNum);
+      assignSubsets();
     }
+    // the state at the beginning of the last iteration, so that a stopped run resumes exactly
+    if (checkpointWriter != null) writeCheckpoint(state, true);
     optimalCost = curCost;
     history.add(optimalCost);
     MultiReplicas res = new MultiReplicas();
     for (Replica replica : multiReplicas)
       res.add(replica);
+    optimalMultiReplicas = res;
     return res;
   }
 
@@ -187,22 +292,77 @@ public class DivergentDesign {
   private void initDesign() throws NoSuchAlgorithmException {
 //    Random random = SecureRandom.getInstanceStrong();
     Random random = new Random();
-    for (Query q : workload)
+    membership = new int[workload.length][loadBalanceFactor];
+    for (int q = 0; q < workload.length; q++)
       for (int j = 0; j < loadBalanceFactor; j++)
-        workloadSubsets[random.nextInt(workloadSubsets.length)]
-                .add(new Query(q).setWeight(q.getWeight() / loadBalanceFactor));
+        membership[q][j] = random.nextInt(workloadSubsets.length);
+    assignSubsets();
+  }
+
+  /**
+   * Put queries into subsets of workload according to membership. A query put into n subsets has 1/n of
+   * its weight in each of them.
+   */
+  private void assignSubsets() {
+    for (int i = 0; i < workloadSubsets.length; i++)
+      workloadSubsets[i] = new ArrayList<>();
+    for (int q = 0; q < workload.length; q++)
+      for (int s : membership[q])
+        workloadSubsets[s].add(new Query(workload[q]).setWeight(workload[q].getWeight() / membership[q].length));
+  }
+
+  /**
+   * Hand a checkpoint to the writer, and close it after the final one.
+   *
+   * @param state   the checkpoint
+   * @param isFinal if it is the final checkpoint, written when the algorithm returns
+   */
+  private void writeCheckpoint(byte[] state, boolean isFinal) {
+    try {
+      checkpointWriter.write(state);
+      if (isFinal) checkpointWriter.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Serialize the state at the beginning of an iteration: the iteration number, the cost of the last
+   * iteration, and subsets of workload, as the subsets each query is put into.
+   *
+   * @param it the iteration number
+   * @return the checkpoint
+   */
+  private byte[] checkpoint(int it) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = Checkpoint.begin(Checkpoint.DIVERGENT_DESIGN, data.getColNum(), bytes);
+      out.writeInt(it);
+      out.writeDouble(optimalCost);
+      out.writeShort(replicaNum);
+      out.writeInt(workload.length);
+      for (int[] subsets : membership) {
+        out.writeShort(subsets.length);
+        for (int s : subsets) out.writeShort(s);
+      }
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   /**
    * This method takes a collection of queries as input, considering data table  and
    * return a replica configuration. The implementation depend on other modules or
-   * tools. Here we use stimulate anneal algorithm and set replica num to 1.
+   * tools. Here we use the exact dynamic programming over column subsets.
    *
    * @param queries, a collection of queries
    * @return a recommended replica
    */
   private Replica recommendReplica(List<Query> queries) {
-    return new SearchAll(data, queries.toArray(new Query[0])).optimalReplica();
+    return new DynamicProgramming(data, queries.toArray(new Query[0])).optimalReplica();
+//    return new SearchAll(data, queries.toArray(new Query[0])).optimalReplica();
 //    return (Replica) new SimulateAnneal(data, queries.toArray(new Query[0]), 1)
 //            .optimal().getReplicas().keySet().toArray()[0];
   }
@@ -297,14 +457,21 @@ public class DivergentDesign {
     return ans.doubleValue();
   }
 
+  @Override
   public double getOptimalCost() {
     return optimalCost;
   }
 
+  @Override
   public List<Double> getHistory() {
     return history;
   }
 
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return optimalMultiReplicas;
+  }
+
   // TODO
   public int getReplicaNumber() {
     return this.replicaNum;
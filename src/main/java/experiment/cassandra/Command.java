@@ -4,16 +4,45 @@ import query.MiniQuery;
 import query.PointQuery;
 import query.Query;
 import query.RangeQuery;
+import replica.Replica;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
 public class Command {
 
+  private static final String[] COLUMN_NAMES =
+          "L_ORDERKEY,L_PARTKEY,L_SUPPKEY,L_LINENUMBER,L_SHIPDATE,L_COMMITDATE,L_RECEIPTDATE".split(",");
+
   public static String getString(String tableName, Query query) {
-    String[] clusteringKeysNames = "L_ORDERKEY,L_PARTKEY,L_SUPPKEY,L_LINENUMBER,L_SHIPDATE,L_COMMITDATE,L_RECEIPTDATE".split(",");
+    return getString(tableName, query, 0);
+  }
+
+  /**
+   * Query command on a replica, whose partition key is its first replica.getPartitionKeyLength() columns
+   *
+   * @param tableName table of the replica
+   * @param query     the query
+   * @param replica   the replica
+   * @return the command
+   */
+  public static String getString(String tableName, Query query, Replica replica) {
+    return getString(tableName, query, replica.getPartitionKeyLength());
+  }
+
+  /**
+   * Query command. With partition key length 0, all rows are in the partition pkey = 1, otherwise the partition
+   * key columns are restricted by the predicates of the query like other columns.
+   *
+   * @param tableName          table of the replica
+   * @param query              the query
+   * @param partitionKeyLength number of leading columns of the order in the partition key
+   * @return the command
+   */
+  public static String getString(String tableName, Query query, int partitionKeyLength) {
+    String[] clusteringKeysNames = COLUMN_NAMES;
     SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-    String cmd = "select count(*) from " + tableName + " where pkey = 1 and ";
+    String cmd = "select count(*) from " + tableName + " where " + (partitionKeyLength == 0 ? "pkey = 1 and " : "");
     MiniQuery[] miniQueries = query.getMiniQueries();
     for (int i = 0; i < miniQueries.length; i++) {
       if (miniQueries[i] instanceof PointQuery) {
@@ -35,4 +64,23 @@ public class Command {
     return cmd;
   }
 
+  /**
+   * Primary key clause of the table of a replica, e.g. ((L_ORDERKEY), L_PARTKEY, ...), or (pkey, L_ORDERKEY, ...)
+   * with a single partition
+   *
+   * @param replica the replica
+   * @return the primary key clause
+   */
+  public static String getPrimaryKeyString(Replica replica) {
+    int[] order = replica.getOrder();
+    int partitionKeyLength = replica.getPartitionKeyLength();
+    String str = partitionKeyLength == 0 ? "(pkey, " : "((";
+    for (int i = 0; i < order.length; i++) {
+      str += COLUMN_NAMES[order[i]];
+      if (i == partitionKeyLength - 1) str += "), ";
+      else if (i < order.length - 1) str += ", ";
+    }
+    return str + ")";
+  }
+
 }
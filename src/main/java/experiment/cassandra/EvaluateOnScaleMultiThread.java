@@ -3,6 +3,7 @@ package experiment.cassandra;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SocketOptions;
+import cost.AffinityObjective;
 import cost.CostModel;
 import dataloader.DataLoader;
 import datamodel.DataTable;
@@ -50,16 +51,31 @@ public class EvaluateOnScaleMultiThread {
     cluster.close();
   }
 
-  static void route(Replica[] replicas, Query[] queries, int loadBalance) {
-    if (replicas.length == 1) {
-      queryGroups = new List[1];
-      for (Query query : queries)
-        queryGroups[0].add(query);
-      return;
-    }
+  /**
+   * Route queries to replicas, filling queryGroups
+   *
+   * @param replicas    the replicas
+   * @param queries     the workload
+   * @param loadBalance the least number of replicas a query is split among, in least cost routing
+   * @param isAffinity  true to route each query to a single replica by AffinityObjective, so that queries of
+   *                    overlapping key ranges share the cache of a replica, false for least cost routing
+   */
+  static void route(Replica[] replicas, Query[] queries, int loadBalance, boolean isAffinity) {
     queryGroups = new List[replicas.length];
     for (int i = 0; i < queryGroups.length; i++)
       queryGroups[i] = new ArrayList<>();
+    if (replicas.length == 1) {
+      queryGroups[0].addAll(Arrays.asList(queries));
+      return;
+    }
+    if (isAffinity) {
+      int[][] orders = new int[replicas.length][];
+      for (int i = 0; i < replicas.length; i++) orders[i] = replicas[i].getOrder();
+      int[] replicaOf = new AffinityObjective(replicas[0].getOriginalDataTable(), queries).route(orders).getReplicaOf();
+      for (int i = 0; i < queries.length; i++)
+        queryGroups[replicaOf[i]].add(queries[i]);
+      return;
+    }
     for (Query query : queries) {
       BigDecimal[] costs = new BigDecimal[replicas.length];
       for (int i = 0; i < replicas.length; i++)
@@ -73,7 +89,7 @@ public class EvaluateOnScaleMultiThread {
       if (number < loadBalance) number = loadBalance;
       for (int i = 0; i < number; i++) {
         Query q = new Query(query).setWeight((double) 1 / number);
-        queryGroups[i].add(q);
+        queryGroups[replicaOrder[i]].add(q);
       }
     }
   }
@@ -135,7 +151,8 @@ public class EvaluateOnScaleMultiThread {
 
 
   /**
-   * @param args, arg[0] = input file path, arg[1] = output file path
+   * @param args, arg[0] = input file path, arg[1] = output file path, optional arg[2] = "affinity" for
+   *              cache-locality-aware routing
    * @throws IOException
    */
   public static void main(String args[]) throws IOException, ClassNotFoundException, InterruptedException {
@@ -144,6 +161,7 @@ public class EvaluateOnScaleMultiThread {
     initSession(solutionFile);
     File out = new File(args[1]);
     fw = new FileWriter(out, true);
+    boolean isAffinity = args.length > 2 && args[2].equals("affinity");
     BufferedReader br = new BufferedReader(new FileReader(solutionFile));
     String line = null;
     while ((line = br.readLine()) != null) {
@@ -162,7 +180,7 @@ public class EvaluateOnScaleMultiThread {
       if (method.startsWith("divergent")) {
         loadBalance = Integer.parseInt(method.split("m")[1]);
       }
-      route(replicas, queries, loadBalance);
+      route(replicas, queries, loadBalance, isAffinity);
       for (int replicaIndex = 0; replicaIndex < queryGroups.length; replicaIndex++) {
         String keyspace = "exp1_" + method + "_s" + scale;
         String tableName = method + "_rp" + replicaIndex;
@@ -1,15 +1,18 @@
 package experiment.cassandra;
 
+import aco.AntColony;
 import cost.CostModel;
 import dataloader.DataLoader;
 import datamodel.DataTable;
 import divergentdesign.DivergentDesign;
 import genetic.Genetic;
 import heterogeneous.SimulateAnneal;
+import optimizer.Portfolio;
 import query.Query;
 import replica.MultiReplicas;
 import replica.Replica;
 import searchall.SearchAll;
+import sweep.ReplicaSweep;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -105,6 +108,53 @@ public class ExperimentOnReplicaNumbers {
     fw.close();
   }
 
+  public static void AntColonyExp(String dataTablePath, DataTable dataTable, Query[] queries, int replicaNumber)
+          throws IOException {
+    File f = new File("antcolony_r" + replicaNumber + ".out");
+    if (!f.exists()) f.createNewFile();
+    FileWriter fw = new FileWriter(f, true);
+    AntColony a = new AntColony(dataTable, queries)
+            .withReplicaNumber(replicaNumber)
+            .withThreadNumber(Runtime.getRuntime().availableProcessors());
+    MultiReplicas m = a.optimal();
+    double cost = a.getOptimalCost();
+    String out = "antcolony:{table" + dataTablePath + "|| replica_num = " + replicaNumber + "||" + "solution:" + m.getOrderString() + "||" + "cost:" + cost + "|| costs: ";
+    BigDecimal[] costs = CostModel.costOnEachReplica(m, queries);
+    for (BigDecimal c : costs) out += c.setScale(10, BigDecimal.ROUND_HALF_UP) + ",";
+    out += "\n";
+    fw.write(out);
+    fw.close();
+  }
+
+  public static void PortfolioExp(String dataTablePath, DataTable dataTable, Query[] queries, int replicaNumber)
+          throws IOException {
+    File f = new File("portfolio_r" + replicaNumber + ".out");
+    if (!f.exists()) f.createNewFile();
+    FileWriter fw = new FileWriter(f, true);
+    Portfolio p = Portfolio.defaultPortfolio(dataTable, queries, replicaNumber, true)
+            .withTimeLimit(60000);
+    MultiReplicas m = p.optimal();
+    double cost = p.getOptimalCost();
+    String out = "portfolio:{table" + dataTablePath + "|| replica_num = " + replicaNumber + "||" + "solution:" + m.getOrderString() + "||" + "cost:" + cost + "|| optimizers: ";
+    for (Portfolio.Statistics s : p.getStatistics()) out += s + ",";
+    out += "\n";
+    fw.write(out);
+    fw.close();
+  }
+
+  public static void SweepExp(String dataTablePath, DataTable dataTable, Query[] queries, int minReplicaNumber,
+                              int maxReplicaNumber) throws IOException, NoSuchAlgorithmException {
+    File f = new File("sweep_r" + minReplicaNumber + "_" + maxReplicaNumber + ".out");
+    if (!f.exists()) f.createNewFile();
+    FileWriter fw = new FileWriter(f, true);
+    ReplicaSweep sweep = new ReplicaSweep(dataTable, queries, true)
+            .withReplicaRange(minReplicaNumber, maxReplicaNumber);
+    String out = "sweep:{table" + dataTablePath + "|| curve: ";
+    for (ReplicaSweep.Point p : sweep.sweep()) out += p + ",";
+    out += "\n";
+    fw.write(out);
+    fw.close();
+  }
 
   /**
    * @param args, {dataTableFilePath, queryFilePath}
@@ -112,7 +162,7 @@ public class ExperimentOnReplicaNumbers {
   public static void main(String args[]) {
 
     int expTimes = 10;
-    ExecutorService threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 2);
+    ExecutorService threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 4);
 
     final int s = 1;
     String dataPath = "lineitem_s" + s + ".csv.obj";
@@ -202,10 +252,54 @@ public class ExperimentOnReplicaNumbers {
       }
     });
 
+    Thread antColonyThread = new Thread(() -> {
+      for (int j = 0; j < expTimes; j++) {
+        try {
+          System.out.println("start ant colony, repeat " + j + ", s = " + s);
+          DataTable dataTable1 = DataLoader.getDataTable(dataPath);
+          Query[] queries1 = DataLoader.getQueries(queryPath);
+          for (int k = 2; k <= 5; k++)
+            AntColonyExp(dataPath, dataTable1, queries1, k);
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+    });
+
+    Thread portfolioThread = new Thread(() -> {
+      for (int j = 0; j < expTimes; j++) {
+        try {
+          System.out.println("start portfolio, repeat " + j + ", s = " + s);
+          DataTable dataTable1 = DataLoader.getDataTable(dataPath);
+          Query[] queries1 = DataLoader.getQueries(queryPath);
+          for (int k = 2; k <= 5; k++)
+            PortfolioExp(dataPath, dataTable1, queries1, k);
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+    });
+
+    Thread sweepThread = new Thread(() -> {
+      for (int j = 0; j < expTimes; j++) {
+        try {
+          System.out.println("start sweep, repeat " + j + ", s = " + s);
+          DataTable dataTable1 = DataLoader.getDataTable(dataPath);
+          Query[] queries1 = DataLoader.getQueries(queryPath);
+          SweepExp(dataPath, dataTable1, queries1, 2, 5);
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+    });
+
     threadPool.execute(simulateAnnealThread);
     threadPool.execute(divergentM1Thread);
     threadPool.execute(searchAllThread);
     threadPool.execute(geneticThread);
+    threadPool.execute(antColonyThread);
+    threadPool.execute(portfolioThread);
+    threadPool.execute(sweepThread);
   }
 
 
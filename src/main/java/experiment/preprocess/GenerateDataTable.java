@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 
 
 public class GenerateDataTable {
@@ -65,6 +66,49 @@ public class GenerateDataTable {
     return new DataTable(histograms);
   }
 
+  /**
+   * Draw a uniform sample of rows of a csv file by reservoir sampling, reading the file once. Dates are
+   * converted to milliseconds, as in getDataTableFromCsv.
+   *
+   * @param csvPath     path of the csv file, separated by |
+   * @param columnIndex indexes of the columns to keep
+   * @param sampleSize  number of rows to draw, all rows if the file has fewer
+   * @param seed        seed of the random number generator
+   * @return the sample, sample[row][column]
+   */
+  public static double[][] getRowSampleFromCsv(String csvPath, int[] columnIndex, int sampleSize, long seed)
+          throws IOException, ParseException {
+    SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
+    Random random = new Random(seed);
+    List<double[]> sample = new ArrayList<>();
+    CsvDataType[] dataTypes = null;
+    long rowNumber = 0;
+    try (BufferedReader reader = new BufferedReader(new FileReader(csvPath))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\\|");
+        if (dataTypes == null) {
+          dataTypes = new CsvDataType[columnIndex.length];
+          for (int i = 0; i < columnIndex.length; i++)
+            dataTypes[i] = isDate(fields[columnIndex[i]]) ? CsvDataType.DATE : CsvDataType.DOUBLE;
+        }
+        rowNumber++;
+        int slot = sample.size() < sampleSize ? sample.size() : (int) (random.nextDouble() * rowNumber);
+        if (slot >= sampleSize) continue;
+        double[] row = new double[columnIndex.length];
+        for (int i = 0; i < row.length; i++) {
+          String field = fields[columnIndex[i]];
+          row[i] = dataTypes[i].equals(CsvDataType.DATE)
+                  ? (double) formatter.parse(field).getTime()
+                  : Double.parseDouble(field);
+        }
+        if (slot == sample.size()) sample.add(row);
+        else sample.set(slot, row);
+      }
+    }
+    return sample.toArray(new double[0][]);
+  }
+
 
 
 }
@@ -1,14 +1,28 @@
 package genetic;
 
+import checkpoint.Checkpoint;
+import checkpoint.CheckpointWriter;
+import checkpoint.RestorableRandom;
 import constant.Constant;
 import cost.CostModel;
+import cost.DesignCache;
+import cost.LowerBound;
+import cost.Objective;
+import cost.SampledCostModel;
 import datamodel.DataTable;
 import heterogeneous.ArrayTransform;
 import javafx.util.Pair;
+import optimizer.Optimizer;
+import optimizer.RunControl;
 import query.Query;
+import replica.DesignKey;
 import replica.MultiReplicas;
 import replica.Replica;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -17,7 +31,7 @@ import java.util.*;
 /**
  * This class implement Genetic Algorithm to find the optimal multi-replicas strategy
  */
-public class Genetic {
+public class Genetic implements Optimizer {
 
   DataTable dataTable;
   Query[] queries;
@@ -37,6 +51,30 @@ public class Genetic {
   private double equalRateThreshold = 0.5;
 
   private MultiReplicas multiReplicas = null;
+  // an individual put into the initial population, null for a random population
+  private MultiReplicas seed = null;
+
+  // estimate fitness on a sample of the workload, null to evaluate on the full workload
+  private SampledCostModel sampledCostModel = null;
+  // costs of individuals confirmed on the full workload, null to evaluate every individual
+  private DesignCache<BigDecimal> designCache = null;
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+  // least cost confirmed on the full workload, and the individual of it
+  private BigDecimal bestCost = null;
+  private MultiReplicas bestMultiReplicas = null;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // random number generator, its state is a part of checkpoints
+  private RestorableRandom random = new RestorableRandom();
+  private CheckpointWriter checkpointWriter = null;
+  private MultiReplicas[] resumedPopulation = null;
+  private int resumedIteration = 0;
+
+  private BigDecimal optimalCost;
+  private List<Double> costHistory = new ArrayList<>();
 
   /**
    * A constructor using constant parameter values.
@@ -91,6 +129,7 @@ public class Genetic {
     this.geneChangeNum = geneChangeNumber;
   }
 
+  @Override
   public Genetic withReplicaNumber(int n) {
     this.replicaNumber = n;
     return this;
@@ -121,6 +160,115 @@ public class Genetic {
     return this;
   }
 
+  /**
+   * Estimate fitness of individuals on a sample of the workload. An individual is evaluated on the full
+   * workload only if the lower bound of its estimated cost is not greater than the best cost so far.
+   *
+   * @param sampledCostModel the sampled cost model, null to always evaluate on the full workload
+   * @return the genetic instance
+   */
+  public Genetic withSampledCostModel(SampledCostModel sampledCostModel) {
+    this.sampledCostModel = sampledCostModel;
+    return this;
+  }
+
+  /**
+   * Cache costs of individuals by their canonical encoding, so that duplicates in a population, offspring
+   * equal to an individual evaluated before, and permutations of its replicas are not evaluated again.
+   * Sizes are the defaults in Constant class.
+   *
+   * @return the genetic instance
+   */
+  public Genetic withDesignCache() {
+    this.designCache = new DesignCache<>();
+    return this;
+  }
+
+  /**
+   * Evaluate individuals by an objective instead of cask effect cost or total cost of the workload. The sampled
+   * cost model is not used with an objective.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the genetic instance
+   */
+  @Override
+  public Genetic withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  @Override
+  public Genetic withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /**
+   * Set the seed of the random number generator, to reproduce a run
+   *
+   * @param seed the seed
+   * @return the genetic instance
+   */
+  public Genetic withRandomSeed(long seed) {
+    this.random = new RestorableRandom(seed);
+    return this;
+  }
+
+  /**
+   * Write checkpoints to a file at an interval, and when the algorithm returns. Checkpoints are written
+   * asynchronously at the beginning of a generation, and can be resumed by resume().
+   *
+   * @param path     path of the checkpoint file
+   * @param interval milliseconds between two checkpoints
+   * @return the genetic instance
+   */
+  public Genetic withCheckpoint(String path, long interval) {
+    this.checkpointWriter = new CheckpointWriter(path, interval);
+    return this;
+  }
+
+  /**
+   * Resume from a checkpoint, optimal() continues from the generation where the checkpoint is written, and
+   * draws the same random numbers. Parameters are not a part of the checkpoint, they should be set as in
+   * the original run, including the seed of a sampled cost model.
+   *
+   * @param path path of the checkpoint file
+   * @return the genetic instance
+   * @throws IOException if the file is not a checkpoint of genetic algorithm on the data table
+   */
+  public Genetic resume(String path) throws IOException {
+    DataInputStream in = Checkpoint.open(path, Checkpoint.GENETIC, dataTable.getColNum());
+    resumedIteration = in.readInt();
+    Checkpoint.readRandom(in, random);
+    bestMultiReplicas = in.readBoolean() ? Checkpoint.readMultiReplicas(in, dataTable) : null;
+    resumedPopulation = new MultiReplicas[in.readInt()];
+    for (int i = 0; i < resumedPopulation.length; i++) {
+      resumedPopulation[i] = Checkpoint.readMultiReplicas(in, dataTable);
+      if (resumedPopulation[i].getReplicaNum() != replicaNumber)
+        throw new IllegalArgumentException("Replica numbers are inconsistent");
+    }
+    return this;
+  }
+
+  /**
+   * Put a multi-replica into the initial population, e.g. from GreedyConstruction. Other individuals are
+   * initialized randomly.
+   *
+   * @param m a multi-replica, with the same replica number
+   * @return the genetic instance
+   */
+  public Genetic initSolution(MultiReplicas m) {
+    if (m.getReplicaNum() != replicaNumber)
+      throw new IllegalArgumentException("Replica numbers are inconsistent");
+    this.seed = new MultiReplicas(m);
+    return this;
+  }
+
   public Genetic withGeneChangeNumber(int geneChangeNum){
     if (geneChangeNum <= 0 || geneChangeNum > replicaNumber)
       throw new IllegalArgumentException("Initialize replica number after gene change number , or gene change number greater than replica number.");
@@ -130,28 +278,102 @@ public class Genetic {
 
 
   /**
-   * The GA method
+   * The GA method. It returns the dominant individual of the last population, or the best individual
+   * ever evaluated if that one is better, e.g. when it is stopped by the run control.
    *
    * @return the optimal multi-replica
    * @throws NoSuchAlgorithmException
    */
   public MultiReplicas optimal() throws NoSuchAlgorithmException {
+    // the optimality gap of designs offered is relative to this lower bound
+    runControl.withLowerBound(objective == null
+            ? LowerBound.cost(dataTable, queries, replicaNumber)
+            : objective.lowerBound(replicaNumber));
     // initialize the populationSize, a group of multi-replicas / solutions
-    MultiReplicas[] curPopulation = init();
-    int curIteration = 0;
+    MultiReplicas[] curPopulation;
+    int curIteration;
+    if (resumedPopulation != null) {
+      curPopulation = resumedPopulation;
+      curIteration = resumedIteration;
+      resumedPopulation = null;
+      if (bestMultiReplicas != null) cost(bestMultiReplicas);
+    } else {
+      curPopulation = init();
+      curIteration = 0;
+    }
+    byte[] state = null;
     while (true) {
+      if (checkpointWriter != null) {
+        state = checkpoint(curPopulation, curIteration);
+        if (checkpointWriter.isDue()) writeCheckpoint(state, false);
+      }
       // pick and copy
       curPopulation = copy(curPopulation);
+      costHistory.add(bestCost.doubleValue());
       if (isTerminate(curIteration, curPopulation)) break;
+      if (runControl.isStopped()) {
+        multiReplicas = bestMultiReplicas;
+        break;
+      }
       // crossover
       curPopulation = crossover(curPopulation);
       // mutation
       curPopulation = mutate(curPopulation);
       curIteration++;
     }
+    // the state at the beginning of the last generation, so that a stopped run resumes exactly
+    if (checkpointWriter != null) writeCheckpoint(state, true);
+    if (objective != null) optimalCost = objective.cost(multiReplicas);
+    else optimalCost = isNewMethod
+            ? CostModel.cost(multiReplicas, queries)
+            : CostModel.totalCost(multiReplicas, queries);
+    if (bestCost.compareTo(optimalCost) < 0) {
+      multiReplicas = new MultiReplicas(bestMultiReplicas);
+      optimalCost = bestCost;
+    }
     return multiReplicas; // the multiReplica
   }
 
+  /**
+   * Hand a checkpoint to the writer, and close it after the final one.
+   *
+   * @param state   the checkpoint
+   * @param isFinal if it is the final checkpoint, written when the algorithm returns
+   */
+  private void writeCheckpoint(byte[] state, boolean isFinal) {
+    try {
+      checkpointWriter.write(state);
+      if (isFinal) checkpointWriter.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Serialize the state at the beginning of a generation: the generation number, state of the random number
+   * generator, the best individual so far, and the population. Costs are evaluated again on resume.
+   *
+   * @param population   the population
+   * @param curIteration the generation number
+   * @return the checkpoint
+   */
+  private byte[] checkpoint(MultiReplicas[] population, int curIteration) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = Checkpoint.begin(Checkpoint.GENETIC, dataTable.getColNum(), bytes);
+      out.writeInt(curIteration);
+      Checkpoint.writeRandom(out, random);
+      out.writeBoolean(bestMultiReplicas != null);
+      if (bestMultiReplicas != null) Checkpoint.writeMultiReplicas(out, bestMultiReplicas);
+      out.writeInt(population.length);
+      for (MultiReplicas m : population) Checkpoint.writeMultiReplicas(out, m);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Process of copying population. First calculate fitness array, and get the picking probability.
    * Continuously generate a random double value , from 0 to 1, and pick the correspond individual
@@ -162,7 +384,6 @@ public class Genetic {
    */
   private MultiReplicas[] copy(MultiReplicas[] population) throws NoSuchAlgorithmException {
 //    Random random = SecureRandom.getInstanceStrong();
-    Random random = new Random();
     BigDecimal[] fitArr = fit(population);
     BigDecimal total = new BigDecimal(0);
     for (BigDecimal fitness : fitArr) total = total.add(fitness);
@@ -193,12 +414,12 @@ public class Genetic {
    * @param m2 one of the parents (multi-replica)
    * @return a pair, two children
    */
-  private Pair<MultiReplicas, MultiReplicas> crossover(MultiReplicas m1, MultiReplicas m2)
+  Pair<MultiReplicas, MultiReplicas> crossover(MultiReplicas m1, MultiReplicas m2)
           throws NoSuchAlgorithmException {
     if (m1.getReplicaNum() != m2.getReplicaNum())
       throw new IllegalArgumentException("Replica numbers are inconsistent");
     // save first index(i) of element
-    int crossoverPoint = new Random()
+    int crossoverPoint = random
             .nextInt(m1.getReplicaNum() - 1) + 1;
     Replica[] mr1 = m1.getReplicasArray(true);
     Replica[] mr2 = m2.getReplicasArray(true);
@@ -228,7 +449,7 @@ public class Genetic {
           throws NoSuchAlgorithmException {
     List<MultiReplicas> list = new ArrayList<>();
     Collections.addAll(list, population);
-    Collections.shuffle(list);
+    Collections.shuffle(list, random);
     population = list.toArray(new MultiReplicas[0]);
     int maxNum = (int) (crossoverRate * population.length / 2);
     for (int i = 0; i < maxNum; i++) {
@@ -264,7 +485,7 @@ public class Genetic {
    * @param multiReplicas original individual (multi-replica)
    * @return new individual (multi-replica)
    */
-  private MultiReplicas mutate(MultiReplicas multiReplicas) throws NoSuchAlgorithmException {
+  MultiReplicas mutate(MultiReplicas multiReplicas) throws NoSuchAlgorithmException {
     Replica[] rs = multiReplicas.getReplicasArray(true);
     Integer[] mutateIdx = generateRandomArray(0, multiReplicas.getReplicaNum(), geneChangeNum);
     for (int i = 0; i < mutateIdx.length; i++)
@@ -291,7 +512,7 @@ public class Genetic {
     for (int i = min; i < min + rangeLen; i++)
       ls.add(i);
     Integer[] ans = new Integer[len];
-    Collections.shuffle(ls);
+    Collections.shuffle(ls, random);
     System.arraycopy(ls.toArray(new Integer[0]), 0, ans, 0, ans.length);
     return ans;
   }
@@ -305,7 +526,7 @@ public class Genetic {
   private MultiReplicas[] init() {
     MultiReplicas[] multiReplicas = new MultiReplicas[populationSize];
     for (int i = 0; i < multiReplicas.length; i++)
-      multiReplicas[i] = initRandomMultiReplicas();
+      multiReplicas[i] = i == 0 && seed != null ? new MultiReplicas(seed) : initRandomMultiReplicas();
     return multiReplicas;
   }
 
@@ -317,7 +538,7 @@ public class Genetic {
   private MultiReplicas initRandomMultiReplicas() {
     MultiReplicas newMultiReplica = new MultiReplicas();
     for (int i = 0; i < replicaNumber; i++)
-      newMultiReplica.add(new Replica(dataTable, ArrayTransform.random(dataTable.getColNum())));
+      newMultiReplica.add(new Replica(dataTable, ArrayTransform.random(dataTable.getColNum(), random)));
     return newMultiReplica;
   }
 
@@ -331,14 +552,9 @@ public class Genetic {
     BigDecimal[] ans = new BigDecimal[curPopulation.length];
     BigDecimal max = null;
 
-    if (isNewMethod)
-      for (int i = 0; i < ans.length; i++)
-        ans[i] = BigDecimal.valueOf(1)
-                .divide(CostModel.cost(curPopulation[i], queries), 1000, BigDecimal.ROUND_HALF_UP);
-    else
-      for (int i = 0; i < ans.length; i++)
-        ans[i] = BigDecimal.valueOf(1)
-                .divide(CostModel.totalCost(curPopulation[i], queries), 1000, BigDecimal.ROUND_HALF_UP);
+    for (int i = 0; i < ans.length; i++)
+      ans[i] = BigDecimal.valueOf(1)
+              .divide(cost(curPopulation[i]), 1000, BigDecimal.ROUND_HALF_UP);
 
 
 //    if (isNewMethod) {
@@ -369,6 +585,40 @@ public class Genetic {
     return ans;
   }
 
+  /**
+   * Get the cost of an individual. If a sampled cost model is set, an individual which is unlikely to beat
+   * the best cost so far gets its estimated cost, others are confirmed on the full workload. Confirmed costs
+   * are cached if a design cache is set.
+   *
+   * @param multiReplicas an individual
+   * @return the cost
+   */
+  private BigDecimal cost(MultiReplicas multiReplicas) {
+    DesignKey key = designCache == null ? null : DesignKey.of(multiReplicas);
+    if (key != null) {
+      BigDecimal cached = designCache.get(key);
+      if (cached != null) return cached;
+    }
+    runControl.countEvaluation();
+    if (sampledCostModel != null && objective == null) {
+      SampledCostModel.Estimate estimate = sampledCostModel.estimate(multiReplicas, isNewMethod);
+      if (bestCost != null && estimate.getLowerBound() > bestCost.doubleValue())
+        return BigDecimal.valueOf(estimate.getValue());
+    }
+    BigDecimal cost = objective != null
+            ? objective.cost(multiReplicas)
+            : isNewMethod
+            ? CostModel.cost(multiReplicas, queries)
+            : CostModel.totalCost(multiReplicas, queries);
+    if (key != null) designCache.put(key, cost);
+    if (bestCost == null || bestCost.compareTo(cost) > 0) {
+      bestCost = cost;
+      bestMultiReplicas = new MultiReplicas(multiReplicas);
+      runControl.offer(multiReplicas, cost.doubleValue(), getName());
+    }
+    return cost;
+  }
+
   /**
    * Check if GA should terminate. The termination is possible only after executing iteration more than
    * min-iteration times. Then analysis the current population. If most of individuals are the same one,
@@ -414,7 +664,7 @@ public class Genetic {
   private Replica generateNewReplica(Replica replica)
           throws NoSuchAlgorithmException {
 //    Random rand = SecureRandom.getInstanceStrong();
-    Random rand = new Random();
+    Random rand = random;
     int columnNum = replica.getDataTable().getColNum();
     int pos0 = 0;
     int pos1 = 0;
@@ -429,7 +679,7 @@ public class Genetic {
       if (isIn(seed, 0, 5))
         newOrder = ArrayTransform.swap(replica.getOrder(), pos0, pos1);
       else if (isIn(seed, 5, 20))
-        newOrder = ArrayTransform.shuffle(replica.getOrder(), pos0, len);
+        newOrder = ArrayTransform.shuffle(replica.getOrder(), pos0, len, rand);
       else if (isIn(seed, 20, 40))
         newOrder = ArrayTransform.swap(replica.getOrder(), pos0, pos1);
       else if (isIn(seed, 40, 60))
@@ -458,6 +708,26 @@ public class Genetic {
     return value >= lowerBound && value < upperBound;
   }
 
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
+  }
+
+  /**
+   * Get the record history of the least cost, one for each generation.
+   *
+   * @return the record history
+   */
+  @Override
+  public List<Double> getHistory() {
+    return costHistory;
+  }
+
   public DataTable getDataTable() {
     return dataTable;
   }
@@ -0,0 +1,541 @@
+package genetic;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.DesignCache;
+import cost.LowerBound;
+import cost.Objective;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import heterogeneous.ArrayTransform;
+import javafx.util.Pair;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+import query.Query;
+import replica.DesignKey;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import java.math.BigDecimal;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Multi-objective genetic algorithm, NSGA-II, returning the Pareto front of multi-replica strategies over four
+ * objectives, all minimized: cask effect cost, total cost, load imbalance, and replica number. The load imbalance
+ * is (max load - min load) / max load over replicas, the balance Rita filters by skew factor. Replica numbers
+ * range over [min, max], so the front shows what each replica number buys, and a trade-off point can be picked
+ * from it instead of running optimizers once per objective.
+ * Crossover and mutation of replicas are the operators of Genetic. Crossover takes parents of the same replica
+ * number, and a replica mutation adds a copy of a replica or removes one. Each generation, offspring are evaluated
+ * in parallel, merged with parents, and the next population is filled by fronts of the non-dominated sorting,
+ * the last front by crowding distance. Objectives of strategies are cached by canonical encoding, so duplicate
+ * offspring are evaluated once.
+ * As an Optimizer, the solution is the strategy of the front with the least cask effect cost, or total cost,
+ * and the replica number set by withReplicaNumber is the max replica number. An Objective set by withObjective()
+ * replaces cask effect cost, as an objective of the front and as the cost of the solution.
+ */
+public class ParetoGenetic implements Optimizer {
+
+  private DataTable dataTable;
+  private Query[] queries;
+  private SelectivityTable selectivityTable;
+  private boolean isNewMethod;
+
+  private int minReplicaNumber = 1;
+  private int replicaNumber;
+  private int populationSize;
+  private int maxIteration;
+  private double crossoverRate;
+  private double mutationRate;
+  private double replicaMutationRate;
+  private int threadNumber = Runtime.getRuntime().availableProcessors();
+  private long randomSeed = new Random().nextLong();
+
+  // replica operators, random and objectives cache of a run
+  private Genetic operators;
+  private Random random;
+  private DesignCache<double[]> designCache;
+
+  // the objective replacing cask effect cost, null for cask effect cost of the workload
+  private Objective objective = null;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // the solution
+  private List<Individual> front = new ArrayList<>();
+  private MultiReplicas multiReplicas = null;
+  private BigDecimal optimalCost;
+  private List<Double> costHistory = new ArrayList<>();
+
+  /**
+   * Constructor, using constant values in Constant class
+   *
+   * @param dataTable info of the data table
+   * @param queries   workload
+   */
+  public ParetoGenetic(DataTable dataTable, Query[] queries) {
+    this(dataTable, queries, Constant.REPLICA_NUMBER, Constant.IS_NEW_METHOD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dataTable     info of the data table
+   * @param queries       workload
+   * @param replicaNumber max number of replica
+   * @param isNewMethod   if the solution has the least cask effect cost or total cost
+   */
+  public ParetoGenetic(DataTable dataTable, Query[] queries, int replicaNumber, boolean isNewMethod) {
+    this.dataTable = dataTable;
+    this.queries = queries;
+    this.replicaNumber = replicaNumber;
+    this.isNewMethod = isNewMethod;
+    this.populationSize = Constant.PARETO_POPULATION;
+    this.maxIteration = Constant.PARETO_MAX_ITERATION;
+    this.crossoverRate = Constant.PARETO_CROSSOVER_RATE;
+    this.mutationRate = Constant.PARETO_MUTATION_RATE;
+    this.replicaMutationRate = Constant.PARETO_REPLICA_MUTATION_RATE;
+  }
+
+  @Override
+  public ParetoGenetic withReplicaNumber(int n) {
+    this.replicaNumber = n;
+    return this;
+  }
+
+  /**
+   * Set the range of replica numbers
+   *
+   * @param min the least replica number
+   * @param max the greatest replica number
+   * @return the pareto genetic instance
+   */
+  public ParetoGenetic withReplicaRange(int min, int max) {
+    if (min <= 0 || max < min) throw new IllegalArgumentException();
+    this.minReplicaNumber = min;
+    this.replicaNumber = max;
+    return this;
+  }
+
+  public ParetoGenetic withPopulationSize(int populationSize) {
+    this.populationSize = populationSize;
+    return this;
+  }
+
+  public ParetoGenetic withMaxIteration(int maxIteration) {
+    this.maxIteration = maxIteration;
+    return this;
+  }
+
+  /**
+   * Set the probability that a pair of parents of the same replica number is crossed over
+   *
+   * @param crossoverRate the crossover rate
+   * @return the pareto genetic instance
+   */
+  public ParetoGenetic withCrossoverRate(double crossoverRate) {
+    this.crossoverRate = crossoverRate;
+    return this;
+  }
+
+  /**
+   * Set the probability that a replica of an offspring is mutated
+   *
+   * @param mutationRate the mutation rate
+   * @return the pareto genetic instance
+   */
+  public ParetoGenetic withMutationRate(double mutationRate) {
+    this.mutationRate = mutationRate;
+    return this;
+  }
+
+  /**
+   * Set the probability that a replica is added to or removed from an offspring
+   *
+   * @param replicaMutationRate the replica mutation rate
+   * @return the pareto genetic instance
+   */
+  public ParetoGenetic withReplicaMutationRate(double replicaMutationRate) {
+    this.replicaMutationRate = replicaMutationRate;
+    return this;
+  }
+
+  public ParetoGenetic withThreadNumber(int threadNumber) {
+    if (threadNumber <= 0) throw new IllegalArgumentException();
+    this.threadNumber = threadNumber;
+    return this;
+  }
+
+  public ParetoGenetic withRandomSeed(long seed) {
+    this.randomSeed = seed;
+    return this;
+  }
+
+  /**
+   * Replace cask effect cost by an objective, e.g. to trade latency under load for replica number.
+   *
+   * @param objective the objective, null for cask effect cost of the workload
+   * @return the pareto genetic instance
+   */
+  @Override
+  public ParetoGenetic withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  @Override
+  public ParetoGenetic withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /*
+   * Run the algorithm
+   * 1. initialize a population of random strategies of random replica numbers, evaluate it in parallel
+   * 2. sort the population into fronts, compute crowding distances
+   * 3. loop [less than max iteration and not stopped]
+   * 4.  | pick parents by binary tournament, on front and crowding distance
+   * 5.  | crossover and mutate them into offspring, evaluate offspring in parallel
+   * 6.  | sort parents and offspring into fronts
+   * 7.  | fill the next population by fronts, the last front by crowding distance
+   * 8. end loop
+   * 9. return the strategy of the first front with the least cost
+   */
+  public MultiReplicas optimal() throws NoSuchAlgorithmException {
+    if (populationSize < 2 || minReplicaNumber > replicaNumber) throw new IllegalArgumentException();
+    // the optimality gap of designs offered is relative to this lower bound
+    runControl.withLowerBound(objective == null
+            ? LowerBound.cost(dataTable, queries, replicaNumber)
+            : objective.lowerBound(replicaNumber));
+    selectivityTable = new SelectivityTable(dataTable, queries);
+    operators = new Genetic(dataTable, queries).withGeneChangeNumber(1).withRandomSeed(randomSeed);
+    random = new Random(randomSeed ^ 0x5DEECE66DL);
+    designCache = new DesignCache<>();
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadNumber);
+    try {
+      List<Individual> population = new ArrayList<>();
+      for (int i = 0; i < populationSize; i++) population.add(new Individual(initRandomMultiReplicas()));
+      evaluate(population, threadPool);
+      sort(population);
+      for (int it = 0; it < maxIteration && !runControl.isStopped(); it++) {
+        List<Individual> offspring = reproduce(population);
+        evaluate(offspring, threadPool);
+        List<Individual> union = new ArrayList<>(population);
+        union.addAll(offspring);
+        population = select(union);
+        costHistory.add(cost(best(population)));
+      }
+      front = new ArrayList<>();
+      for (Individual i : population) if (i.rank == 0) front.add(i);
+      front.sort(Comparator.comparingInt(Individual::getReplicaNumber)
+              .thenComparingDouble(Individual::getCaskCost));
+    } finally {
+      threadPool.shutdown();
+    }
+    multiReplicas = new MultiReplicas(best(front).multiReplicas);
+    if (objective != null) optimalCost = BigDecimal.valueOf(best(front).getCaskCost());
+    else optimalCost = isNewMethod
+            ? CostModel.cost(multiReplicas, queries)
+            : CostModel.totalCost(multiReplicas, queries);
+    return multiReplicas;
+  }
+
+  /**
+   * Create offspring: parents picked by binary tournament, crossed over if they have the same replica number,
+   * and mutated.
+   */
+  private List<Individual> reproduce(List<Individual> population) throws NoSuchAlgorithmException {
+    List<Individual> offspring = new ArrayList<>();
+    while (offspring.size() < populationSize) {
+      MultiReplicas m1 = tournament(population).multiReplicas;
+      MultiReplicas m2 = tournament(population).multiReplicas;
+      if (m1.getReplicaNum() == m2.getReplicaNum() && m1.getReplicaNum() > 1
+              && random.nextDouble() < crossoverRate) {
+        Pair<MultiReplicas, MultiReplicas> children = operators.crossover(m1, m2);
+        m1 = children.getKey();
+        m2 = children.getValue();
+      }
+      offspring.add(new Individual(mutate(m1)));
+      if (offspring.size() < populationSize) offspring.add(new Individual(mutate(m2)));
+    }
+    return offspring;
+  }
+
+  /**
+   * Mutate replicas by the operator of Genetic, and add or remove a replica, within the range of replica numbers.
+   */
+  private MultiReplicas mutate(MultiReplicas m) throws NoSuchAlgorithmException {
+    for (int i = 0; i < m.getReplicaNum(); i++)
+      if (random.nextDouble() < mutationRate) m = operators.mutate(m);
+    if (random.nextDouble() < replicaMutationRate) {
+      Replica[] rs = m.getReplicasArray(true);
+      boolean isAdd = rs.length == minReplicaNumber
+              || (rs.length < replicaNumber && random.nextBoolean());
+      if (isAdd && rs.length < replicaNumber) {
+        m = new MultiReplicas(m).add(new Replica(rs[random.nextInt(rs.length)]));
+      } else if (!isAdd && rs.length > minReplicaNumber) {
+        int removed = random.nextInt(rs.length);
+        m = new MultiReplicas();
+        for (int i = 0; i < rs.length; i++) if (i != removed) m.add(rs[i]);
+      }
+    }
+    return m;
+  }
+
+  private Individual tournament(List<Individual> population) {
+    Individual a = population.get(random.nextInt(population.size()));
+    Individual b = population.get(random.nextInt(population.size()));
+    if (a.rank != b.rank) return a.rank < b.rank ? a : b;
+    return a.crowding >= b.crowding ? a : b;
+  }
+
+  /**
+   * Evaluate objectives of individuals in parallel, answering duplicates from the cache.
+   */
+  private void evaluate(List<Individual> individuals, ExecutorService threadPool) {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (Individual i : individuals) {
+      tasks.add(() -> {
+        DesignKey key = DesignKey.of(i.multiReplicas);
+        double[] objectives = designCache.get(key);
+        if (objectives == null) {
+          runControl.countEvaluation();
+          objectives = objectives(i.multiReplicas);
+          designCache.put(key, objectives);
+        }
+        i.objectives = objectives;
+        return null;
+      });
+    }
+    try {
+      for (Future<Void> f : threadPool.invokeAll(tasks)) f.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+    for (Individual i : individuals)
+      runControl.offer(i.multiReplicas, cost(i), getName());
+  }
+
+  /**
+   * Objectives of a strategy: cask effect cost or cost of the objective, total cost, load imbalance and replica
+   * number.
+   */
+  private double[] objectives(MultiReplicas m) {
+    List<int[]> orders = m.getOrders();
+    double[][] costMatrix = new double[orders.size()][];
+    for (int r = 0; r < costMatrix.length; r++) costMatrix[r] = selectivityTable.cost(orders.get(r));
+    double[] load = CostModel.costOnEachReplica(costMatrix);
+    double max = 0;
+    double min = Double.POSITIVE_INFINITY;
+    for (double l : load) {
+      max = Math.max(max, l);
+      min = Math.min(min, l);
+    }
+    return new double[]{
+            objective == null ? max : objective.cost(m).doubleValue(),
+            CostModel.cost(costMatrix, false),
+            max == 0 ? 0 : (max - min) / max,
+            costMatrix.length};
+  }
+
+  /**
+   * Fast non-dominated sorting: the rank of an individual is the index of its front, and the crowding
+   * distance is computed within each front.
+   */
+  private List<List<Individual>> sort(List<Individual> population) {
+    int n = population.size();
+    List<List<Integer>> dominated = new ArrayList<>();
+    int[] dominatorNumber = new int[n];
+    List<Integer> current = new ArrayList<>();
+    for (int p = 0; p < n; p++) {
+      dominated.add(new ArrayList<>());
+      for (int q = 0; q < n; q++) {
+        if (dominates(population.get(p), population.get(q))) dominated.get(p).add(q);
+        else if (dominates(population.get(q), population.get(p))) dominatorNumber[p]++;
+      }
+      if (dominatorNumber[p] == 0) current.add(p);
+    }
+    List<List<Individual>> fronts = new ArrayList<>();
+    while (!current.isEmpty()) {
+      List<Individual> front = new ArrayList<>();
+      List<Integer> next = new ArrayList<>();
+      for (int p : current) {
+        population.get(p).rank = fronts.size();
+        front.add(population.get(p));
+        for (int q : dominated.get(p))
+          if (--dominatorNumber[q] == 0) next.add(q);
+      }
+      crowding(front);
+      fronts.add(front);
+      current = next;
+    }
+    return fronts;
+  }
+
+  private static boolean dominates(Individual a, Individual b) {
+    boolean isBetter = false;
+    for (int k = 0; k < a.objectives.length; k++) {
+      if (a.objectives[k] > b.objectives[k]) return false;
+      if (a.objectives[k] < b.objectives[k]) isBetter = true;
+    }
+    return isBetter;
+  }
+
+  /**
+   * Crowding distance: the sum over objectives of the normalized distance between the two neighbors of an
+   * individual, infinite at the boundaries.
+   */
+  private static void crowding(List<Individual> front) {
+    for (Individual i : front) i.crowding = 0;
+    if (front.isEmpty()) return;
+    for (int k = 0; k < front.get(0).objectives.length; k++) {
+      final int obj = k;
+      front.sort(Comparator.comparingDouble(i -> i.objectives[obj]));
+      double range = front.get(front.size() - 1).objectives[k] - front.get(0).objectives[k];
+      front.get(0).crowding = Double.POSITIVE_INFINITY;
+      front.get(front.size() - 1).crowding = Double.POSITIVE_INFINITY;
+      if (range == 0) continue;
+      for (int i = 1; i < front.size() - 1; i++)
+        front.get(i).crowding += (front.get(i + 1).objectives[k] - front.get(i - 1).objectives[k]) / range;
+    }
+  }
+
+  /**
+   * Select the next population from parents and offspring, by fronts, the last front by crowding distance.
+   * Duplicates are dropped first, so that copies of a strategy do not crowd out the rest of its front.
+   */
+  private List<Individual> select(List<Individual> union) {
+    Set<DesignKey> seen = new HashSet<>();
+    List<Individual> distinct = new ArrayList<>();
+    for (Individual i : union)
+      if (seen.add(DesignKey.of(i.multiReplicas))) distinct.add(i);
+    List<Individual> res = new ArrayList<>();
+    for (List<Individual> front : sort(distinct)) {
+      if (res.size() + front.size() <= populationSize) {
+        res.addAll(front);
+      } else {
+        front.sort((a, b) -> Double.compare(b.crowding, a.crowding));
+        res.addAll(front.subList(0, populationSize - res.size()));
+      }
+      if (res.size() == populationSize) break;
+    }
+    // too few distinct strategies, refill with random ones
+    while (res.size() < populationSize) {
+      Individual i = new Individual(initRandomMultiReplicas());
+      i.objectives = objectives(i.multiReplicas);
+      res.add(i);
+    }
+    sort(res);
+    return res;
+  }
+
+  private Individual best(List<Individual> individuals) {
+    Individual res = null;
+    for (Individual i : individuals)
+      if (res == null || cost(i) < cost(res)) res = i;
+    return res;
+  }
+
+  private double cost(Individual i) {
+    return i.getCost(isNewMethod || objective != null);
+  }
+
+  /**
+   * Initialize an individual of a random replica number with random orders
+   */
+  private MultiReplicas initRandomMultiReplicas() {
+    int n = minReplicaNumber + random.nextInt(replicaNumber - minReplicaNumber + 1);
+    MultiReplicas m = new MultiReplicas();
+    for (int i = 0; i < n; i++)
+      m.add(new Replica(dataTable, ArrayTransform.random(dataTable.getColNum(), random)));
+    return m;
+  }
+
+  /**
+   * Get the Pareto front of the last population, sorted by replica number and cask effect cost.
+   *
+   * @return the Pareto front
+   */
+  public List<Individual> getParetoFront() {
+    return front;
+  }
+
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
+  }
+
+  /**
+   * Get the record history of the least cost in the population, one for each generation.
+   *
+   * @return the record history
+   */
+  @Override
+  public List<Double> getHistory() {
+    return costHistory;
+  }
+
+  /**
+   * A strategy of the population, its objectives, the index of its front, and its crowding distance.
+   */
+  public static class Individual {
+    private MultiReplicas multiReplicas;
+    private double[] objectives;
+    private int rank;
+    private double crowding;
+
+    Individual(MultiReplicas multiReplicas) {
+      this.multiReplicas = multiReplicas;
+    }
+
+    public MultiReplicas getMultiReplicas() {
+      return multiReplicas;
+    }
+
+    /**
+     * Get the cask effect cost, or the cost of the objective if the optimizer has one
+     *
+     * @return the cost
+     */
+    public double getCaskCost() {
+      return objectives[0];
+    }
+
+    public double getTotalCost() {
+      return objectives[1];
+    }
+
+    public double getImbalance() {
+      return objectives[2];
+    }
+
+    public int getReplicaNumber() {
+      return (int) objectives[3];
+    }
+
+    private double getCost(boolean isNewMethod) {
+      return isNewMethod ? getCaskCost() : getTotalCost();
+    }
+
+    @Override
+    public String toString() {
+      return "{replica_num:" + getReplicaNumber() + "||cask_cost:" + getCaskCost() + "||total_cost:"
+              + getTotalCost() + "||imbalance:" + getImbalance() + "||solution:"
+              + multiReplicas.getOrderString() + "}";
+    }
+  }
+}
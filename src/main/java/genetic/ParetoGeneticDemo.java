@@ -0,0 +1,31 @@
+package genetic;
+
+import datamodel.DataTable;
+import query.Query;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.security.NoSuchAlgorithmException;
+
+public class ParetoGeneticDemo {
+  static Query[] getQueries(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("queries_" + colNums));
+    return (Query[]) ois.readObject();
+  }
+
+  static DataTable getDataTable(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("data_table_" + colNums));
+    return (DataTable) ois.readObject();
+  }
+
+  public static void main(String args[]) throws IOException, ClassNotFoundException, NoSuchAlgorithmException {
+    DataTable dataTable = getDataTable(7);
+    Query[] queries = getQueries(7);
+    ParetoGenetic g = new ParetoGenetic(dataTable, queries, 5, true).withReplicaRange(2, 5);
+    g.optimal();
+    for (ParetoGenetic.Individual i : g.getParetoFront())
+      System.out.println(i);
+    System.out.println("cost: " + g.getOptimalCost());
+  }
+}
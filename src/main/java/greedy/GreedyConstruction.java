@@ -0,0 +1,326 @@
+package greedy;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.Objective;
+import cost.QueryAnalysis;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+import searchall.DynamicProgramming;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Greedy construction of a multi-replica strategy, adding replicas one at a time. The first replica is the
+ * optimal single replica, found by dynamic programming. Each next replica is the candidate order with the
+ * greatest drop of cost, given the replicas already placed. Candidates are:
+ * 1. the optimal order for each group of queries sharing a predicate pattern (QueryAnalysis.getPredicatePattern),
+ * by dynamic programming, or by range query number if there are too many columns or patterns.
+ * 2. in each round, the order saving most on routed cost given the placed replicas, by dynamic programming
+ * with each query capped by its cost on placed replicas, and a copy of the placed replica with the greatest
+ * load.
+ * Gains are re-evaluated lazily as in CELF: candidates are kept in a priority queue by the gain computed in
+ * an earlier round, and only the top one is re-evaluated, until the top one is up to date. The gain of a
+ * candidate only shrinks when more replicas are placed under total cost; under cask effect cost it usually
+ * does, so lazy evaluation is a heuristic that saves most evaluations.
+ * The result is a warm start for SimulateAnneal, Rita and Genetic, and an incumbent for SearchAll. It can also
+ * start from replicas already placed, e.g. a design of fewer replicas, and add the remaining ones greedily.
+ */
+public class GreedyConstruction implements Optimizer {
+
+  private DataTable data;
+  private Query[] queries;
+  private SelectivityTable selectivityTable;
+
+  private int replicaNumber;
+  private boolean isNewMethod;
+
+  private int evaluationNumber = 0;
+
+  // replicas placed before the first round, null to start from the optimal single replica
+  private MultiReplicas initial = null;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+  // orders of placed replicas
+  private List<int[]> placed;
+
+  // the solution
+  private MultiReplicas multiReplicas = null;
+  private BigDecimal optimalCost;
+  private List<Double> costHistory = new ArrayList<>();
+
+  /**
+   * Constructor, using constant values in Constant class
+   *
+   * @param dataTable info of the data table
+   * @param queries   workload
+   */
+  public GreedyConstruction(DataTable dataTable, Query[] queries) {
+    this(dataTable, queries, Constant.REPLICA_NUMBER, Constant.IS_NEW_METHOD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dataTable     info of the data table
+   * @param queries       workload
+   * @param replicaNumber number of replica
+   * @param isNewMethod   if use cask effect objective function or total cost
+   */
+  public GreedyConstruction(DataTable dataTable, Query[] queries, int replicaNumber, boolean isNewMethod) {
+    this.data = dataTable;
+    this.queries = queries;
+    this.replicaNumber = replicaNumber;
+    this.isNewMethod = isNewMethod;
+  }
+
+  @Override
+  public GreedyConstruction withReplicaNumber(int n) {
+    this.replicaNumber = n;
+    return this;
+  }
+
+  /**
+   * Start from replicas already placed, instead of the optimal single replica, e.g. to add a replica to a
+   * design of fewer replicas.
+   *
+   * @param m the placed replicas, not more than the replica number
+   * @return the greedy construction instance
+   */
+  public GreedyConstruction initSolution(MultiReplicas m) {
+    if (m.getReplicaNum() == 0 || m.getReplicaNum() > replicaNumber)
+      throw new IllegalArgumentException("Replica numbers are inconsistent");
+    this.initial = new MultiReplicas(m);
+    return this;
+  }
+
+  @Override
+  public GreedyConstruction withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /**
+   * Evaluate gains by an objective instead of the cost matrix of the workload. Candidate orders are still
+   * generated on the workload.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the greedy construction instance
+   */
+  @Override
+  public GreedyConstruction withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /*
+   * Run the algorithm
+   * 1. place the optimal single replica or the initial replicas, and generate candidates
+   * 2. evaluate gains of all candidates, put them in a priority queue
+   * 3. loop [less than replica number placed]
+   * 4.  | add the capped optimal order and a copy of the bottleneck replica as candidates
+   * 5.  | loop
+   * 6.  |  | pop the candidate with the greatest gain
+   * 7.  |  | if [its gain is evaluated in this round]
+   * 8.  |  |  | place it, break
+   * 9.  |  | else
+   * 10. |  |  | re-evaluate the gain, push it back
+   * 11. |  | end if
+   * 12. | end loop
+   * 13. end loop
+   * If it is stopped, the remaining replicas are copies of the bottleneck replica.
+   */
+  public MultiReplicas optimal() {
+    selectivityTable = new SelectivityTable(data, queries);
+    placed = new ArrayList<>();
+    List<double[]> rows = new ArrayList<>();
+    if (initial == null) {
+      placed.add(new DynamicProgramming(data, queries, selectivityTable).optimalReplica().getOrder());
+    } else {
+      for (int[] order : initial.getOrders()) placed.add(order.clone());
+    }
+    for (int[] order : placed) rows.add(selectivityTable.cost(order));
+    double curCost = cost(rows, null);
+    costHistory.add(curCost);
+
+    Set<String> seen = new HashSet<>();
+    for (int[] order : placed) seen.add(Arrays.toString(order));
+    PriorityQueue<Candidate> queue = new PriorityQueue<>((a, b) -> Double.compare(b.gain, a.gain));
+    for (int[] order : getPatternOrders())
+      if (seen.add(Arrays.toString(order))) queue.add(new Candidate(order, 0));
+
+    for (int round = placed.size(); round < replicaNumber; round++) {
+      if (!runControl.isStopped()) {
+        int[] capped = getCappedOrder(rows);
+        if (seen.add(Arrays.toString(capped))) queue.add(evaluate(new Candidate(capped, round), rows, curCost));
+      }
+      // a copy of the replica with the greatest load shares its load
+      Candidate copy = evaluate(new Candidate(placed.get(getBottleneckReplica(rows)), round), rows, curCost);
+      queue.add(copy);
+      Candidate best = queue.poll();
+      while (best.round != round) {
+        best.round = round;
+        queue.add(evaluate(best, rows, curCost));
+        if (runControl.isStopped()) {
+          queue.remove(copy);
+          best = copy;
+          break;
+        }
+        best = queue.poll();
+      }
+      placed.add(best.order);
+      rows.add(best.row);
+      curCost = cost(rows, null);
+      costHistory.add(curCost);
+    }
+
+    multiReplicas = new MultiReplicas();
+    for (int[] order : placed) multiReplicas.add(new Replica(data, order));
+    if (objective != null) optimalCost = objective.cost(multiReplicas);
+    else optimalCost = isNewMethod
+            ? CostModel.cost(multiReplicas, queries)
+            : CostModel.totalCost(multiReplicas, queries);
+    runControl.offer(multiReplicas, optimalCost.doubleValue(), getName());
+    return multiReplicas;
+  }
+
+  /**
+   * Get the optimal order of each group of queries sharing a predicate pattern.
+   *
+   * @return a list of orders
+   */
+  private List<int[]> getPatternOrders() {
+    Map<Long, List<Query>> groups = new LinkedHashMap<>();
+    for (Query q : queries)
+      groups.computeIfAbsent(QueryAnalysis.getPredicatePattern(q), k -> new ArrayList<>()).add(q);
+    boolean isExact = data.getColNum() <= Constant.DP_MAX_COLUMN_NUMBER
+            && (double) groups.size() * (1L << data.getColNum()) <= Constant.GREEDY_DP_STATE_BUDGET;
+    List<int[]> res = new ArrayList<>();
+    for (List<Query> group : groups.values()) {
+      Query[] groupQueries = group.toArray(new Query[0]);
+      if (isExact)
+        res.add(new DynamicProgramming(data, groupQueries).optimalReplica().getOrder());
+      else
+        res.add(QueryAnalysis.getRangeQueryNumberOrder(groupQueries));
+    }
+    return res;
+  }
+
+  /**
+   * Get the order saving most on routed cost, given the placed replicas.
+   *
+   * @param rows cost of each query on each placed replica
+   * @return the order
+   */
+  private int[] getCappedOrder(List<double[]> rows) {
+    double[] caps = new double[queries.length];
+    Arrays.fill(caps, Double.POSITIVE_INFINITY);
+    for (double[] row : rows)
+      for (int q = 0; q < caps.length; q++) caps[q] = Math.min(caps[q], row[q]);
+    return new DynamicProgramming(data, queries, selectivityTable)
+            .withCaps(caps)
+            .optimalReplica()
+            .getOrder();
+  }
+
+  /**
+   * Evaluate the gain of a candidate, the drop of cost when it is added to the placed replicas.
+   */
+  private Candidate evaluate(Candidate candidate, List<double[]> rows, double curCost) {
+    candidate.gain = curCost - cost(rows, candidate);
+    return candidate;
+  }
+
+  /**
+   * Cost of the placed replicas, with a candidate replica if it is not null.
+   */
+  private double cost(List<double[]> rows, Candidate candidate) {
+    if (candidate != null) {
+      evaluationNumber++;
+      runControl.countEvaluation();
+    }
+    if (objective != null) {
+      MultiReplicas m = new MultiReplicas();
+      for (int[] order : placed) m.add(new Replica(data, order));
+      if (candidate != null) m.add(new Replica(data, candidate.order));
+      return objective.cost(m).doubleValue();
+    }
+    double[][] costMatrix = new double[rows.size() + (candidate == null ? 0 : 1)][];
+    for (int i = 0; i < rows.size(); i++) costMatrix[i] = rows.get(i);
+    if (candidate != null) costMatrix[rows.size()] = candidate.row;
+    return CostModel.cost(costMatrix, isNewMethod);
+  }
+
+  private int getBottleneckReplica(List<double[]> rows) {
+    double[] load = CostModel.costOnEachReplica(rows.toArray(new double[0][]));
+    int res = 0;
+    for (int i = 1; i < load.length; i++)
+      if (load[i] > load[res]) res = i;
+    return res;
+  }
+
+  /**
+   * Get the optimal cost after running algorithm
+   *
+   * @return the optimal cost
+   */
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
+  }
+
+  /**
+   * Get the record history of cost, one for each placed replica.
+   *
+   * @return the record history
+   */
+  @Override
+  public List<Double> getHistory() {
+    return costHistory;
+  }
+
+  /**
+   * Get the number of candidate evaluations, which lazy evaluation keeps low.
+   *
+   * @return the number of evaluations
+   */
+  public int getEvaluationNumber() {
+    return evaluationNumber;
+  }
+
+  /**
+   * A candidate order, its cost on each query, and its gain evaluated in a round.
+   */
+  private class Candidate {
+    private int[] order;
+    private double[] row;
+    private double gain = Double.POSITIVE_INFINITY;
+    private int round;
+
+    Candidate(int[] order, int round) {
+      this.order = order;
+      this.row = selectivityTable.cost(order);
+      this.round = round;
+    }
+  }
+}
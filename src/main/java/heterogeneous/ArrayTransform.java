@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 public class ArrayTransform {
 
@@ -41,8 +42,19 @@ public class ArrayTransform {
    * @return an array after shuffling
    */
   public static int[] shuffle(int[] arr) {
+    return shuffle(arr, new Random());
+  }
+
+  /**
+   * totally shuffle the array, with a given random number generator
+   *
+   * @param arr,    the original array
+   * @param random, the random number generator
+   * @return an array after shuffling
+   */
+  public static int[] shuffle(int[] arr, Random random) {
     List<Integer> ls = Arrays.asList(intToInteger(arr));
-    Collections.shuffle(ls);
+    Collections.shuffle(ls, random);
     return integerToInt(ls.toArray(new Integer[0]));
   }
 
@@ -55,13 +67,26 @@ public class ArrayTransform {
    * @return shuffled array
    */
   public static int[] shuffle(int[] a, int p, int length) {
+    return shuffle(a, p, length, new Random());
+  }
+
+  /**
+   * Shuffle part of array, with a given random number generator
+   *
+   * @param a,      array
+   * @param p,      start position
+   * @param length, length of the part
+   * @param random, the random number generator
+   * @return shuffled array
+   */
+  public static int[] shuffle(int[] a, int p, int length, Random random) {
     Integer[] arr = intToInteger(a);
     if (length < 1 || length + p > arr.length || p < 0 || p >= arr.length)
       throw new IllegalArgumentException();
     if (length == 1) return integerToInt(arr);
     Integer[] temp = new Integer[length];
     System.arraycopy(arr, p, temp, 0, length);
-    temp = intToInteger(shuffle(integerToInt(temp)));
+    temp = intToInteger(shuffle(integerToInt(temp), random));
     System.arraycopy(temp, 0, arr, p, length);
     return integerToInt(arr);
   }
@@ -73,9 +98,20 @@ public class ArrayTransform {
    * @return an array in random order
    */
   public static int[] random(int n) {
+    return random(n, new Random());
+  }
+
+  /**
+   * Generate a random order, with a given random number generator
+   *
+   * @param n,      the number of integer in the array, or upper bound {exclusive}
+   * @param random, the random number generator
+   * @return an array in random order
+   */
+  public static int[] random(int n, Random random) {
     List<Integer> ls = new ArrayList<>();
     for (int i = 0; i < n; i++) ls.add(i);
-    Collections.shuffle(ls);
+    Collections.shuffle(ls, random);
     return integerToInt(ls.toArray(new Integer[0]));
   }
 
@@ -1,20 +1,34 @@
 package heterogeneous;
 
+import checkpoint.Checkpoint;
+import checkpoint.CheckpointWriter;
+import checkpoint.RestorableRandom;
 import constant.Constant;
 import cost.CostModel;
+import cost.DesignCache;
+import cost.LowerBound;
+import cost.Objective;
 import cost.QueryAnalysis;
+import cost.SampledCostModel;
 import datamodel.DataTable;
+import optimizer.Optimizer;
+import optimizer.RunControl;
 import query.Query;
+import replica.DesignKey;
 import replica.MultiReplicas;
 import replica.Replica;
-import searchall.SearchAll;
+import searchall.DynamicProgramming;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 
-public class SimulateAnneal {
+public class SimulateAnneal implements Optimizer {
 
   private DataTable data;
   private Query[] queries;
@@ -23,13 +37,37 @@ public class SimulateAnneal {
   private double temperature;
   private int iteration = 0;
   private int optimalCnt = 0;
-//  private boolean isNewMethod = true;
+  private boolean isNewMethod = Constant.IS_NEW_METHOD;
 
   // simulate annealing parameters
   private double temperatureDecreaseRate;
   private int optimalCountThreshold;
   private int localIterationNumber;
   private double temperatureInitSeed;
+  // initialize temperature by neighbors of the initial solution instead of random solutions
+  private boolean isLocalTemperature = false;
+
+  // screen new solutions on a sample of the workload, null to evaluate on the full workload
+  private SampledCostModel sampledCostModel = null;
+
+  // the objective, null for cask effect cost of the workload
+  private Objective objective = null;
+
+  // costs of visited solutions, null to evaluate every new solution
+  private DesignCache<BigDecimal> designCache = null;
+  private boolean isSkipVisited = false;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // random number generator, its state is a part of checkpoints
+  private RestorableRandom random = new RestorableRandom();
+  private CheckpointWriter checkpointWriter = null;
+  private boolean isResumed = false;
+
+  // current solution of the local loop, null between local loops
+  private MultiReplicas curMultiReplica = null;
+  private BigDecimal curCost;
 
   // the solution
   private MultiReplicas multiReplicas = null;
@@ -58,12 +96,13 @@ public class SimulateAnneal {
    * @param dataTable,     info of the data table
    * @param queries,       workload
    * @param replicaNumber, number of replica
+   * @param isNewMethod,   if use cask effect objective function or total cost
    */
   public SimulateAnneal(DataTable dataTable, Query[] queries, int replicaNumber, boolean isNewMethod) {
     this.data = dataTable;
     this.queries = queries;
     this.replicaNumber = replicaNumber;
-//    this.isNewMethod = isNewMethod;
+    this.isNewMethod = isNewMethod;
     this.temperatureDecreaseRate = Constant.TEMPERATURE_DECREASE_RATE;
     this.optimalCountThreshold = Constant.OPTIMAL_COUNT_THRESHOLD;
     this.localIterationNumber = Constant.LOCAL_ITERATION_NUM;
@@ -81,6 +120,7 @@ public class SimulateAnneal {
     return this;
   }
 
+  @Override
   public SimulateAnneal withReplicaNumber(int n){
     this.replicaNumber = n;
     return this;
@@ -120,6 +160,117 @@ public class SimulateAnneal {
   }
 
 
+  /**
+   * Initialize temperature by neighbors of the initial solution instead of random solutions. The temperature
+   * is then low enough to refine a warm start, e.g. from GreedyConstruction, instead of moving far from it.
+   *
+   * @param isLocalTemperature true to initialize temperature by neighbors of the initial solution
+   * @return the simulate anneal instance
+   */
+  public SimulateAnneal withLocalTemperature(boolean isLocalTemperature) {
+    this.isLocalTemperature = isLocalTemperature;
+    return this;
+  }
+
+  /**
+   * Screen new solutions on a sample of the workload. A new solution is evaluated on the full workload
+   * only if the lower bound of its estimated cost is low enough to be chosen.
+   *
+   * @param sampledCostModel the sampled cost model, null to always evaluate on the full workload
+   * @return the simulate anneal instance
+   */
+  public SimulateAnneal withSampledCostModel(SampledCostModel sampledCostModel) {
+    this.sampledCostModel = sampledCostModel;
+    return this;
+  }
+
+  /**
+   * Evaluate solutions by an objective instead of cask effect cost or total cost of the workload, e.g. a
+   * ScenarioObjective for a design robust to workload drift. The sampled cost model is not used with an objective.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the simulate anneal instance
+   */
+  @Override
+  public SimulateAnneal withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /**
+   * Cache costs of new solutions by their canonical encoding, so that a solution visited again, or a
+   * permutation of its replicas, is not evaluated again. A solution visited before but evicted from the cache
+   * is skipped if isSkipVisited, otherwise it is evaluated again. The visited filter is not a part of
+   * checkpoints, so a resumed run skips less than the original one. Sizes are the defaults in Constant class.
+   *
+   * @param isSkipVisited true to skip visited solutions that are not cached
+   * @return the simulate anneal instance
+   */
+  public SimulateAnneal withDesignCache(boolean isSkipVisited) {
+    this.designCache = new DesignCache<>();
+    this.isSkipVisited = isSkipVisited;
+    return this;
+  }
+
+  /**
+   * Set the seed of the random number generator, to reproduce a run
+   *
+   * @param seed the seed
+   * @return the simulate anneal instance
+   */
+  public SimulateAnneal withRandomSeed(long seed) {
+    this.random = new RestorableRandom(seed);
+    return this;
+  }
+
+  /**
+   * Write checkpoints to a file at an interval, and when the algorithm returns. Checkpoints are written
+   * asynchronously, and can be resumed by resume().
+   *
+   * @param path     path of the checkpoint file
+   * @param interval milliseconds between two checkpoints
+   * @return the simulate anneal instance
+   */
+  public SimulateAnneal withCheckpoint(String path, long interval) {
+    this.checkpointWriter = new CheckpointWriter(path, interval);
+    return this;
+  }
+
+  /**
+   * Resume from a checkpoint, optimal() continues where the checkpoint is written, and draws the same
+   * random numbers. Parameters are not a part of the checkpoint, they should be set as in the original run,
+   * including the seed of a sampled cost model.
+   *
+   * @param path path of the checkpoint file
+   * @return the simulate anneal instance
+   * @throws IOException if the file is not a checkpoint of simulate anneal on the data table
+   */
+  public SimulateAnneal resume(String path) throws IOException {
+    DataInputStream in = Checkpoint.open(path, Checkpoint.SIMULATE_ANNEAL, data.getColNum());
+    temperature = in.readDouble();
+    iteration = in.readInt();
+    optimalCnt = in.readInt();
+    Checkpoint.readRandom(in, random);
+    multiReplicas = Checkpoint.readMultiReplicas(in, data);
+    curMultiReplica = in.readBoolean() ? Checkpoint.readMultiReplicas(in, data) : null;
+    if (multiReplicas.getReplicaNum() != replicaNumber)
+      throw new IllegalArgumentException("Replica numbers are inconsistent");
+    isResumed = true;
+    return this;
+  }
+
+  @Override
+  public SimulateAnneal withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+
   /*
    * Run the algorithm
    * 1. initialize temperature
@@ -142,50 +293,138 @@ public class SimulateAnneal {
    * 17. return optimal solution
    */
   public MultiReplicas optimal() throws NoSuchAlgorithmException {
-    initTemperature();
-    if (multiReplicas == null)
-      multiReplicas = initSolutionByOptimalReplica();
+    // the optimality gap of designs offered is relative to this lower bound
+    runControl.withLowerBound(objective == null
+            ? LowerBound.cost(data, queries, replicaNumber)
+            : objective.lowerBound(replicaNumber));
+    if (isResumed) {
+      isResumed = false;
+      optimalCost = cost(multiReplicas);
+      if (curMultiReplica != null) curCost = cost(curMultiReplica);
+    } else {
+      if (multiReplicas == null)
+        multiReplicas = initSolutionByOptimalReplica();
+      initTemperature();
 //    if (isNewMethod)
-      optimalCost = CostModel.cost(multiReplicas, queries);
+      optimalCost = cost(multiReplicas);
 //    else
 //      optimalCost = CostModel.totalCost(multiReplicas, queries);
+    }
     costHistory.add(optimalCost.doubleValue());
+    runControl.offer(multiReplicas, optimalCost.doubleValue(), getName());
 //    CostModel.analysisEachReplica(multiReplicas, queries);// TODO print something here
 
-    while (!isGlobalConverge()) {
-      MultiReplicas curMultiReplica = new MultiReplicas(multiReplicas);
-      BigDecimal curCost = optimalCost;
-      while (!isLocalConverge()) {
+    while (!isGlobalConverge() && !runControl.isStopped()) {
+      // a resumed run continues the local loop it was checkpointed in
+      if (curMultiReplica == null) {
+        curMultiReplica = new MultiReplicas(multiReplicas);
+        curCost = optimalCost;
+      }
+      while (!isLocalConverge() && !runControl.isStopped()) {
         // generate new solution
         MultiReplicas newMultiReplica = generateNewMultiReplica(curMultiReplica);
-        BigDecimal newCost;
+        DesignKey key = designCache == null ? null : DesignKey.of(newMultiReplica);
+        BigDecimal newCost = key == null ? null : designCache.get(key);
+        boolean isSkipped = newCost == null && isSkipVisited && designCache.isVisited(key);
+        if (newCost == null && !isSkipped) runControl.countEvaluation();
+        if (isSkipped) {
+          // visited before and evicted from the cache, skip it
+        } else if (newCost != null || sampledCostModel == null || objective != null) {
 //        if (isNewMethod) {
-          newCost = CostModel.cost(newMultiReplica, queries);
+          if (newCost == null) newCost = evaluate(newMultiReplica, key);
 //        } else
 //          newCost = CostModel.totalCost(newMultiReplica, queries);
-        if (isChosen(newCost, curCost)) {
-          curMultiReplica = newMultiReplica;
-          curCost = newCost;
+          if (isChosen(newCost, curCost)) {
+            curMultiReplica = newMultiReplica;
+            curCost = newCost;
+          }
+        } else {
+          double threshold = getChosenThreshold(curCost);
+          // confirm on the full workload only if the sampled estimate suggests it can be chosen
+          if (sampledCostModel.estimate(newMultiReplica, isNewMethod).getLowerBound() <= threshold) {
+            newCost = evaluate(newMultiReplica, key);
+            if (newCost.doubleValue() <= threshold) {
+              curMultiReplica = newMultiReplica;
+              curCost = newCost;
+            }
+          }
         }
 
 //        CostModel.analysisEachReplica(curMultiReplica, queries);//TODO print something here
         costHistory.add(curCost.doubleValue());
         iteration++;
+        checkpoint(false);
       }
+      // stopped in the local loop, so the final checkpoint keeps it running on resume
+      if (!isLocalConverge()) checkpoint(true);
       iteration = 0;
       if (curCost.compareTo(optimalCost) < 0) {
         multiReplicas = new MultiReplicas(curMultiReplica);
 //        CostModel.analysisEachReplica(curMultiReplica, queries);//TODO print something here
         optimalCost = curCost;
         optimalCnt = 0;
+        runControl.offer(multiReplicas, optimalCost.doubleValue(), getName());
       } else {
         optimalCnt++;
       }
+      curMultiReplica = null;
       decreaseTemperature();
     }
+    checkpoint(true);
     return multiReplicas;
   }
 
+  /**
+   * Evaluate a new solution on the full workload, and cache its cost if a design cache is set.
+   *
+   * @param multiReplica the new solution
+   * @param key          its canonical key, null if no design cache is set
+   * @return the cost
+   */
+  private BigDecimal evaluate(MultiReplicas multiReplica, DesignKey key) {
+    BigDecimal cost = cost(multiReplica);
+    if (key != null) designCache.put(key, cost);
+    return cost;
+  }
+
+  /**
+   * Cost of a solution, by the objective if it is set, otherwise cask effect cost or total cost of the workload.
+   */
+  private BigDecimal cost(MultiReplicas multiReplica) {
+    if (objective != null) return objective.cost(multiReplica);
+    return isNewMethod ? CostModel.cost(multiReplica, queries) : CostModel.totalCost(multiReplica, queries);
+  }
+
+  /**
+   * Write a checkpoint if one is due, or if it is the final one. The state is the current solution if the
+   * local loop is running, the optimal solution, temperature, counters, and state of the random number
+   * generator. Costs are evaluated again on resume.
+   *
+   * @param isFinal if it is the final checkpoint, written when the algorithm returns
+   */
+  private void checkpoint(boolean isFinal) {
+    if (checkpointWriter == null || (!isFinal && !checkpointWriter.isDue())) return;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = Checkpoint.begin(Checkpoint.SIMULATE_ANNEAL, data.getColNum(), bytes);
+      out.writeDouble(temperature);
+      out.writeInt(iteration);
+      out.writeInt(optimalCnt);
+      Checkpoint.writeRandom(out, random);
+      Checkpoint.writeMultiReplicas(out, multiReplicas);
+      out.writeBoolean(curMultiReplica != null);
+      if (curMultiReplica != null) Checkpoint.writeMultiReplicas(out, curMultiReplica);
+      out.flush();
+      checkpointWriter.write(bytes.toByteArray());
+      if (isFinal) {
+        checkpointWriter.close();
+        checkpointWriter = null;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Generate a new Replica, using different methods at certain probability.
    * 5% total shuffle, 15% range shuffle, 20% swap, 20% insert before,
@@ -194,8 +433,8 @@ public class SimulateAnneal {
    * @param replica, the original replica
    * @return new replica
    */
-  private static Replica generateNewReplica(Replica replica) {
-    Random rand = new Random();
+  private Replica generateNewReplica(Replica replica) {
+    Random rand = random;
     int columnNum = replica.getDataTable().getColNum();
     int pos0 = 0;
     int pos1 = 0;
@@ -212,7 +451,7 @@ public class SimulateAnneal {
 //      newOrder = ArrayTransform.shuffle(replica.getOrder());
       newOrder = ArrayTransform.swap(replica.getOrder(), pos0, pos1);
     else if (isIn(seed, 5, 20))
-      newOrder = ArrayTransform.shuffle(replica.getOrder(), pos0, len);
+      newOrder = ArrayTransform.shuffle(replica.getOrder(), pos0, len, rand);
     else if (isIn(seed, 20, 40))
       newOrder = ArrayTransform.swap(replica.getOrder(), pos0, pos1);
     else if (isIn(seed, 40, 60))
@@ -260,7 +499,18 @@ public class SimulateAnneal {
   private boolean isChosen(BigDecimal newCost, BigDecimal oldCost) {
     if (newCost.compareTo(oldCost) < 0) return true;
     double threshold = Math.exp(oldCost.subtract(newCost).doubleValue() / temperature);
-    return Math.random() <= threshold;
+    return random.nextDouble() <= threshold;
+  }
+
+  /**
+   * Get the maximum cost of a new strategy to be chosen. It draws the random value of isChosen in advance,
+   * so that a new strategy is chosen iff new cost <= old cost - temperature * ln(random).
+   *
+   * @param oldCost cost of current strategy
+   * @return the maximum cost to be chosen
+   */
+  private double getChosenThreshold(BigDecimal oldCost) {
+    return oldCost.doubleValue() - temperature * Math.log(random.nextDouble());
   }
 
   /**
@@ -293,19 +543,19 @@ public class SimulateAnneal {
   }
 
   /**
-   * Initialize temperature. Randomly pick 20 multi-replica solutions, and get the greatest and least
-   * cost of them. Note the absolute difference as delta. The initial temperature = -delta/ln(seed),
-   * where seed is in (0, 1], and close to 1.
+   * Initialize temperature. Randomly pick 20 multi-replica solutions, or 20 neighbors of the initial solution
+   * if isLocalTemperature, and get the greatest and least cost of them. Note the absolute difference as delta.
+   * The initial temperature = -delta/ln(seed), where seed is in (0, 1], and close to 1.
    */
   private void initTemperature() {
     MultiReplicas m;
     BigDecimal max = null;
     BigDecimal min = null;
     for (int i = 0; i < 20; i++) {
-      m = initSolutionRandom();
+      m = isLocalTemperature ? generateNewMultiReplica(multiReplicas) : initSolutionRandom();
       BigDecimal curCost;
 //      if (isNewMethod)
-        curCost = CostModel.cost(m, queries);
+        curCost = cost(m);
 //      else
 //        curCost = CostModel.totalCost(m, queries);
       if (max == null || max.compareTo(curCost) < 0) max = curCost;
@@ -331,6 +581,18 @@ public class SimulateAnneal {
     return this;
   }
 
+  /**
+   * Use a multi-replica to initialize the solution, e.g. from GreedyConstruction.
+   *
+   * @param m a multi-replica, with the same replica number
+   */
+  public SimulateAnneal initSolution(MultiReplicas m) {
+    if (m.getReplicaNum() != replicaNumber)
+      throw new IllegalArgumentException("Replica numbers are inconsistent");
+    multiReplicas = new MultiReplicas(m);
+    return this;
+  }
+
   public SimulateAnneal initSolution() {
     int[] order = QueryAnalysis.getRangeQueryNumberOrder(queries);
     Set<Integer>[] replicaOrders = new HashSet[replicaNumber];
@@ -358,7 +620,7 @@ public class SimulateAnneal {
       Integer[] its = replicaOrders[i].toArray(new Integer[0]);
       List<Integer> lint = new ArrayList<>();
       Collections.addAll(lint, its);
-      Collections.shuffle(lint);
+      Collections.shuffle(lint, random);
       for (int j = 0; j < lint.size(); j++) replicaOrdersArr[i][j] = lint.get(j);
     }
     multiReplicas = new MultiReplicas();
@@ -376,7 +638,7 @@ public class SimulateAnneal {
    */
   private MultiReplicas initSolutionByOptimalReplica() {
     MultiReplicas newMultiReplica = new MultiReplicas();
-    Replica r = new SearchAll(data, queries).optimalReplica();
+    Replica r = new DynamicProgramming(data, queries).optimalReplica();
     for (int i = 0; i < replicaNumber; i++)
       newMultiReplica.add(new Replica(r));
     return newMultiReplica;
@@ -385,7 +647,7 @@ public class SimulateAnneal {
   private MultiReplicas initSolutionRandom() {
     MultiReplicas newMultiReplica = new MultiReplicas();
     for (int i = 0; i < replicaNumber; i++)
-      newMultiReplica.add(new Replica(data, ArrayTransform.random(data.getColNum())));
+      newMultiReplica.add(new Replica(data, ArrayTransform.random(data.getColNum(), random)));
     return newMultiReplica;
   }
 
@@ -406,6 +668,7 @@ public class SimulateAnneal {
    *
    * @return
    */
+  @Override
   public double getOptimalCost() {
     return optimalCost.doubleValue();
   }
@@ -415,11 +678,12 @@ public class SimulateAnneal {
    *
    * @return the record history
    */
+  @Override
   public List<Double> getHistory() {
     return costHistory;
   }
 
-  @Deprecated
+  @Override
   public MultiReplicas getMultiReplicas() {
     return multiReplicas;
   }
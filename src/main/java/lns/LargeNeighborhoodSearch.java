@@ -0,0 +1,341 @@
+package lns;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.Objective;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+import searchall.DynamicProgramming;
+import searchall.Permutation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class implements large neighborhood search to find the optimal multi-replicas strategy. In each
+ * iteration it destroys part of the current strategy, and repairs it with the rest of the strategy fixed.
+ * There are two ways to destroy:
+ * 1. a whole replica, the bottleneck one or a random one. It is repaired by dynamic programming, with the cost
+ * of each query capped by its cost on other replicas, which gives the order of least routed total cost.
+ * 2. the first j columns of a replica. If j is small, all permutations of the freed columns are evaluated
+ * exactly on the objective, as in SearchAll, otherwise they are repaired by dynamic programming.
+ * Repair by dynamic programming is exact for total cost only. Cask effect cost, the greatest load, does not
+ * decompose over columns, so for it, and for other objectives, the capped total cost is a heuristic repair,
+ * and the repaired strategy is evaluated on the real cost.
+ * A repaired strategy replaces the current one if it is not worse.
+ */
+public class LargeNeighborhoodSearch implements Optimizer {
+
+  private DataTable data;
+  private Query[] queries;
+  private SelectivityTable selectivityTable;
+
+  private int replicaNumber;
+  private boolean isNewMethod;
+
+  // parameters
+  private int maxIteration;
+  private int noImproveThreshold;
+  private int exactColumnNumber;
+
+  private Random random = new Random();
+  private int[][] orders = null;
+  private double[][] costMatrix;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+
+  // the solution
+  private MultiReplicas multiReplicas = null;
+  private BigDecimal optimalCost;
+  private List<Double> costHistory = new ArrayList<>();
+
+  /**
+   * Constructor, using constant values in Constant class
+   *
+   * @param dataTable info of the data table
+   * @param queries   workload
+   */
+  public LargeNeighborhoodSearch(DataTable dataTable, Query[] queries) {
+    this(dataTable, queries, Constant.REPLICA_NUMBER, Constant.IS_NEW_METHOD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dataTable     info of the data table
+   * @param queries       workload
+   * @param replicaNumber number of replica
+   * @param isNewMethod   if use cask effect objective function or total cost
+   */
+  public LargeNeighborhoodSearch(DataTable dataTable, Query[] queries, int replicaNumber, boolean isNewMethod) {
+    this.data = dataTable;
+    this.queries = queries;
+    this.replicaNumber = replicaNumber;
+    this.isNewMethod = isNewMethod;
+    this.maxIteration = Constant.LNS_MAX_ITERATION;
+    this.noImproveThreshold = Constant.LNS_NO_IMPROVE_THRESHOLD;
+    this.exactColumnNumber = Constant.LNS_EXACT_COLUMN_NUMBER;
+  }
+
+  @Override
+  public LargeNeighborhoodSearch withReplicaNumber(int n) {
+    this.replicaNumber = n;
+    return this;
+  }
+
+  @Override
+  public LargeNeighborhoodSearch withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /**
+   * Evaluate solutions by an objective instead of the cost matrix of the workload. Destroyed parts are still
+   * repaired on the workload, and the repaired solution is accepted by the objective.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the large neighborhood search instance
+   */
+  @Override
+  public LargeNeighborhoodSearch withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  public LargeNeighborhoodSearch withMaxIteration(int maxIteration) {
+    this.maxIteration = maxIteration;
+    return this;
+  }
+
+  /**
+   * Set the number of iterations without improvement, before terminating
+   *
+   * @param threshold customized threshold
+   * @return the large neighborhood search instance
+   */
+  public LargeNeighborhoodSearch withNoImproveThreshold(int threshold) {
+    this.noImproveThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Set the maximum number of freed columns to repair by enumerating all permutations
+   *
+   * @param n customized number of columns
+   * @return the large neighborhood search instance
+   */
+  public LargeNeighborhoodSearch withExactColumnNumber(int n) {
+    this.exactColumnNumber = n;
+    return this;
+  }
+
+  /**
+   * Use a multi-replica to initialize the solution.
+   *
+   * @param m a multi-replica
+   * @return the large neighborhood search instance
+   */
+  public LargeNeighborhoodSearch initSolution(MultiReplicas m) {
+    Replica[] replicas = m.getReplicasArray(true);
+    replicaNumber = replicas.length;
+    orders = new int[replicaNumber][];
+    for (int i = 0; i < replicaNumber; i++) orders[i] = replicas[i].getOrder().clone();
+    return this;
+  }
+
+  /*
+   * Run the algorithm
+   * 1. initialize a solution, replicas of the optimal single replica by default
+   * 2. loop [not converge]
+   * 3.  | destroy a replica, or the first columns of a replica
+   * 4.  | repair the destroyed part, with the rest fixed, exactly for total cost, heuristically otherwise
+   * 5.  | if [repaired solution is not worse]
+   * 6.  |  | take it, update global best
+   * 7.  | end if
+   * 8. end loop
+   * 9. return the best solution
+   */
+  public MultiReplicas optimal() {
+    selectivityTable = new SelectivityTable(data, queries);
+    if (orders == null) {
+      Replica r = new DynamicProgramming(data, queries, selectivityTable).optimalReplica();
+      orders = new int[replicaNumber][];
+      for (int i = 0; i < replicaNumber; i++) orders[i] = r.getOrder().clone();
+    }
+    costMatrix = new double[replicaNumber][];
+    for (int r = 0; r < replicaNumber; r++) costMatrix[r] = selectivityTable.cost(orders[r]);
+    double curCost = cost(0, orders[0]);
+    costHistory.add(curCost);
+    runControl.offer(toMultiReplicas(orders), curCost, getName());
+
+    int noImprove = 0;
+    for (int it = 0; it < maxIteration && noImprove < noImproveThreshold && !runControl.isStopped(); it++) {
+      int r = random.nextBoolean() ? getBottleneckReplica() : random.nextInt(replicaNumber);
+      int[] newOrder = random.nextBoolean()
+              ? repairReplica(r)
+              : repairPrefix(r, 2 + random.nextInt(Math.max(1, data.getColNum() - 1)));
+      double[] oldRow = costMatrix[r];
+      costMatrix[r] = selectivityTable.cost(newOrder);
+      double newCost = cost(r, newOrder);
+      runControl.countEvaluation();
+      if (newCost <= curCost) {
+        noImprove = newCost < curCost ? 0 : noImprove + 1;
+        orders[r] = newOrder;
+        if (newCost < curCost) runControl.offer(toMultiReplicas(orders), newCost, getName());
+        curCost = newCost;
+      } else {
+        costMatrix[r] = oldRow;
+        noImprove++;
+      }
+      costHistory.add(curCost);
+    }
+
+    multiReplicas = toMultiReplicas(orders);
+    if (objective != null) optimalCost = objective.cost(multiReplicas);
+    else optimalCost = isNewMethod
+            ? CostModel.cost(multiReplicas, queries)
+            : CostModel.totalCost(multiReplicas, queries);
+    return multiReplicas;
+  }
+
+  /**
+   * Cost of the solution with the order of a replica replaced, see CostModel.cost(Objective, ...).
+   */
+  private double cost(int r, int[] order) {
+    return CostModel.cost(objective, data, orders, r, order, costMatrix, isNewMethod);
+  }
+
+  /**
+   * Destroy a whole replica, and repair it by dynamic programming, where the cost of each query is capped
+   * by its least cost on other replicas. It minimizes the routed total cost, a heuristic repair for cask
+   * effect cost.
+   *
+   * @param r index of the replica
+   * @return the repaired order
+   */
+  private int[] repairReplica(int r) {
+    double[] caps = getCapsExcept(r);
+    return new DynamicProgramming(data, queries, selectivityTable)
+            .withCaps(caps)
+            .optimalReplica()
+            .getOrder();
+  }
+
+  /**
+   * Destroy the first j columns of a replica, and repair them. If j is not greater than exact column number,
+   * all permutations of them are evaluated on the objective, otherwise they are repaired by dynamic
+   * programming with the rest of the order fixed.
+   *
+   * @param r index of the replica
+   * @param j number of columns to destroy
+   * @return the repaired order
+   */
+  private int[] repairPrefix(int r, int j) {
+    int colNum = data.getColNum();
+    j = Math.min(j, colNum);
+    int[] freed = new int[j];
+    System.arraycopy(orders[r], 0, freed, 0, j);
+    int[] suffix = new int[colNum - j];
+    System.arraycopy(orders[r], j, suffix, 0, suffix.length);
+    if (j > exactColumnNumber)
+      return new DynamicProgramming(data, queries, selectivityTable)
+              .withSuffix(suffix)
+              .withCaps(getCapsExcept(r))
+              .optimalReplica()
+              .getOrder();
+
+    double[] oldRow = costMatrix[r];
+    int[] bestOrder = null;
+    double bestCost = Double.POSITIVE_INFINITY;
+    for (int[] perm : new Permutation().getPerm(0, j - 1, j, false)) {
+      int[] order = orders[r].clone();
+      for (int i = 0; i < j; i++) order[i] = freed[perm[i]];
+      costMatrix[r] = selectivityTable.cost(order);
+      double cost = cost(r, order);
+      runControl.countEvaluation();
+      if (cost < bestCost) {
+        bestCost = cost;
+        bestOrder = order;
+      }
+    }
+    costMatrix[r] = oldRow;
+    return bestOrder;
+  }
+
+  /**
+   * Get the least cost of each query on replicas other than the given one. Capped costs summed over queries are
+   * the routed total cost, not cask effect cost.
+   *
+   * @param r index of the replica to exclude
+   * @return an array of least costs
+   */
+  private double[] getCapsExcept(int r) {
+    double[] caps = new double[queries.length];
+    for (int q = 0; q < caps.length; q++) {
+      caps[q] = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < replicaNumber; i++)
+        if (i != r) caps[q] = Math.min(caps[q], costMatrix[i][q]);
+    }
+    return caps;
+  }
+
+  /**
+   * Get the replica with the greatest load, according to CostModel.costOnEachReplica.
+   *
+   * @return index of the bottleneck replica
+   */
+  private int getBottleneckReplica() {
+    double[] load = CostModel.costOnEachReplica(costMatrix);
+    int res = 0;
+    for (int i = 1; i < load.length; i++)
+      if (load[i] > load[res]) res = i;
+    return res;
+  }
+
+  private MultiReplicas toMultiReplicas(int[][] orders) {
+    MultiReplicas m = new MultiReplicas();
+    for (int[] order : orders) m.add(new Replica(data, order));
+    return m;
+  }
+
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  /**
+   * Get the optimal cost after running algorithm
+   *
+   * @return the optimal cost
+   */
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
+  }
+
+  /**
+   * Get the record history of current cost, one for each iteration.
+   *
+   * @return the record history
+   */
+  @Override
+  public List<Double> getHistory() {
+    return costHistory;
+  }
+}
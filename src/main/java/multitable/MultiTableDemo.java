@@ -0,0 +1,31 @@
+package multitable;
+
+import datamodel.DataTable;
+import query.Query;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+public class MultiTableDemo {
+  static Query[] getQueries(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("queries_" + colNums));
+    return (Query[]) ois.readObject();
+  }
+
+  static DataTable getDataTable(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("data_table_" + colNums));
+    return (DataTable) ois.readObject();
+  }
+
+  public static void main(String args[]) throws IOException, ClassNotFoundException {
+    MultiTableDesign design = new MultiTableDesign(4)
+            .addTable("t5", getDataTable(5), getQueries(5))
+            .addTable("t7", getDataTable(7), getQueries(7))
+            .withReplicaBudget(6);
+    design.optimal();
+    for (MultiTableDesign.Table t : design.getTables())
+      System.out.println(t);
+    System.out.println("cluster cost: " + design.getOptimalCost());
+  }
+}
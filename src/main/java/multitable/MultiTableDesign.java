@@ -0,0 +1,346 @@
+package multitable;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import greedy.GreedyConstruction;
+import heterogeneous.SimulateAnneal;
+import optimizer.Optimizer;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Design of several tables sharing a cluster. Each table has its own workload and replicas, and all replicas
+ * are hosted by the same nodes, at most one replica of a table on a node. The load of a node is the load of the
+ * replicas it hosts summed over tables, and the cluster-wide cask effect cost is the greatest load of a node.
+ * Tables compete for a shared budget, either a number of replicas, or storage, where a replica of a table takes
+ * rows * columns of storage. Each node may also have a storage capacity, which the replicas placed on it must fit.
+ * A budget allocator coordinates the tables: every table starts with one replica, and the next replica goes to
+ * the table whose extra replica decreases the cluster-wide cost most per unit of budget, until the budget is used
+ * up or no table gains. The design of a table with one more replica is warm-started from its current design, as in
+ * ReplicaSweep, and candidates of all tables are optimized in parallel. Replicas are placed on nodes by the
+ * longest processing time rule, the greatest load to the node with the least load so far among nodes with room
+ * for it, and a candidate whose replicas do not fit the nodes is not taken.
+ */
+public class MultiTableDesign {
+
+  /**
+   * Create an optimizer of a table design, with a warm start of one replica less, null for the first replica.
+   */
+  public interface TableOptimizer {
+    Optimizer create(DataTable dataTable, Query[] queries, int replicaNumber, MultiReplicas warmStart);
+  }
+
+  private int nodeNumber;
+  private double budget = Double.POSITIVE_INFINITY;
+  private boolean isStorageBudget = false;
+  private double nodeStorage = Double.POSITIVE_INFINITY;
+  private int threadNumber = Runtime.getRuntime().availableProcessors();
+  private TableOptimizer tableOptimizer = (dataTable, queries, k, m) -> {
+    SimulateAnneal sa = new SimulateAnneal(dataTable, queries, k, true);
+    if (m == null) return sa;
+    MultiReplicas warmStart = new GreedyConstruction(dataTable, queries, k, true).initSolution(m).optimal();
+    return sa.withLocalTemperature(true)
+            .withOptimalCountThreshold(Constant.SWEEP_OPTIMAL_COUNT_THRESHOLD)
+            .initSolution(warmStart);
+  };
+
+  private List<Table> tables = new ArrayList<>();
+
+  // the solution
+  private double[] nodeLoad;
+  private double optimalCost = Double.POSITIVE_INFINITY;
+
+  /**
+   * Constructor
+   *
+   * @param nodeNumber number of nodes, which is also the greatest replica number of a table
+   */
+  public MultiTableDesign(int nodeNumber) {
+    if (nodeNumber <= 0) throw new IllegalArgumentException();
+    this.nodeNumber = nodeNumber;
+  }
+
+  /**
+   * Add a table
+   *
+   * @param name      name of the table
+   * @param dataTable info of the table
+   * @param queries   workload of the table
+   * @return the multi-table design
+   */
+  public MultiTableDesign addTable(String name, DataTable dataTable, Query[] queries) {
+    tables.add(new Table(name, dataTable, queries));
+    return this;
+  }
+
+  /**
+   * Set the budget to a total number of replicas over tables
+   *
+   * @param replicaNumber the total number of replicas
+   * @return the multi-table design
+   */
+  public MultiTableDesign withReplicaBudget(int replicaNumber) {
+    this.budget = replicaNumber;
+    this.isStorageBudget = false;
+    return this;
+  }
+
+  /**
+   * Set the budget to a total storage over tables, a replica of a table takes rows * columns
+   *
+   * @param storage the total storage
+   * @return the multi-table design
+   */
+  public MultiTableDesign withStorageBudget(double storage) {
+    this.budget = storage;
+    this.isStorageBudget = true;
+    return this;
+  }
+
+  /**
+   * Set the storage capacity of each node, a replica of a table takes rows * columns
+   *
+   * @param storage the storage of a node
+   * @return the multi-table design
+   */
+  public MultiTableDesign withNodeStorage(double storage) {
+    if (storage <= 0) throw new IllegalArgumentException();
+    this.nodeStorage = storage;
+    return this;
+  }
+
+  public MultiTableDesign withThreadNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.threadNumber = n;
+    return this;
+  }
+
+  public MultiTableDesign withTableOptimizer(TableOptimizer tableOptimizer) {
+    this.tableOptimizer = tableOptimizer;
+    return this;
+  }
+
+  /*
+   * Run the allocator
+   * 1. optimize the design of one replica of every table, in parallel
+   * 2. loop
+   * 3.  | optimize the design with one more replica of every table without one, in parallel
+   * 4.  | for each table within the budget and the node number, get the cluster-wide cost with its candidate,
+   *     | infinite if its replicas do not fit the nodes
+   * 5.  | if [no table decreases the cost]
+   * 6.  |  | break
+   * 7.  | end if
+   * 8.  | take the candidate of the table decreasing the cost most per unit of budget
+   * 9. end loop
+   * 10. place replicas of all tables on nodes
+   */
+  public Map<String, MultiReplicas> optimal() {
+    if (tables.isEmpty()) throw new IllegalStateException("No table");
+    double used = 0;
+    for (Table t : tables) used += t.getSize();
+    if (used > budget) throw new IllegalArgumentException("The budget is less than one replica of each table");
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadNumber);
+    try {
+      List<Callable<Void>> first = new ArrayList<>();
+      for (Table t : tables) first.add(() -> {
+        t.design = optimize(t, 1, null);
+        return null;
+      });
+      invokeAll(threadPool, first);
+      double curCost = place();
+      if (curCost == Double.POSITIVE_INFINITY)
+        throw new IllegalArgumentException("One replica of each table does not fit the nodes");
+      while (true) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Table t : tables) {
+          if (t.candidate != null || t.getReplicaNumber() >= nodeNumber || used + t.getSize() > budget) continue;
+          tasks.add(() -> {
+            t.candidate = optimize(t, t.getReplicaNumber() + 1, t.design);
+            return null;
+          });
+        }
+        invokeAll(threadPool, tasks);
+        Table best = null;
+        double bestGain = 0;
+        for (Table t : tables) {
+          if (t.candidate == null || used + t.getSize() > budget) continue;
+          MultiReplicas design = t.design;
+          t.design = t.candidate;
+          double gain = (curCost - place()) / t.getSize();
+          t.design = design;
+          if (gain > bestGain) {
+            bestGain = gain;
+            best = t;
+          }
+        }
+        if (best == null) break;
+        best.design = best.candidate;
+        best.candidate = null;
+        used += best.getSize();
+        curCost = place();
+      }
+      // candidates scored last overwrote the placement
+      optimalCost = place();
+    } finally {
+      threadPool.shutdown();
+    }
+    Map<String, MultiReplicas> res = new LinkedHashMap<>();
+    for (Table t : tables) res.put(t.name, t.design);
+    return res;
+  }
+
+  private MultiReplicas optimize(Table t, int replicaNumber, MultiReplicas warmStart)
+          throws NoSuchAlgorithmException {
+    return tableOptimizer.create(t.dataTable, t.queries, replicaNumber, warmStart).optimal();
+  }
+
+  private static void invokeAll(ExecutorService threadPool, List<Callable<Void>> tasks) {
+    try {
+      for (Future<Void> f : threadPool.invokeAll(tasks)) f.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Place replicas of all tables on nodes by the longest processing time rule, replicas of a table on
+   * distinct nodes within the node storage, and get the cluster-wide cask effect cost.
+   *
+   * @return the greatest load of a node, Double.POSITIVE_INFINITY if a replica does not fit any node
+   */
+  private double place() {
+    List<double[]> replicas = new ArrayList<>();
+    for (int t = 0; t < tables.size(); t++) {
+      double[] load = tables.get(t).getLoad();
+      tables.get(t).nodes = new int[load.length];
+      for (int r = 0; r < load.length; r++) replicas.add(new double[]{load[r], t, r});
+    }
+    replicas.sort((a, b) -> Double.compare(b[0], a[0]));
+    nodeLoad = new double[nodeNumber];
+    double[] storage = new double[nodeNumber];
+    boolean[][] isUsed = new boolean[tables.size()][nodeNumber];
+    for (double[] replica : replicas) {
+      int t = (int) replica[1];
+      double size = tables.get(t).getStorage();
+      int node = -1;
+      for (int n = 0; n < nodeNumber; n++)
+        if (!isUsed[t][n] && storage[n] + size <= nodeStorage && (node == -1 || nodeLoad[n] < nodeLoad[node]))
+          node = n;
+      if (node == -1) return Double.POSITIVE_INFINITY;
+      isUsed[t][node] = true;
+      storage[node] += size;
+      nodeLoad[node] += replica[0];
+      tables.get(t).nodes[(int) replica[2]] = node;
+    }
+    double res = 0;
+    for (double l : nodeLoad) res = Math.max(res, l);
+    return res;
+  }
+
+  /**
+   * Get the cluster-wide cask effect cost, the greatest load of a node
+   *
+   * @return the cost
+   */
+  public double getOptimalCost() {
+    return optimalCost;
+  }
+
+  public double[] getNodeLoad() {
+    return nodeLoad;
+  }
+
+  public List<Table> getTables() {
+    return tables;
+  }
+
+  /**
+   * A table, its workload, its design and the node of each replica.
+   */
+  public class Table {
+    private String name;
+    private DataTable dataTable;
+    private Query[] queries;
+    private SelectivityTable selectivityTable;
+
+    private MultiReplicas design = null;
+    // the design with one more replica, null if it is not optimized yet
+    private MultiReplicas candidate = null;
+    private int[] nodes;
+
+    Table(String name, DataTable dataTable, Query[] queries) {
+      this.name = name;
+      this.dataTable = dataTable;
+      this.queries = queries;
+      this.selectivityTable = new SelectivityTable(dataTable, queries);
+    }
+
+    /**
+     * Budget taken by a replica of the table
+     */
+    private double getSize() {
+      return isStorageBudget ? getStorage() : 1;
+    }
+
+    /**
+     * Storage taken by a replica of the table
+     */
+    private double getStorage() {
+      return dataTable.getRowNum().doubleValue() * dataTable.getColNum();
+    }
+
+    /**
+     * Load of each replica of the design, in the order of getOrders()
+     */
+    private double[] getLoad() {
+      List<int[]> orders = getOrders();
+      double[][] costMatrix = new double[orders.size()][];
+      for (int r = 0; r < costMatrix.length; r++) costMatrix[r] = selectivityTable.cost(orders.get(r));
+      return CostModel.costOnEachReplica(costMatrix);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public MultiReplicas getDesign() {
+      return design;
+    }
+
+    public int getReplicaNumber() {
+      return design.getReplicaNum();
+    }
+
+    /**
+     * Column order of each replica of the design
+     *
+     * @return the orders
+     */
+    public List<int[]> getOrders() {
+      return design.getOrders();
+    }
+
+    /**
+     * Node of each replica, in the order of getOrders()
+     *
+     * @return the nodes
+     */
+    public int[] getNodes() {
+      return nodes;
+    }
+
+    @Override
+    public String toString() {
+      String str = name + ":{replica_num:" + getReplicaNumber() + "||replicas: ";
+      List<int[]> orders = getOrders();
+      for (int r = 0; r < orders.size(); r++) str += Arrays.toString(orders.get(r)) + "->node " + nodes[r] + " ";
+      return str + "}";
+    }
+  }
+}
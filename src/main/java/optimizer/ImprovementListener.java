@@ -0,0 +1,21 @@
+package optimizer;
+
+import replica.MultiReplicas;
+
+/**
+ * Listener of improving designs offered to a run control, e.g. to log progress or to persist the best design
+ * so far. It is called by the thread of the optimizer that found the design, in the order of improvement, so
+ * it should return quickly. The optimality gap of the design is RunControl.getGap() of the run control.
+ */
+public interface ImprovementListener {
+
+  /**
+   * Called when a design becomes the incumbent of a run control.
+   *
+   * @param multiReplicas a copy of the design
+   * @param cost          cost of the design
+   * @param source        name of the optimizer offering the design
+   * @param time          milliseconds since the run control is created
+   */
+  void improved(MultiReplicas multiReplicas, double cost, String source, long time);
+}
@@ -0,0 +1,93 @@
+package optimizer;
+
+import cost.Objective;
+import replica.MultiReplicas;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Common interface of multi-replica optimizers. An optimizer is configured by its with* methods, runs by
+ * optimal(), and keeps its best design, the cost of it, and a trace of costs. The cost is cask effect cost
+ * or total cost, according to the objective the optimizer is configured with, or the cost of an Objective
+ * set by withObjective(). Every optimizer supports objectives.
+ * A run control shares an incumbent among optimizers running together, and tells them when to stop. An
+ * optimizer offers each improving design to the run control, and checks it in its main loop, so that it
+ * stops early and returns the best design found so far, at a deadline, when an evaluation budget is used up,
+ * or when it is cancelled.
+ */
+public interface Optimizer {
+
+  /**
+   * Set the number of replicas
+   *
+   * @param n number of replica
+   * @return the optimizer
+   */
+  Optimizer withReplicaNumber(int n);
+
+  /**
+   * Set the run control shared with other optimizers
+   *
+   * @param runControl the run control
+   * @return the optimizer
+   */
+  Optimizer withRunControl(RunControl runControl);
+
+  /**
+   * Get the run control, e.g. to set a deadline, an evaluation budget or listeners of a single optimizer
+   *
+   * @return the run control
+   */
+  RunControl getRunControl();
+
+  /**
+   * Evaluate designs by an objective instead of cask effect cost or total cost of the workload.
+   *
+   * @param objective the objective
+   * @return the optimizer
+   */
+  Optimizer withObjective(Objective objective);
+
+  /**
+   * Run the optimizer
+   *
+   * @return the best design
+   */
+  MultiReplicas optimal() throws NoSuchAlgorithmException;
+
+  /**
+   * Get the best design after running the optimizer
+   *
+   * @return the best design
+   */
+  MultiReplicas getMultiReplicas();
+
+  /**
+   * Get the cost of the best design after running the optimizer
+   *
+   * @return the cost
+   */
+  double getOptimalCost();
+
+  /**
+   * Get the trace of costs during the run
+   *
+   * @return the trace
+   */
+  List<Double> getHistory();
+
+  /**
+   * Get the optimality gap of the best design offered to the run control, relative to the lower bound of
+   * the run control. Optimizers with a lower bound set it on the run control when they start.
+   *
+   * @return the gap, see RunControl.getGap()
+   */
+  default double getGap() {
+    return getRunControl().getGap();
+  }
+
+  default String getName() {
+    return getClass().getSimpleName();
+  }
+}
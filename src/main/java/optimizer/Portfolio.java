@@ -0,0 +1,314 @@
+package optimizer;
+
+import aco.AntColony;
+import beam.BeamSearch;
+import constant.Constant;
+import cost.CostModel;
+import cost.Objective;
+import datamodel.DataTable;
+import genetic.Genetic;
+import greedy.GreedyConstruction;
+import heterogeneous.SimulateAnneal;
+import lns.LargeNeighborhoodSearch;
+import query.Query;
+import replica.MultiReplicas;
+import tabu.TabuSearch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Run several optimizers concurrently on a shared thread pool, with a shared run control. Each optimizer
+ * offers its improving designs to the run control, so the incumbent is the best design found by any of them,
+ * and they stop when the time limit is reached or the target cost is met. The result is the best design of
+ * all optimizers, evaluated on the same objective, with statistics of each optimizer.
+ * e.g. the best design within 60 seconds:
+ * new Portfolio(queries, true).add(...).add(...).withTimeLimit(60000).optimal()
+ */
+public class Portfolio {
+
+  private Query[] queries;
+  private boolean isNewMethod;
+
+  private List<Optimizer> optimizers = new ArrayList<>();
+  private RunControl runControl = new RunControl();
+  private int threadNumber = 0;
+  private long timeLimit = 0;
+  private Objective objective = null;
+
+  // the solution
+  private MultiReplicas multiReplicas = null;
+  private double optimalCost = Double.POSITIVE_INFINITY;
+  private List<Statistics> statistics = new ArrayList<>();
+
+  /**
+   * Constructor
+   *
+   * @param queries     workload
+   * @param isNewMethod if use cask effect objective function or total cost, the same as optimizers
+   */
+  public Portfolio(Query[] queries, boolean isNewMethod) {
+    this.queries = queries;
+    this.isNewMethod = isNewMethod;
+  }
+
+  /**
+   * A portfolio of constructive, local search and population based optimizers. Ant colony and beam search
+   * run on one thread each, since they have thread pools of their own.
+   *
+   * @param dataTable     info of the data table
+   * @param queries       workload
+   * @param replicaNumber number of replica
+   * @param isNewMethod   if use cask effect objective function or total cost
+   * @return the portfolio
+   */
+  public static Portfolio defaultPortfolio(DataTable dataTable, Query[] queries, int replicaNumber,
+                                           boolean isNewMethod) {
+    return new Portfolio(queries, isNewMethod)
+            .add(new GreedyConstruction(dataTable, queries, replicaNumber, isNewMethod))
+            .add(new TabuSearch(dataTable, queries, replicaNumber, isNewMethod))
+            .add(new LargeNeighborhoodSearch(dataTable, queries, replicaNumber, isNewMethod))
+            .add(new AntColony(dataTable, queries, replicaNumber, isNewMethod).withThreadNumber(1))
+            .add(new BeamSearch(dataTable, queries, replicaNumber, isNewMethod).withThreadNumber(1))
+            .add(new SimulateAnneal(dataTable, queries, replicaNumber, isNewMethod))
+            .add(new Genetic(dataTable, queries, replicaNumber, Constant.POPULATION, Constant.GA_MIN_ITERATION,
+                    Constant.GA_MAX_ITERATION, Constant.CROSSOVER_RATE, Constant.MUTATION_RATE,
+                    Constant.GENE_CHANGE_NUMBER, isNewMethod));
+  }
+
+  public Portfolio add(Optimizer optimizer) {
+    optimizers.add(optimizer);
+    return this;
+  }
+
+  /**
+   * Set the number of threads running optimizers, one for each optimizer by default, so that all of them
+   * start before the time limit.
+   *
+   * @param n number of threads
+   * @return the portfolio
+   */
+  public Portfolio withThreadNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.threadNumber = n;
+    return this;
+  }
+
+  /**
+   * Set the wall-clock time limit, after which all optimizers are stopped.
+   *
+   * @param millis time limit in milliseconds, 0 for no limit
+   * @return the portfolio
+   */
+  public Portfolio withTimeLimit(long millis) {
+    if (millis < 0) throw new IllegalArgumentException();
+    this.timeLimit = millis;
+    return this;
+  }
+
+  /**
+   * Optimize an objective instead of cask effect cost or total cost of the workload, e.g. a ScenarioObjective.
+   * It is set on all optimizers when the portfolio runs, see Optimizer.withObjective(), and designs are compared
+   * on it.
+   *
+   * @param objective the objective, null for cost of the workload
+   * @return the portfolio
+   */
+  public Portfolio withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /**
+   * Stop all optimizers after a number of evaluations, counted over all of them.
+   *
+   * @param budget the number of evaluations
+   * @return the portfolio
+   */
+  public Portfolio withEvaluationBudget(long budget) {
+    runControl.withEvaluationBudget(budget);
+    return this;
+  }
+
+  /**
+   * Notify a listener of each design improving on the best design of all optimizers.
+   *
+   * @param listener the listener
+   * @return the portfolio
+   */
+  public Portfolio withListener(ImprovementListener listener) {
+    runControl.withListener(listener);
+    return this;
+  }
+
+  /**
+   * Stop all optimizers once the optimality gap of the best design is not greater than a threshold. The
+   * lower bound is set by optimizers which have one, e.g. SimulateAnneal and Genetic.
+   *
+   * @param gapThreshold the threshold, e.g. 0.05 for a design within 5% of optimal
+   * @return the portfolio
+   */
+  public Portfolio withGapThreshold(double gapThreshold) {
+    runControl.withGapThreshold(gapThreshold);
+    return this;
+  }
+
+  /**
+   * Stop all optimizers once a design with cost not greater than the target is found.
+   *
+   * @param targetCost the target cost
+   * @return the portfolio
+   */
+  public Portfolio withTargetCost(double targetCost) {
+    runControl.withTargetCost(targetCost);
+    return this;
+  }
+
+  /*
+   * Run the portfolio
+   * 1. share the run control and the objective with all optimizers, submit them to the thread pool
+   * 2. set the deadline of the run control, and wait for all optimizers to return
+   * 3. evaluate the design of each optimizer, and the incumbent, on the same objective
+   * 4. return the best design
+   */
+  public MultiReplicas optimal() {
+    if (objective != null)
+      for (Optimizer optimizer : optimizers) optimizer.withObjective(objective);
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadNumber > 0 ? threadNumber : Math.max(optimizers.size(), 1));
+    if (timeLimit > 0) runControl.withTimeLimit(timeLimit);
+    List<Future<Statistics>> futures = new ArrayList<>();
+    for (Optimizer optimizer : optimizers) {
+      optimizer.withRunControl(runControl);
+      futures.add(threadPool.submit(() -> run(optimizer)));
+    }
+    threadPool.shutdown();
+    try {
+      for (Future<Statistics> future : futures)
+        statistics.add(future.get());
+    } catch (InterruptedException | ExecutionException e) {
+      runControl.stop();
+      throw new RuntimeException(e);
+    }
+
+    for (Statistics s : statistics) {
+      if (s.design != null && s.cost < optimalCost) {
+        optimalCost = s.cost;
+        multiReplicas = s.design;
+      }
+    }
+    // an optimizer may have been stopped with a worse design than one it offered
+    MultiReplicas incumbent = runControl.getIncumbent();
+    if (incumbent != null) {
+      double cost = cost(incumbent);
+      if (cost < optimalCost) {
+        optimalCost = cost;
+        multiReplicas = incumbent;
+      }
+    }
+    return multiReplicas;
+  }
+
+  /**
+   * Run an optimizer, and collect its statistics.
+   *
+   * @param optimizer the optimizer
+   * @return statistics of the run
+   */
+  private Statistics run(Optimizer optimizer) {
+    Statistics s = new Statistics(optimizer.getName());
+    long start = System.currentTimeMillis();
+    try {
+      optimizer.optimal();
+      s.design = optimizer.getMultiReplicas();
+      s.cost = cost(s.design);
+      s.iterationNumber = optimizer.getHistory().size();
+    } catch (Exception e) {
+      s.exception = e;
+    }
+    s.time = System.currentTimeMillis() - start;
+    s.isStopped = runControl.isStopped();
+    return s;
+  }
+
+  private double cost(MultiReplicas m) {
+    if (objective != null) return objective.cost(m).doubleValue();
+    BigDecimal cost = isNewMethod ? CostModel.cost(m, queries) : CostModel.totalCost(m, queries);
+    return cost.doubleValue();
+  }
+
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  public double getOptimalCost() {
+    return optimalCost;
+  }
+
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /**
+   * Get statistics of each optimizer, in the order they are added.
+   *
+   * @return the statistics
+   */
+  public List<Statistics> getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Statistics of an optimizer in a portfolio run: its design and cost on the objective of the portfolio,
+   * wall-clock time, length of its trace, if it was stopped by the run control, and the exception if it
+   * failed.
+   */
+  public static class Statistics {
+    private String name;
+    private MultiReplicas design = null;
+    private double cost = Double.POSITIVE_INFINITY;
+    private long time;
+    private int iterationNumber;
+    private boolean isStopped;
+    private Exception exception = null;
+
+    Statistics(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public MultiReplicas getDesign() {
+      return design;
+    }
+
+    public double getCost() {
+      return cost;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public int getIterationNumber() {
+      return iterationNumber;
+    }
+
+    public boolean isStopped() {
+      return isStopped;
+    }
+
+    public Exception getException() {
+      return exception;
+    }
+
+    @Override
+    public String toString() {
+      return name + "{cost:" + cost + "||time:" + time + "ms||iterations:" + iterationNumber
+              + "||stopped:" + isStopped + (exception == null ? "" : "||exception:" + exception) + "}";
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package optimizer;
+
+import cost.LowerBound;
+import replica.MultiReplicas;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared state of optimizers running together: the incumbent, i.e. the best design offered by any of them,
+ * and when to stop. Optimizers check isStopped() in their main loops to stop cooperatively, and return the
+ * best design found so far. A run control is stopped
+ * 1. by stop(), e.g. to cancel the run from another thread, or when the optimizer thread is interrupted,
+ * 2. at a deadline, given as a wall-clock time or a time limit,
+ * 3. when the evaluation budget is used up. Optimizers count each design or partial design they evaluate,
+ * 4. once a design not worse than the target cost is offered,
+ * 5. once the optimality gap of a design offered, relative to a lower bound of cost, is below a threshold.
+ * Listeners are notified of each improving design. Costs offered to a run control should be on the same
+ * objective, cask effect cost or total cost of CostModel.
+ */
+public class RunControl {
+
+  private final long startTime = System.currentTimeMillis();
+
+  private volatile boolean stopped = false;
+  private volatile double targetCost = Double.NEGATIVE_INFINITY;
+  private volatile long deadline = Long.MAX_VALUE;
+  private volatile long evaluationBudget = Long.MAX_VALUE;
+  private volatile double lowerBound = 0;
+  private volatile double gapThreshold = -1;
+  private final AtomicLong evaluationNumber = new AtomicLong();
+  private final List<ImprovementListener> listeners = new CopyOnWriteArrayList<>();
+
+  private MultiReplicas incumbent = null;
+  private double incumbentCost = Double.POSITIVE_INFINITY;
+  private String incumbentSource = null;
+
+  /**
+   * Stop all optimizers once the incumbent cost is not greater than the target cost.
+   *
+   * @param targetCost the target cost
+   * @return the run control
+   */
+  public RunControl withTargetCost(double targetCost) {
+    this.targetCost = targetCost;
+    if (getIncumbentCost() <= targetCost) stop();
+    return this;
+  }
+
+  /**
+   * Stop all optimizers at a wall-clock time.
+   *
+   * @param deadline the deadline, in milliseconds as System.currentTimeMillis()
+   * @return the run control
+   */
+  public RunControl withDeadline(long deadline) {
+    this.deadline = deadline;
+    return this;
+  }
+
+  /**
+   * Stop all optimizers after a time limit from now.
+   *
+   * @param millis the time limit in milliseconds
+   * @return the run control
+   */
+  public RunControl withTimeLimit(long millis) {
+    if (millis < 0) throw new IllegalArgumentException();
+    return withDeadline(System.currentTimeMillis() + millis);
+  }
+
+  /**
+   * Stop all optimizers after a number of evaluations, counted over all of them.
+   *
+   * @param budget the number of evaluations
+   * @return the run control
+   */
+  public RunControl withEvaluationBudget(long budget) {
+    if (budget < 0) throw new IllegalArgumentException();
+    this.evaluationBudget = budget;
+    return this;
+  }
+
+  /**
+   * Set a lower bound of cost, e.g. LowerBound.cost(), to compute the optimality gap of the incumbent. The
+   * greater one is kept if it is set more than once, all of them are lower bounds.
+   *
+   * @param lowerBound the lower bound
+   * @return the run control
+   */
+  public RunControl withLowerBound(double lowerBound) {
+    synchronized (this) {
+      this.lowerBound = Math.max(this.lowerBound, lowerBound);
+    }
+    if (isGapReached(getIncumbentCost())) stop();
+    return this;
+  }
+
+  /**
+   * Stop all optimizers once the optimality gap of the incumbent is not greater than a threshold.
+   *
+   * @param gapThreshold the threshold, e.g. 0.05 for a design within 5% of optimal
+   * @return the run control
+   */
+  public RunControl withGapThreshold(double gapThreshold) {
+    if (gapThreshold < 0 || gapThreshold >= 1) throw new IllegalArgumentException();
+    this.gapThreshold = gapThreshold;
+    if (isGapReached(getIncumbentCost())) stop();
+    return this;
+  }
+
+  /**
+   * Add a listener of improving designs.
+   *
+   * @param listener the listener
+   * @return the run control
+   */
+  public RunControl withListener(ImprovementListener listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Offer a design. It becomes the incumbent if it is better, and listeners are notified.
+   *
+   * @param multiReplicas the design
+   * @param cost          cost of the design
+   * @param source        name of the optimizer offering the design
+   * @return true if the design becomes the incumbent
+   */
+  public synchronized boolean offer(MultiReplicas multiReplicas, double cost, String source) {
+    if (cost >= incumbentCost) return false;
+    incumbent = new MultiReplicas(multiReplicas);
+    incumbentCost = cost;
+    incumbentSource = source;
+    if (cost <= targetCost || isGapReached(cost)) stop();
+    long time = System.currentTimeMillis() - startTime;
+    for (ImprovementListener listener : listeners)
+      listener.improved(new MultiReplicas(incumbent), cost, source, time);
+    return true;
+  }
+
+  private boolean isGapReached(double cost) {
+    return lowerBound > 0 && gapThreshold >= 0 && LowerBound.gap(cost, lowerBound) <= gapThreshold;
+  }
+
+  /**
+   * Count an evaluation of a design, or of a partial design.
+   */
+  public void countEvaluation() {
+    evaluationNumber.incrementAndGet();
+  }
+
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Check if optimizers should stop, because of stop(), interruption of the calling thread, the deadline,
+   * or the evaluation budget.
+   *
+   * @return true if optimizers should stop
+   */
+  public boolean isStopped() {
+    if (stopped) return true;
+    if (Thread.currentThread().isInterrupted()
+            || System.currentTimeMillis() >= deadline
+            || evaluationNumber.get() >= evaluationBudget)
+      stopped = true;
+    return stopped;
+  }
+
+  /**
+   * Get a copy of the incumbent
+   *
+   * @return the incumbent, null if no design is offered
+   */
+  public synchronized MultiReplicas getIncumbent() {
+    return incumbent == null ? null : new MultiReplicas(incumbent);
+  }
+
+  public synchronized double getIncumbentCost() {
+    return incumbentCost;
+  }
+
+  public synchronized String getIncumbentSource() {
+    return incumbentSource;
+  }
+
+  public double getLowerBound() {
+    return lowerBound;
+  }
+
+  /**
+   * Get the optimality gap of the incumbent, relative to its cost, see LowerBound.gap().
+   *
+   * @return the gap, 1 if no design is offered, or no lower bound is set
+   */
+  public synchronized double getGap() {
+    return lowerBound > 0 ? LowerBound.gap(incumbentCost, lowerBound) : 1;
+  }
+
+  public long getEvaluationNumber() {
+    return evaluationNumber.get();
+  }
+
+  /**
+   * Get milliseconds since the run control is created.
+   *
+   * @return the elapsed time
+   */
+  public long getElapsedTime() {
+    return System.currentTimeMillis() - startTime;
+  }
+}
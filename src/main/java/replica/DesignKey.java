@@ -0,0 +1,135 @@
+package replica;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Canonical encoding of a multi-replica strategy. Replicas of a strategy are symmetric, so a strategy is the
+ * multiset of its column orders, and it is encoded as the sorted ranks of its orders. An order of at most 20
+ * columns is ranked by its Lehmer code, i.e. its index among all permutations in lexicographic order, which
+ * fits in a long. A longer order is packed into several longs, a byte or a short per column. Two strategies
+ * have equal keys iff they have the same orders with the same duplication, whatever the order of replicas.
+ */
+public class DesignKey {
+
+  private static final int MAX_RANKED_COLUMN_NUMBER = 20;
+
+  private final long[] words;
+  private final int hash;
+
+  private DesignKey(long[] words) {
+    this.words = words;
+    this.hash = Arrays.hashCode(words);
+  }
+
+  /**
+   * Encode a multi-replica strategy.
+   *
+   * @param multiReplicas the strategy
+   * @return the canonical key
+   */
+  public static DesignKey of(MultiReplicas multiReplicas) {
+    long[][] ranks = new long[multiReplicas.getReplicaNum()][];
+    int cnt = 0;
+    for (Map.Entry<Replica, Integer> en : multiReplicas.getReplicas().entrySet()) {
+      long[] rank = rank(en.getKey().getOrder());
+      for (int i = 0; i < en.getValue(); i++) ranks[cnt++] = rank;
+    }
+    return of(ranks);
+  }
+
+  /**
+   * Encode a multi-replica strategy given by the orders of its replicas.
+   *
+   * @param orders column orders of replicas, in any order
+   * @return the canonical key
+   */
+  public static DesignKey of(int[][] orders) {
+    long[][] ranks = new long[orders.length][];
+    for (int i = 0; i < orders.length; i++) ranks[i] = rank(orders[i]);
+    return of(ranks);
+  }
+
+  private static DesignKey of(long[][] ranks) {
+    Arrays.sort(ranks, DesignKey::compare);
+    int length = 0;
+    for (long[] rank : ranks) length += rank.length;
+    long[] words = new long[length];
+    int pos = 0;
+    for (long[] rank : ranks) {
+      System.arraycopy(rank, 0, words, pos, rank.length);
+      pos += rank.length;
+    }
+    return new DesignKey(words);
+  }
+
+  /**
+   * Rank a column order. The Lehmer code of an order of n columns is sum of c_i * (n - 1 - i)!, where c_i is
+   * the number of columns after position i that are less than the column at position i.
+   *
+   * @param order the column order, a permutation of 0 .. n - 1
+   * @return the Lehmer code if n <= 20, otherwise the order packed into longs
+   */
+  static long[] rank(int[] order) {
+    int n = order.length;
+    if (n <= MAX_RANKED_COLUMN_NUMBER) {
+      long rank = 0;
+      for (int i = 0; i < n; i++) {
+        int less = 0;
+        for (int j = i + 1; j < n; j++)
+          if (order[j] < order[i]) less++;
+        rank = rank * (n - i) + less;
+      }
+      return new long[]{rank};
+    }
+    int bits = n <= 256 ? 8 : 16;
+    int perWord = 64 / bits;
+    long[] res = new long[(n + perWord - 1) / perWord];
+    for (int i = 0; i < n; i++)
+      res[i / perWord] |= ((long) order[i]) << (bits * (i % perWord));
+    return res;
+  }
+
+  private static int compare(long[] a, long[] b) {
+    for (int i = 0; i < Math.min(a.length, b.length); i++) {
+      int c = Long.compare(a[i], b[i]);
+      if (c != 0) return c;
+    }
+    return Integer.compare(a.length, b.length);
+  }
+
+  /**
+   * A 64-bit hash of the key, mixed by the finalizer of SplitMix64, for hashing in visited filters.
+   *
+   * @return the hash
+   */
+  public long longHash() {
+    long h = 0x9E3779B97F4A7C15L;
+    for (long w : words) {
+      h ^= w;
+      h *= 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 31;
+    }
+    h ^= h >>> 30;
+    h *= 0x94D049BB133111EBL;
+    return h ^ (h >>> 31);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DesignKey that = (DesignKey) o;
+    return hash == that.hash && Arrays.equals(words, that.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(words);
+  }
+}
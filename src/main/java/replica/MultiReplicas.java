@@ -1,8 +1,10 @@
 package replica;
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -85,6 +87,17 @@ public class MultiReplicas {
     return this;
   }
 
+  /**
+   * Get the column order of each replica, a duplicated replica once for each copy.
+   * @return the orders, in the order of getReplicasArray(true)
+   */
+  public List<int[]> getOrders() {
+    List<int[]> orders = new ArrayList<>();
+    for (Map.Entry<Replica, Integer> en : replicas.entrySet())
+      for (int i = 0; i < en.getValue(); i++) orders.add(en.getKey().getOrder());
+    return orders;
+  }
+
   /**
    * Get a string, describing the orders of replicas in current multi-replica solution.
    * @return, a string, orders
@@ -1,8 +1,10 @@
 package replica;
 
+import constant.Constant;
 import datamodel.DataTable;
 import query.PointQuery;
 import query.Query;
+import query.RangeQuery;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
@@ -12,12 +14,45 @@ public class Replica {
   private DataTable dataTable;
   private final DataTable originalDataTable;
   private int[] order;
+  // the first partitionKeyLength columns of the order form the partition key, 0 for a single partition
+  private int partitionKeyLength = 0;
+  // only the first columnNumber columns of the order are stored, all of them for a full replica
+  private int columnNumber;
 
 
   public Replica(DataTable dataTable, int[] order) {
     this.order = order;
     this.originalDataTable = new DataTable(dataTable);
     this.dataTable = originalDataTable.getDataTable(order);
+    this.columnNumber = order.length;
+  }
+
+  /**
+   * Constructor, promoting a prefix of the order to the partition key
+   *
+   * @param dataTable          info of the data table
+   * @param order              column order
+   * @param partitionKeyLength number of leading columns in the partition key, 0 for a single partition
+   */
+  public Replica(DataTable dataTable, int[] order, int partitionKeyLength) {
+    this(dataTable, order);
+    if (partitionKeyLength < 0 || partitionKeyLength >= order.length) throw new IllegalArgumentException();
+    this.partitionKeyLength = partitionKeyLength;
+  }
+
+  /**
+   * Constructor of a partial replica, projecting a prefix of the order. It serves only queries whose predicates
+   * are all on stored columns, see isCovering().
+   *
+   * @param dataTable          info of the data table
+   * @param order              column order, stored columns first
+   * @param partitionKeyLength number of leading columns in the partition key, 0 for a single partition
+   * @param columnNumber       number of leading columns stored
+   */
+  public Replica(DataTable dataTable, int[] order, int partitionKeyLength, int columnNumber) {
+    this(dataTable, order, partitionKeyLength);
+    if (columnNumber <= partitionKeyLength || columnNumber > order.length) throw new IllegalArgumentException();
+    this.columnNumber = columnNumber;
   }
 
   public Replica(Replica r) {
@@ -25,6 +60,8 @@ public class Replica {
     this.originalDataTable = new DataTable(r.getOriginalDataTable());
     this.order = new int[r.getOrder().length];
     System.arraycopy(r.getOrder(), 0, order, 0, order.length);
+    this.partitionKeyLength = r.getPartitionKeyLength();
+    this.columnNumber = r.getColumnNumber();
   }
 
 
@@ -33,6 +70,25 @@ public class Replica {
     for (int i = 0; i < order.length; i++) order[i] = i;
     this.dataTable = new DataTable(dataTable);
     this.originalDataTable = new DataTable(dataTable);
+    this.columnNumber = order.length;
+  }
+
+  /**
+   * If the replica stores all columns a query has predicates on. A column without a predicate has a range query
+   * over all of its domain.
+   *
+   * @param query the original query
+   * @return true if the query can be evaluated on the replica
+   */
+  public boolean isCovering(Query query) {
+    if (columnNumber == order.length) return true;
+    Query afterOrder = query.getQuery(order);
+    for (int i = columnNumber; i < order.length; i++) {
+      if (!(afterOrder.getMiniQueries()[i] instanceof RangeQuery)) return false;
+      RangeQuery r = (RangeQuery) afterOrder.getMiniQueries()[i];
+      if (dataTable.getColHistograms()[i].getProbability(r.getLowerBound(), r.getUpperBound()) < 1) return false;
+    }
+    return true;
   }
 
   /**
@@ -45,21 +101,23 @@ public class Replica {
     if (query.getColNum() != dataTable.getColHistograms().length)
       throw new IllegalArgumentException();
     Query afterOrder = query.getQuery(order);
-    double res = 1.0;
-
-    if(afterOrder.getRangeColIndex() == -1){
-      for(int i = 0; i < dataTable.getColNum(); i++)
-        res *= res *= dataTable.getColHistograms()[i]
-                .getProbability(((PointQuery)afterOrder.getMiniQueries()[i]).getValue());
-      return res;
-    }
-
-    for (int i = 0; i < afterOrder.getRangeColIndex(); i++)
-      res *= dataTable.getColHistograms()[i]
+    int rangeColIndex = afterOrder.getRangeColIndex();
+    int prefixLength = rangeColIndex == -1 ? dataTable.getColNum() : rangeColIndex + 1;
+    double[] probability = new double[prefixLength];
+
+    for (int i = 0; i < prefixLength; i++)
+      probability[i] = i == rangeColIndex
+              ? dataTable.getColHistograms()[i].getProbability(afterOrder.getLowerBound(), afterOrder.getUpperBound())
+              : dataTable.getColHistograms()[i]
               .getProbability(((PointQuery)afterOrder.getMiniQueries()[i]).getValue());
 
-    res *= dataTable.getColHistograms()[afterOrder.getRangeColIndex()]
-            .getProbability(afterOrder.getLowerBound(), afterOrder.getUpperBound());
+    // multiply in the order of original columns, so that the same prefix columns in another order give the same
+    // product, and the same cost, instead of one differing by rounding
+    int[] position = new int[order.length];
+    for (int i = 0; i < order.length; i++) position[order[i]] = i;
+    double res = 1.0;
+    for (int c = 0; c < order.length; c++)
+      if (position[c] < prefixLength) res *= probability[position[c]];
     return res;
   }
 
@@ -74,8 +132,44 @@ public class Replica {
 //    return res;
 //  }
 
+  /**
+   * Rows to scan evaluating a query. If the partition key is restricted by points, the query reads a single
+   * partition, same as scanProbability. Otherwise it fans out to all partitions, is narrowed only by clustering
+   * columns, and opening each partition costs PARTITION_SEEK_ROWS rows.
+   *
+   * @param query the original query
+   * @return the number of rows to scan
+   */
   public BigDecimal scanRows(Query query) {
-    return dataTable.getRowNum().multiply(BigDecimal.valueOf(scanProbability(query)));
+    Query afterOrder = query.getQuery(order);
+    int rangeColIndex = afterOrder.getRangeColIndex();
+    if (partitionKeyLength == 0 || rangeColIndex == -1 || rangeColIndex >= partitionKeyLength)
+      return dataTable.getRowNum().multiply(BigDecimal.valueOf(scanProbability(query)));
+    double res = 1.0;
+    for (int i = partitionKeyLength; i < dataTable.getColNum(); i++) {
+      if (afterOrder.getMiniQueries()[i] instanceof PointQuery) {
+        res *= dataTable.getColHistograms()[i]
+                .getProbability(((PointQuery) afterOrder.getMiniQueries()[i]).getValue());
+      } else {
+        RangeQuery r = (RangeQuery) afterOrder.getMiniQueries()[i];
+        res *= dataTable.getColHistograms()[i].getProbability(r.getLowerBound(), r.getUpperBound());
+        break;
+      }
+    }
+    return dataTable.getRowNum().multiply(BigDecimal.valueOf(res))
+            .add(BigDecimal.valueOf(getPartitionNumber() * Constant.PARTITION_SEEK_ROWS));
+  }
+
+  /**
+   * Estimate the number of partitions, the product of distinct numbers of partition key columns, at most one
+   * partition per row.
+   *
+   * @return the number of partitions
+   */
+  public double getPartitionNumber() {
+    double res = 1;
+    for (int i = 0; i < partitionKeyLength; i++) res *= dataTable.getColHistograms()[i].getDistinctNum();
+    return Math.min(res, dataTable.getRowNum().doubleValue());
   }
 
 
@@ -84,6 +178,8 @@ public class Replica {
     String str = "";
     str += "original data table: \n" + originalDataTable.toString();
     str += ">>>> order: " + Arrays.toString(order) + "\n";
+    if (partitionKeyLength > 0) str += ">>>> partition key length: " + partitionKeyLength + "\n";
+    if (columnNumber < order.length) str += ">>>> stored columns: " + columnNumber + "\n";
     str += "current data table: \n" + dataTable.toString();
     return str;
   }
@@ -95,13 +191,17 @@ public class Replica {
     Replica replica = (Replica) o;
     return Objects.equals(dataTable, replica.dataTable) &&
             Objects.equals(originalDataTable, replica.originalDataTable) &&
-            Arrays.equals(order, replica.order);
+            Arrays.equals(order, replica.order) &&
+            partitionKeyLength == replica.partitionKeyLength &&
+            columnNumber == replica.columnNumber;
   }
 
   @Override
   public int hashCode() {
     int result = Objects.hash(dataTable, originalDataTable);
     result = 31 * result + Arrays.hashCode(order);
+    result = 31 * result + partitionKeyLength;
+    result = 31 * result + columnNumber;
     return result;
   }
 
@@ -117,4 +217,12 @@ public class Replica {
     return order;
   }
 
+  public int getPartitionKeyLength() {
+    return partitionKeyLength;
+  }
+
+  public int getColumnNumber() {
+    return columnNumber;
+  }
+
 }
@@ -3,20 +3,27 @@ package rita;
 
 import constant.Constant;
 import cost.CostModel;
+import cost.DesignCache;
+import cost.LowerBound;
+import cost.Objective;
+import cost.SampledCostModel;
 import datamodel.DataTable;
 import heterogeneous.ArrayTransform;
 import javafx.util.Pair;
+import optimizer.Optimizer;
+import optimizer.RunControl;
 import query.Query;
+import replica.DesignKey;
 import replica.MultiReplicas;
 import replica.Replica;
-import searchall.SearchAll;
+import searchall.DynamicProgramming;
 
 import java.math.BigDecimal;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.*;
 
-public class Rita {
+public class Rita implements Optimizer {
 
   private DataTable data;
   private Query[] queries;
@@ -36,6 +43,21 @@ public class Rita {
 
   private int localIterationNumberThreshold;
 
+  // screen new solutions on a sample of the workload, null to evaluate on the full workload
+  private SampledCostModel sampledCostModel = null;
+
+  // balance flags and costs of visited solutions, null to evaluate every new solution
+  private DesignCache<Pair<Boolean, BigDecimal>> designCache = null;
+  private boolean isSkipVisited = false;
+
+  // the objective, null for the cost of Rita on the workload
+  private Objective objective = null;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  private Random random = new Random();
+
   // the solution
   private MultiReplicas multiReplicas = null;
   private BigDecimal optimalCost;
@@ -96,6 +118,133 @@ public class Rita {
     this.temperatureInitSeed = temperatureInitSeed;
   }
 
+  /**
+   * Screen new solutions on a sample of the workload. A new solution is evaluated on the full workload
+   * only if the lower bound of its estimated cost is low enough to be chosen. The sampled cost model
+   * should be weighted and use the same load balance factor, to match the cost of Rita.
+   *
+   * @param sampledCostModel the sampled cost model, null to always evaluate on the full workload
+   * @return the rita instance
+   */
+  public Rita withSampledCostModel(SampledCostModel sampledCostModel) {
+    this.sampledCostModel = sampledCostModel;
+    return this;
+  }
+
+  /**
+   * Evaluate solutions by an objective instead of the weighted and load balanced cost of the workload. A solution
+   * must still be balanced on the workload to be chosen. The sampled cost model is not used with an objective.
+   *
+   * @param objective the objective, null for the cost of Rita on the workload
+   * @return the rita instance
+   */
+  @Override
+  public Rita withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /**
+   * Cache costs of new solutions by their canonical encoding, so that a solution visited again, or a
+   * permutation of its replicas, is not evaluated again. A solution visited before but evicted from the cache
+   * is skipped if isSkipVisited, otherwise it is evaluated again. Sizes are the defaults in Constant class.
+   *
+   * @param isSkipVisited true to skip visited solutions that are not cached
+   * @return the rita instance
+   */
+  public Rita withDesignCache(boolean isSkipVisited) {
+    this.designCache = new DesignCache<>();
+    this.isSkipVisited = isSkipVisited;
+    return this;
+  }
+
+  /**
+   * Set temperature decrease rate
+   *
+   * @param temperatureDecreaseRate customized temperature decrease rate
+   * @return the rita instance
+   */
+  public Rita withTemperatureDecreaseRate(double temperatureDecreaseRate) {
+    this.temperatureDecreaseRate = temperatureDecreaseRate;
+    return this;
+  }
+
+  /**
+   * Set optimal count threshold (iterations of outer loop)
+   *
+   * @param threshold customized optimal count threshold
+   * @return the rita instance
+   */
+  public Rita withOptimalCountThreshold(int threshold) {
+    this.optimalCountThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Set local iteration number threshold
+   *
+   * @param num customized local iteration number threshold
+   * @return the rita instance
+   */
+  public Rita withLocalIterationNumber(int num) {
+    this.localIterationNumberThreshold = num;
+    return this;
+  }
+
+  /**
+   * Set temperature initialize seed
+   *
+   * @param seed customized temperature initial seed
+   * @return the rita instance
+   */
+  public Rita withTemperatureInitSeed(double seed) {
+    this.temperatureInitSeed = seed;
+    return this;
+  }
+
+  /**
+   * Set the seed of the random number generator, to reproduce a run
+   *
+   * @param seed the seed
+   * @return the rita instance
+   */
+  public Rita withRandomSeed(long seed) {
+    this.random = new Random(seed);
+    return this;
+  }
+
+  /**
+   * Set the number of replicas. Candidate balance factor is reduced if it is greater than the number.
+   *
+   * @param n number of replica, not less than load balance factor
+   * @return the rita instance
+   */
+  @Override
+  public Rita withReplicaNumber(int n) {
+    if (loadBalanceFactor > n) throw new IllegalArgumentException();
+    this.replicaNumber = n;
+    if (n == loadBalanceFactor || candidateBalanceFactor > n) candidateBalanceFactor = n;
+    return this;
+  }
+
+  /**
+   * Set the run control. Designs are offered with their cost of CostModel, since cost of Rita is weighted
+   * and load balanced, or with their cost of the objective if it is set.
+   *
+   * @param runControl the run control
+   * @return the rita instance
+   */
+  @Override
+  public Rita withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
   /**
    * Same as Simulate Anneal
    *
@@ -103,23 +252,46 @@ public class Rita {
    * @throws NoSuchAlgorithmException
    */
   public MultiReplicas optimal() throws NoSuchAlgorithmException {
+    // the optimality gap of designs offered is relative to this lower bound
+    runControl.withLowerBound(objective == null
+            ? LowerBound.cost(data, queries, replicaNumber)
+            : objective.lowerBound(replicaNumber));
     initTemperature();
     if (multiReplicas == null)
       multiReplicas = initSolutionByOptimalReplica();
     optimalCost = cost(multiReplicas, queries, isNewMethod).getValue();
     costHistory.add(optimalCost.doubleValue());
-    while (!isGlobalConverge()) {
+    offer(multiReplicas);
+    while (!isGlobalConverge() && !runControl.isStopped()) {
       MultiReplicas curMultiReplica = new MultiReplicas(multiReplicas);
       BigDecimal curCost = optimalCost;
-      while (!isLocalConverge()) {
+      while (!isLocalConverge() && !runControl.isStopped()) {
         // generate new solution
         MultiReplicas newMultiReplica = generateNewMultiReplica(curMultiReplica);
-        Pair costPair = cost(newMultiReplica, queries, isNewMethod);
-        boolean isBalance = (boolean) costPair.getKey();
-        BigDecimal newCost = (BigDecimal) costPair.getValue();
-        if (isBalance && isChosen(newCost, curCost)) {
-          curMultiReplica = newMultiReplica;
-          curCost = newCost;
+        DesignKey key = designCache == null ? null : DesignKey.of(newMultiReplica);
+        Pair<Boolean, BigDecimal> cachedPair = key == null ? null : designCache.get(key);
+        boolean isSkipped = cachedPair == null && isSkipVisited && designCache.isVisited(key);
+        if (cachedPair == null && !isSkipped) runControl.countEvaluation();
+        if (isSkipped) {
+          // visited before and evicted from the cache, skip it
+        } else if (cachedPair != null || sampledCostModel == null || objective != null) {
+          Pair costPair = cachedPair != null ? cachedPair : evaluate(newMultiReplica, key);
+          boolean isBalance = (boolean) costPair.getKey();
+          BigDecimal newCost = (BigDecimal) costPair.getValue();
+          if (isBalance && isChosen(newCost, curCost)) {
+            curMultiReplica = newMultiReplica;
+            curCost = newCost;
+          }
+        } else {
+          double threshold = getChosenThreshold(curCost);
+          // confirm on the full workload only if the sampled estimate suggests it can be chosen
+          if (sampledCostModel.estimate(newMultiReplica, isNewMethod).getLowerBound() <= threshold) {
+            Pair<Boolean, BigDecimal> costPair = evaluate(newMultiReplica, key);
+            if (costPair.getKey() && costPair.getValue().doubleValue() <= threshold) {
+              curMultiReplica = newMultiReplica;
+              curCost = costPair.getValue();
+            }
+          }
         }
         costHistory.add(curCost.doubleValue());
         iteration++;
@@ -129,6 +301,7 @@ public class Rita {
         multiReplicas = new MultiReplicas(curMultiReplica);
         optimalCost = curCost;
         optimalCnt = 0;
+        offer(multiReplicas);
       } else {
         optimalCnt++;
       }
@@ -145,10 +318,10 @@ public class Rita {
    * @param replica, the original replica
    * @return new replica
    */
-  private static Replica generateNewReplica(Replica replica)
+  private Replica generateNewReplica(Replica replica)
           throws NoSuchAlgorithmException {
 //    Random rand = SecureRandom.getInstanceStrong();
-    Random rand = new Random();
+    Random rand = random;
     int columnNum = replica.getDataTable().getColNum();
     int pos0 = 0;
     int pos1 = 0;
@@ -163,7 +336,7 @@ public class Rita {
 //      newOrder = ArrayTransform.shuffle(replica.getOrder());
       newOrder = ArrayTransform.swap(replica.getOrder(), pos0, pos1);
     else if (isIn(seed, 5, 20))
-      newOrder = ArrayTransform.shuffle(replica.getOrder(), pos0, len);
+      newOrder = ArrayTransform.shuffle(replica.getOrder(), pos0, len, rand);
     else if (isIn(seed, 20, 40))
       newOrder = ArrayTransform.swap(replica.getOrder(), pos0, pos1);
     else if (isIn(seed, 40, 60))
@@ -211,7 +384,18 @@ public class Rita {
   private boolean isChosen(BigDecimal newCost, BigDecimal oldCost) {
     if (newCost.compareTo(oldCost) < 0) return true;
     double threshold = Math.exp(oldCost.subtract(newCost).doubleValue() / temperature);
-    return Math.random() <= threshold;
+    return random.nextDouble() <= threshold;
+  }
+
+  /**
+   * Get the maximum cost of a new strategy to be chosen. It draws the random value of isChosen in advance,
+   * so that a new strategy is chosen iff new cost <= old cost - temperature * ln(random).
+   *
+   * @param oldCost cost of current strategy
+   * @return the maximum cost to be chosen
+   */
+  private double getChosenThreshold(BigDecimal oldCost) {
+    return oldCost.doubleValue() - temperature * Math.log(random.nextDouble());
   }
 
   /**
@@ -254,7 +438,7 @@ public class Rita {
     BigDecimal min = null;
     for (int i = 0; i < 20; i++) {
       m = initSolutioRandom();
-      BigDecimal curCost = CostModel.cost(m, queries);
+      BigDecimal curCost = objective == null ? CostModel.cost(m, queries) : objective.cost(m);
       if (max == null || max.compareTo(curCost) < 0) max = curCost;
       if (min == null || min.compareTo(curCost) > 0) min = curCost;
     }
@@ -272,6 +456,18 @@ public class Rita {
     return this;
   }
 
+  /**
+   * Use a multi-replica to initialize the solution, e.g. from GreedyConstruction.
+   *
+   * @param m a multi-replica, with the same replica number
+   */
+  public Rita initSolution(MultiReplicas m) {
+    if (m.getReplicaNum() != replicaNumber)
+      throw new IllegalArgumentException("Replica numbers are inconsistent");
+    multiReplicas = new MultiReplicas(m);
+    return this;
+  }
+
   /**
    * Randomly generate a multi-replica solution.
    *
@@ -279,7 +475,7 @@ public class Rita {
    */
   private MultiReplicas initSolutionByOptimalReplica() {
     MultiReplicas newMultiReplica = new MultiReplicas();
-    Replica r = new SearchAll(data, queries).optimalReplica();
+    Replica r = new DynamicProgramming(data, queries).optimalReplica();
     for (int i = 0; i < replicaNumber; i++)
       newMultiReplica.add(new Replica(r));
     return newMultiReplica;
@@ -288,7 +484,7 @@ public class Rita {
   private MultiReplicas initSolutioRandom() {
     MultiReplicas newMultiReplica = new MultiReplicas();
     for (int i = 0; i < replicaNumber; i++)
-      newMultiReplica.add(new Replica(data, ArrayTransform.random(data.getColNum())));
+      newMultiReplica.add(new Replica(data, ArrayTransform.random(data.getColNum(), random)));
     return newMultiReplica;
   }
 
@@ -304,11 +500,23 @@ public class Rita {
     return value >= lowerBound && value < upperBound;
   }
 
+  /**
+   * Offer a design to the run control, with its cost of CostModel, or of the objective if it is set.
+   *
+   * @param m the design
+   */
+  private void offer(MultiReplicas m) {
+    BigDecimal cost = objective != null ? objective.cost(m)
+            : isNewMethod ? CostModel.cost(m, queries) : CostModel.totalCost(m, queries);
+    runControl.offer(m, cost.doubleValue(), getName());
+  }
+
   /**
    * Get the optimal cost after running algorithm
    *
    * @return
    */
+  @Override
   public double getOptimalCost() {
     return optimalCost.doubleValue();
   }
@@ -318,10 +526,16 @@ public class Rita {
    *
    * @return the record history
    */
+  @Override
   public List<Double> getHistory() {
     return costHistory;
   }
 
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
 
   /**
    * Get the cost of evaluating a workload on a multi-replica strategy.
@@ -370,6 +584,19 @@ public class Rita {
 //            .compareTo(max) >= 0;
 //    return new Pair<>(isBalance, res);
 //  }
+  /**
+   * Evaluate a new solution on the full workload, and cache its balance flag and cost if a design cache is set.
+   *
+   * @param multiReplica the new solution
+   * @param key          its canonical key, null if no design cache is set
+   * @return if the solution is balanced, and its cost
+   */
+  private Pair<Boolean, BigDecimal> evaluate(MultiReplicas multiReplica, DesignKey key) {
+    Pair<Boolean, BigDecimal> costPair = cost(multiReplica, queries, isNewMethod);
+    if (key != null) designCache.put(key, costPair);
+    return costPair;
+  }
+
   private Pair<Boolean, BigDecimal> cost(MultiReplicas multiReplicas, Query[] queries, boolean isNewMethod) {
     Replica[] replicas = multiReplicas.getReplicasArray(true);
     BigDecimal[] costs = new BigDecimal[replicas.length];
@@ -392,7 +619,9 @@ public class Rita {
     boolean isBalance = min.multiply(BigDecimal.valueOf(1 + skewFactor))
             .compareTo(max) >= 0;
 
-    if (isNewMethod) {
+    if (objective != null) {
+      return new Pair<>(isBalance, objective.cost(multiReplicas));
+    } else if (isNewMethod) {
       return new Pair<>(isBalance, max);
     } else {
       BigDecimal sum = new BigDecimal("0");
@@ -445,7 +674,7 @@ public class Rita {
     Arrays.sort(order, Comparator.comparing(o -> costs[o]));
     List<Integer> candidates = new ArrayList<>();
     for (int i = 0; i < candidateBalanceFactor; i++) candidates.add(order[i]);
-    Collections.shuffle(candidates);
+    Collections.shuffle(candidates, random);
     int[] res = new int[loadBalanceFactor];
     for (int i = 0; i < res.length; i++) res[i] = candidates.get(i);
     return res;
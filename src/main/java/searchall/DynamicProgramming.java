@@ -0,0 +1,216 @@
+package searchall;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import query.Query;
+import replica.Replica;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Exact single-replica ordering by dynamic programming over column subsets. The cost of a query on an order
+ * only depends on which of its point columns precede its first range column, so after a set S of columns is
+ * placed at the head of the order, the cost of placing column c next is the cost of queries whose first range
+ * column is c, and it does not depend on the order inside S. The optimal order is found in O(2^k * k) states,
+ * instead of k! permutations in SearchAll.optimalReplica.
+ * Part of the order can be fixed, as a prefix and a suffix, then only the remaining columns are searched. Cost
+ * of each query can be capped, e.g. by its cost on other replicas, so that a query only counts for what the
+ * new order saves on it.
+ */
+public class DynamicProgramming {
+
+  private DataTable dataTable;
+  private Query[] queries;
+  private SelectivityTable selectivityTable;
+
+  private int[] prefix = new int[0];
+  private int[] suffix = new int[0];
+  private double[] caps = null;
+
+  private BigDecimal optimalCost = null;
+
+  /**
+   * Constructor
+   *
+   * @param dataTable info of the data table
+   * @param queries   info of the queries
+   */
+  public DynamicProgramming(DataTable dataTable, Query[] queries) {
+    this(dataTable, queries, new SelectivityTable(dataTable, queries));
+  }
+
+  /**
+   * Constructor, sharing a selectivity table evaluated on the same data table and queries.
+   *
+   * @param dataTable        info of the data table
+   * @param queries          info of the queries
+   * @param selectivityTable selectivity of the queries
+   */
+  public DynamicProgramming(DataTable dataTable, Query[] queries, SelectivityTable selectivityTable) {
+    this.dataTable = dataTable;
+    this.queries = queries;
+    this.selectivityTable = selectivityTable;
+  }
+
+  /**
+   * Fix the columns at the head of the order.
+   *
+   * @param prefix the leading columns
+   * @return the dynamic programming instance
+   */
+  public DynamicProgramming withPrefix(int[] prefix) {
+    this.prefix = prefix.clone();
+    return this;
+  }
+
+  /**
+   * Fix the columns at the tail of the order.
+   *
+   * @param suffix the trailing columns
+   * @return the dynamic programming instance
+   */
+  public DynamicProgramming withSuffix(int[] suffix) {
+    this.suffix = suffix.clone();
+    return this;
+  }
+
+  /**
+   * Cap the cost of each query, the cost of a query is min(cost on the order, cap).
+   *
+   * @param caps an array of caps, one for each query, null for no cap
+   * @return the dynamic programming instance
+   */
+  public DynamicProgramming withCaps(double[] caps) {
+    if (caps != null && caps.length != queries.length) throw new IllegalArgumentException();
+    this.caps = caps;
+    return this;
+  }
+
+  /**
+   * Generate an optimal replica
+   *
+   * @return the replica
+   */
+  public Replica optimalReplica() {
+    int colNum = dataTable.getColNum();
+    boolean[] fixed = new boolean[colNum];
+    for (int c : prefix) fixed[c] = true;
+    for (int c : suffix) {
+      if (fixed[c]) throw new IllegalArgumentException("Column is fixed twice.");
+      fixed[c] = true;
+    }
+    // free columns, indexed from 0 in the dp states
+    int[] free = new int[colNum - prefix.length - suffix.length];
+    int freeNum = 0;
+    for (int c = 0; c < colNum; c++)
+      if (!fixed[c]) free[freeNum++] = c;
+    if (freeNum > Constant.DP_MAX_COLUMN_NUMBER)
+      throw new IllegalArgumentException("Too many columns for dynamic programming.");
+
+    // queries whose cost depends on the order of free columns, grouped by their range columns
+    double constant = 0;
+    Map<Integer, List<Integer>> groups = new HashMap<>();
+    double[] base = new double[queries.length];
+    int[] pointMask = new int[queries.length];
+    for (int q = 0; q < queries.length; q++) {
+      double cap = caps == null ? Double.POSITIVE_INFINITY : caps[q];
+      base[q] = selectivityTable.getRowNum() * Constant.COST_SCALE.doubleValue();
+      boolean terminated = false;
+      for (int c : prefix) {
+        base[q] *= selectivityTable.getSelectivity(q, c);
+        if (selectivityTable.isRange(q, c)) {
+          terminated = true;
+          break;
+        }
+      }
+      if (terminated) {
+        constant += Math.min(cap, base[q]);
+        continue;
+      }
+      int rangeMask = 0;
+      for (int i = 0; i < freeNum; i++) {
+        if (selectivityTable.isRange(q, free[i])) rangeMask |= 1 << i;
+        else pointMask[q] |= 1 << i;
+      }
+      if (rangeMask != 0) {
+        groups.computeIfAbsent(rangeMask, k -> new ArrayList<>()).add(q);
+        continue;
+      }
+      // all free columns are point columns, the query ends in the suffix
+      double cost = base[q];
+      for (int i = 0; i < freeNum; i++) cost *= selectivityTable.getSelectivity(q, free[i]);
+      for (int c : suffix) {
+        cost *= selectivityTable.getSelectivity(q, c);
+        if (selectivityTable.isRange(q, c)) break;
+      }
+      constant += Math.min(cap, cost);
+    }
+
+    int[] groupMasks = new int[groups.size()];
+    int[][] groupQueries = new int[groups.size()][];
+    int g = 0;
+    for (Map.Entry<Integer, List<Integer>> en : groups.entrySet()) {
+      groupMasks[g] = en.getKey();
+      groupQueries[g] = new int[en.getValue().size()];
+      for (int i = 0; i < groupQueries[g].length; i++) groupQueries[g][i] = en.getValue().get(i);
+      g++;
+    }
+
+    int stateNum = 1 << freeNum;
+    double[] dp = new double[stateNum];
+    byte[] last = new byte[stateNum];
+    Arrays.fill(dp, Double.POSITIVE_INFINITY);
+    dp[0] = 0;
+    double[] add = new double[freeNum];
+    for (int s = 0; s < stateNum - 1; s++) {
+      Arrays.fill(add, 0);
+      for (g = 0; g < groupMasks.length; g++) {
+        if ((groupMasks[g] & s) != 0) continue;
+        for (int q : groupQueries[g]) {
+          double cap = caps == null ? Double.POSITIVE_INFINITY : caps[q];
+          double prod = base[q];
+          for (int placed = s & pointMask[q]; placed != 0; placed &= placed - 1)
+            prod *= selectivityTable.getSelectivity(q, free[Integer.numberOfTrailingZeros(placed)]);
+          for (int range = groupMasks[g]; range != 0; range &= range - 1) {
+            int i = Integer.numberOfTrailingZeros(range);
+            add[i] += Math.min(cap, prod * selectivityTable.getSelectivity(q, free[i]));
+          }
+        }
+      }
+      for (int i = 0; i < freeNum; i++) {
+        if ((s & (1 << i)) != 0) continue;
+        int next = s | (1 << i);
+        if (dp[s] + add[i] < dp[next]) {
+          dp[next] = dp[s] + add[i];
+          last[next] = (byte) i;
+        }
+      }
+    }
+
+    int[] order = new int[colNum];
+    System.arraycopy(prefix, 0, order, 0, prefix.length);
+    System.arraycopy(suffix, 0, order, colNum - suffix.length, suffix.length);
+    int s = stateNum - 1;
+    for (int pos = prefix.length + freeNum - 1; pos >= prefix.length; pos--) {
+      order[pos] = free[last[s]];
+      s &= ~(1 << last[s]);
+    }
+    Replica replica = new Replica(dataTable, order);
+    optimalCost = caps == null
+            ? CostModel.cost(replica, queries)
+            : BigDecimal.valueOf(dp[stateNum - 1] + constant);
+    return replica;
+  }
+
+  /**
+   * Get the cost of the optimal replica. If caps are set, it is the sum of capped costs.
+   *
+   * @return the cost
+   */
+  public BigDecimal getOptimalCost() {
+    return optimalCost;
+  }
+}
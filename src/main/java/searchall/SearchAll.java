@@ -2,7 +2,11 @@ package searchall;
 
 import constant.Constant;
 import cost.CostModel;
+import cost.Objective;
+import cost.SelectivityTable;
 import datamodel.DataTable;
+import optimizer.Optimizer;
+import optimizer.RunControl;
 import query.Query;
 import replica.MultiReplicas;
 import replica.Replica;
@@ -11,7 +15,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
-public class SearchAll {
+public class SearchAll implements Optimizer {
 
   private DataTable dataTable;
   private Query[] queries;
@@ -20,7 +24,14 @@ public class SearchAll {
   private BigDecimal optimalCost = null;
   private MultiReplicas multiReplicas;
 
-  private List<BigDecimal> history = new ArrayList<>();
+  private List<Double> history = new ArrayList<>();
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+  private boolean isShared = false;
+
+  // the objective, null for cask effect cost of the workload
+  private Objective objective = null;
 
 
   /**
@@ -47,6 +58,60 @@ public class SearchAll {
   }
 
 
+  @Override
+  public SearchAll withReplicaNumber(int n) {
+    this.replicaNum = n;
+    return this;
+  }
+
+  /**
+   * Set the run control. Combinations are also pruned against the incumbent of the run control.
+   * @param runControl the run control
+   * @return the search all instance
+   */
+  @Override
+  public SearchAll withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    this.isShared = true;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /**
+   * Start from an incumbent, e.g. from GreedyConstruction. The result is never worse than the incumbent,
+   * and combinations whose cost lower bound is not less than the best cost so far are not evaluated.
+   * @param incumbent a multi-replica with the same replica number
+   * @return the search all instance
+   */
+  public SearchAll withIncumbent(MultiReplicas incumbent) {
+    if (incumbent.getReplicaNum() != replicaNum)
+      throw new IllegalArgumentException("Replica numbers are inconsistent");
+    this.multiReplicas = new MultiReplicas(incumbent);
+    this.optimalCost = cost(incumbent);
+    return this;
+  }
+
+  /**
+   * Evaluate combinations by an objective instead of cask effect cost of the workload. The lower bound of
+   * cask effect cost does not hold for an objective, so no combination is pruned. Set it before an incumbent.
+   *
+   * @param objective the objective, null for cask effect cost of the workload
+   * @return the search all instance
+   */
+  @Override
+  public SearchAll withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  private BigDecimal cost(MultiReplicas m) {
+    return objective == null ? CostModel.cost(m, queries) : objective.cost(m);
+  }
+
   /**
    * generate optimal multi-replicas
    * @return
@@ -54,22 +119,61 @@ public class SearchAll {
   public MultiReplicas optimal() {
     List<int[]> singleReplicas = new Permutation().getPerm(0, dataTable.getColNum() - 1, dataTable.getColNum(), false);
     List<int[]> replicasOrder = new Permutation().getPerm(0, singleReplicas.size()-1, replicaNum, true);
+    // cost of each query on each single replica, for pruning with the incumbent
+    double[][] rows = null;
+    if (objective == null && (optimalCost != null || isShared)) {
+      SelectivityTable selectivityTable = new SelectivityTable(dataTable, queries);
+      rows = new double[singleReplicas.size()][];
+      for (int i = 0; i < rows.length; i++) rows[i] = selectivityTable.cost(singleReplicas.get(i));
+    }
     int counter = 0;
     for (int[] ro : replicasOrder) {
+      if (runControl.isStopped() && multiReplicas != null) break;
+      double bound = Math.min(optimalCost == null ? Double.POSITIVE_INFINITY : optimalCost.doubleValue(),
+              runControl.getIncumbentCost());
+      if (rows != null && lowerBound(rows, ro) >= bound) {
+        counter++;
+        continue;
+      }
       MultiReplicas m = new MultiReplicas();
       for (int replicaIdx : ro)
         m.add(new Replica(dataTable, singleReplicas.get(replicaIdx)));
-      BigDecimal cost = CostModel.cost(m, queries);
+      runControl.countEvaluation();
+      BigDecimal cost = cost(m);
       System.out.println(counter++ + "/" + replicasOrder.size());
-      history.add(cost);
+      history.add(cost.doubleValue());
       if(optimalCost == null || optimalCost.compareTo(cost) > 0){
         optimalCost = cost;
         multiReplicas = new MultiReplicas(m);
+        runControl.offer(multiReplicas, cost.doubleValue(), getName());
       }
     }
+    // all combinations are pruned by the shared incumbent
+    if (multiReplicas == null) {
+      multiReplicas = runControl.getIncumbent();
+      optimalCost = cost(multiReplicas);
+    }
     return multiReplicas;
   }
 
+  /**
+   * Lower bound of the cask effect cost of a combination: each query costs at least its least cost on the
+   * replicas, and the greatest load is at least the average load.
+   * @param rows cost of each query on each single replica
+   * @param ro indexes of single replicas in the combination
+   * @return the lower bound
+   */
+  private double lowerBound(double[][] rows, int[] ro) {
+    double total = 0;
+    for (int q = 0; q < queries.length; q++) {
+      double least = Double.POSITIVE_INFINITY;
+      for (int replicaIdx : ro) least = Math.min(least, rows[replicaIdx][q]);
+      total += least;
+    }
+    // tolerance for rounding of double, against BigDecimal cost
+    return total / ro.length * (1 - 1e-9);
+  }
+
   /**
    * Generate an optimal replica
    * @return
@@ -84,16 +188,23 @@ public class SearchAll {
         optimalCost = cost;
         ans = r;
       }
-      history.add(optimalCost);
+      history.add(optimalCost.doubleValue());
     }
     return ans;
   }
 
-  public BigDecimal getOptimalCost() {
-    return optimalCost;
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
   }
 
-  public List<BigDecimal> getHistory() {
+  @Override
+  public List<Double> getHistory() {
     return history;
   }
 }
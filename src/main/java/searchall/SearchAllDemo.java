@@ -7,7 +7,6 @@ import replica.MultiReplicas;
 import replica.Replica;
 
 import java.io.*;
-import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 
@@ -29,14 +28,14 @@ public class SearchAllDemo {
     Query[] queries = getQueries(col);
     SearchAll sa = new SearchAll(dataTable, queries, 1);
     Replica r = sa.optimalReplica();
-    List<BigDecimal> history = sa.getHistory();
+    List<Double> history = sa.getHistory();
     System.out.println(Arrays.toString(r.getOrder()));
     System.out.println(sa.getOptimalCost());
 
     File f = new File("search_all_history1.csv");
     if (!f.exists()) f.createNewFile();
     FileWriter fw = new FileWriter(f, true);
-    for (BigDecimal d : history)
+    for (Double d : history)
       fw.write(d.toString() + "\n");
     fw.flush();
     fw.close();
@@ -0,0 +1,228 @@
+package sweep;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.Objective;
+import datamodel.DataTable;
+import greedy.GreedyConstruction;
+import heterogeneous.SimulateAnneal;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+import query.Query;
+import replica.MultiReplicas;
+import tabu.TabuSearch;
+
+import java.math.BigDecimal;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Designs for a range of replica numbers in one run, and the marginal cost curve, e.g. to decide if one more
+ * replica is worth it. Instead of optimizing each replica number from scratch, the design of k + 1 replicas is
+ * warm-started from the design of k replicas plus a replica added by GreedyConstruction, and refined by an
+ * optimizer. The warm start is usually close to a local optimum, so the default refiner, SimulateAnneal, starts
+ * at a temperature of neighbors of the warm start, and stops after fewer outer loops without improvement than a
+ * cold start. The design of the least replica number is constructed greedily and refined.
+ * With an objective, e.g. a WriteObjective where every replica adds write load, designs are constructed,
+ * refined and costed by it, so the curve may rise, and getBestPoint() tells the replica number to take.
+ */
+public class ReplicaSweep {
+
+  /**
+   * Create an optimizer refining a warm start of a replica number.
+   */
+  public interface Refiner {
+    Optimizer create(int replicaNumber, MultiReplicas warmStart);
+  }
+
+  private DataTable data;
+  private Query[] queries;
+  private boolean isNewMethod;
+
+  private int minReplicaNumber = 2;
+  private int maxReplicaNumber = 5;
+  private Refiner refiner;
+  private long timeLimit = -1;
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+
+  // the curve
+  private List<Point> curve = new ArrayList<>();
+
+  /**
+   * Constructor, refining warm starts by SimulateAnneal for cask effect cost, by TabuSearch for total cost.
+   *
+   * @param dataTable   info of the data table
+   * @param queries     workload
+   * @param isNewMethod if use cask effect objective function or total cost
+   */
+  public ReplicaSweep(DataTable dataTable, Query[] queries, boolean isNewMethod) {
+    this.data = dataTable;
+    this.queries = queries;
+    this.isNewMethod = isNewMethod;
+    this.refiner = isNewMethod
+            ? (k, m) -> new SimulateAnneal(data, queries, k, true)
+                    .withLocalTemperature(true)
+                    .withOptimalCountThreshold(Constant.SWEEP_OPTIMAL_COUNT_THRESHOLD)
+                    .initSolution(m)
+            : (k, m) -> new TabuSearch(data, queries, k, false).initSolution(m);
+  }
+
+  /**
+   * Set the range of replica numbers
+   *
+   * @param min the least replica number
+   * @param max the greatest replica number
+   * @return the sweep
+   */
+  public ReplicaSweep withReplicaRange(int min, int max) {
+    if (min <= 0 || max < min) throw new IllegalArgumentException();
+    this.minReplicaNumber = min;
+    this.maxReplicaNumber = max;
+    return this;
+  }
+
+  /**
+   * Set the optimizer refining warm starts, null to keep greedy designs.
+   *
+   * @param refiner the refiner
+   * @return the sweep
+   */
+  public ReplicaSweep withRefiner(Refiner refiner) {
+    this.refiner = refiner;
+    return this;
+  }
+
+  /**
+   * Construct, refine and cost designs by an objective, set on refiners by Optimizer.withObjective().
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the sweep
+   */
+  public ReplicaSweep withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /**
+   * Set the time limit of refining each replica number
+   *
+   * @param millis time limit in milliseconds
+   * @return the sweep
+   */
+  public ReplicaSweep withTimeLimit(long millis) {
+    if (millis < 0) throw new IllegalArgumentException();
+    this.timeLimit = millis;
+    return this;
+  }
+
+  /*
+   * Run the sweep
+   * 1. construct a design of the least replica number greedily
+   * 2. for each replica number k
+   * 3.  | if [k is not the least replica number]
+   * 4.  |  | add a replica to the design of k - 1 replicas greedily
+   * 5.  | end if
+   * 6.  | refine the warm start
+   * 7.  | keep the better one of the warm start and the refined design
+   * 8.  | record its cost, and the drop of cost from k - 1 replicas
+   * 9. end for
+   */
+  public List<Point> sweep() throws NoSuchAlgorithmException {
+    curve = new ArrayList<>();
+    MultiReplicas design = null;
+    for (int k = minReplicaNumber; k <= maxReplicaNumber; k++) {
+      long start = System.currentTimeMillis();
+      GreedyConstruction greedy = new GreedyConstruction(data, queries, k, isNewMethod);
+      if (design != null) greedy.initSolution(design);
+      if (objective != null) greedy.withObjective(objective);
+      design = greedy.optimal();
+      BigDecimal cost = cost(design);
+      if (refiner != null) {
+        Optimizer optimizer = refiner.create(k, design);
+        if (timeLimit >= 0) optimizer.withRunControl(new RunControl().withTimeLimit(timeLimit));
+        if (objective != null) optimizer.withObjective(objective);
+        MultiReplicas refined = optimizer.optimal();
+        BigDecimal refinedCost = cost(refined);
+        if (refinedCost.compareTo(cost) < 0) {
+          design = new MultiReplicas(refined);
+          cost = refinedCost;
+        }
+      }
+      double marginalGain = curve.isEmpty()
+              ? Double.NaN
+              : curve.get(curve.size() - 1).getCost() - cost.doubleValue();
+      curve.add(new Point(k, new MultiReplicas(design), cost.doubleValue(), marginalGain,
+              System.currentTimeMillis() - start));
+    }
+    return curve;
+  }
+
+  private BigDecimal cost(MultiReplicas m) {
+    if (objective != null) return objective.cost(m);
+    return isNewMethod ? CostModel.cost(m, queries) : CostModel.totalCost(m, queries);
+  }
+
+  public List<Point> getCurve() {
+    return curve;
+  }
+
+  /**
+   * Get the point of the least cost after the sweep, the fewest replicas if there are ties
+   *
+   * @return the point, null before the sweep
+   */
+  public Point getBestPoint() {
+    Point res = null;
+    for (Point p : curve)
+      if (res == null || p.getCost() < res.getCost()) res = p;
+    return res;
+  }
+
+  /**
+   * A point of the marginal cost curve: the design of a replica number, its cost, the drop of cost from one
+   * replica less, NaN for the least replica number, and the time to add and refine it in milliseconds.
+   */
+  public static class Point {
+    private int replicaNumber;
+    private MultiReplicas multiReplicas;
+    private double cost;
+    private double marginalGain;
+    private long time;
+
+    Point(int replicaNumber, MultiReplicas multiReplicas, double cost, double marginalGain, long time) {
+      this.replicaNumber = replicaNumber;
+      this.multiReplicas = multiReplicas;
+      this.cost = cost;
+      this.marginalGain = marginalGain;
+      this.time = time;
+    }
+
+    public int getReplicaNumber() {
+      return replicaNumber;
+    }
+
+    public MultiReplicas getMultiReplicas() {
+      return multiReplicas;
+    }
+
+    public double getCost() {
+      return cost;
+    }
+
+    public double getMarginalGain() {
+      return marginalGain;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    @Override
+    public String toString() {
+      return "{replica_num:" + replicaNumber + "||cost:" + cost + "||marginal_gain:" + marginalGain
+              + "||time:" + time + "ms||solution:" + multiReplicas.getOrderString() + "}";
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package sweep;
+
+import datamodel.DataTable;
+import query.Query;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.security.NoSuchAlgorithmException;
+
+public class SweepDemo {
+  static Query[] getQueries(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("queries_" + colNums));
+    return (Query[]) ois.readObject();
+  }
+
+  static DataTable getDataTable(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("data_table_" + colNums));
+    return (DataTable) ois.readObject();
+  }
+
+  public static void main(String args[]) throws IOException, ClassNotFoundException, NoSuchAlgorithmException {
+    DataTable dataTable = getDataTable(7);
+    Query[] queries = getQueries(7);
+    ReplicaSweep sweep = new ReplicaSweep(dataTable, queries, true).withReplicaRange(2, 5);
+    for (ReplicaSweep.Point p : sweep.sweep())
+      System.out.println(p);
+  }
+}
@@ -0,0 +1,33 @@
+package tabu;
+
+import cost.CostModel;
+import datamodel.DataTable;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+public class TabuDemo {
+  static Query[] getQueries(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("queries_" + colNums));
+    return (Query[]) ois.readObject();
+  }
+
+  static DataTable getDataTable(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("data_table_" + colNums));
+    return (DataTable) ois.readObject();
+  }
+
+  public static void main(String args[]) throws IOException, ClassNotFoundException {
+    DataTable dataTable = getDataTable(7);
+    Query[] queries = getQueries(7);
+    TabuSearch t = new TabuSearch(dataTable, queries, 3, true);
+    MultiReplicas multiReplicas = t.optimal();
+    System.out.println(multiReplicas.getOrderString());
+    System.out.println("cost: " + t.getOptimalCost());
+    System.out.println("cost: " + CostModel.cost(multiReplicas, queries));
+    System.out.println("evaluations: " + t.getEvaluationNumber());
+  }
+}
@@ -0,0 +1,502 @@
+package tabu;
+
+import constant.Constant;
+import cost.CostModel;
+import cost.Objective;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import heterogeneous.ArrayTransform;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+import searchall.DynamicProgramming;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class implements tabu search to find the optimal multi-replicas strategy. In each iteration, it
+ * evaluates all moves of ArrayTransform (swap, insert and reverse) on every replica, and takes the best one
+ * which is not tabu. A move is keyed by the columns it relocates and their new positions. After a move, the
+ * relocated columns are forbidden to go back to their old positions for a number of iterations (recency),
+ * and moves placing a column at a position often used are penalized (frequency). A tabu move is still taken
+ * if it leads to a new global best (aspiration).
+ * Costs of queries on each replica are kept in a matrix, and a move only re-evaluates queries on the changed
+ * replica whose first range column is not before the first changed position.
+ */
+public class TabuSearch implements Optimizer {
+
+  private DataTable data;
+  private Query[] queries;
+  private SelectivityTable selectivityTable;
+
+  private int replicaNumber;
+  private boolean isNewMethod;
+
+  // tabu search parameters
+  private int tenure;
+  private int maxIteration;
+  private int noImproveThreshold;
+  private double frequencyPenalty;
+
+  // current solution
+  private int[][] orders = null;
+  private double[][] costMatrix;
+  private int[][] firstRangePosition;
+  private int iteration = 0;
+  private long evaluationNumber = 0;
+
+  // memory, indexed by [replica][column][position]
+  private int[][][] tabuUntil;
+  private int[][][] frequency;
+
+  // shared incumbent and stop flag
+  private RunControl runControl = new RunControl();
+
+  // the objective, null for cask effect cost or total cost of the workload
+  private Objective objective = null;
+
+  // the solution
+  private MultiReplicas multiReplicas = null;
+  private BigDecimal optimalCost;
+  private List<Double> costHistory = new ArrayList<>();
+
+  /**
+   * Constructor, using constant values in Constant class
+   *
+   * @param dataTable info of the data table
+   * @param queries   workload
+   */
+  public TabuSearch(DataTable dataTable, Query[] queries) {
+    this(dataTable, queries, Constant.REPLICA_NUMBER, Constant.IS_NEW_METHOD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param dataTable     info of the data table
+   * @param queries       workload
+   * @param replicaNumber number of replica
+   * @param isNewMethod   if use cask effect objective function or total cost
+   */
+  public TabuSearch(DataTable dataTable, Query[] queries, int replicaNumber, boolean isNewMethod) {
+    this.data = dataTable;
+    this.queries = queries;
+    this.replicaNumber = replicaNumber;
+    this.isNewMethod = isNewMethod;
+    this.tenure = Constant.TABU_TENURE;
+    this.maxIteration = Constant.TABU_MAX_ITERATION;
+    this.noImproveThreshold = Constant.TABU_NO_IMPROVE_THRESHOLD;
+    this.frequencyPenalty = Constant.TABU_FREQUENCY_PENALTY;
+  }
+
+  @Override
+  public TabuSearch withReplicaNumber(int n) {
+    this.replicaNumber = n;
+    return this;
+  }
+
+  @Override
+  public TabuSearch withRunControl(RunControl runControl) {
+    this.runControl = runControl;
+    return this;
+  }
+
+  @Override
+  public RunControl getRunControl() {
+    return runControl;
+  }
+
+  /**
+   * Evaluate solutions by an objective instead of the cost matrix of the workload. Moves are still generated
+   * the same way, but each one is evaluated on the whole solution.
+   *
+   * @param objective the objective, null for cask effect cost or total cost of the workload
+   * @return the tabu search instance
+   */
+  @Override
+  public TabuSearch withObjective(Objective objective) {
+    this.objective = objective;
+    return this;
+  }
+
+  /**
+   * Set the number of iterations a relocated column is forbidden to go back to its old position
+   *
+   * @param tenure customized tabu tenure
+   * @return the tabu search instance
+   */
+  public TabuSearch withTenure(int tenure) {
+    this.tenure = tenure;
+    return this;
+  }
+
+  public TabuSearch withMaxIteration(int maxIteration) {
+    this.maxIteration = maxIteration;
+    return this;
+  }
+
+  /**
+   * Set the number of iterations without improving the best solution, before terminating
+   *
+   * @param threshold customized threshold
+   * @return the tabu search instance
+   */
+  public TabuSearch withNoImproveThreshold(int threshold) {
+    this.noImproveThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Set the weight of frequency penalty, relative to the best cost
+   *
+   * @param penalty customized frequency penalty
+   * @return the tabu search instance
+   */
+  public TabuSearch withFrequencyPenalty(double penalty) {
+    this.frequencyPenalty = penalty;
+    return this;
+  }
+
+  /**
+   * Use a replica to initialize the solution. The initial multi-replica contains multiple
+   * replication of the given replica
+   *
+   * @param r a replica
+   * @return the tabu search instance
+   */
+  public TabuSearch initSolution(Replica r) {
+    orders = new int[replicaNumber][];
+    for (int i = 0; i < replicaNumber; i++) orders[i] = r.getOrder().clone();
+    return this;
+  }
+
+  /**
+   * Use a multi-replica to initialize the solution.
+   *
+   * @param m a multi-replica
+   * @return the tabu search instance
+   */
+  public TabuSearch initSolution(MultiReplicas m) {
+    Replica[] replicas = m.getReplicasArray(true);
+    replicaNumber = replicas.length;
+    orders = new int[replicaNumber][];
+    for (int i = 0; i < replicaNumber; i++) orders[i] = replicas[i].getOrder().clone();
+    return this;
+  }
+
+  /*
+   * Run the algorithm
+   * 1. initialize a solution, and the cost matrix
+   * 2. loop [not converge]
+   * 3.  | evaluate all moves on all replicas
+   * 4.  | pick the least (penalized) cost move, which is not tabu or improves the global best
+   * 5.  | apply the move, forbid moving relocated columns back, count frequency
+   * 6.  | update global best
+   * 7. end loop
+   * 8. return the best solution
+   */
+  public MultiReplicas optimal() {
+    initialize();
+    int colNum = data.getColNum();
+    double curCost = cost(0, orders[0]);
+    double bestCost = curCost;
+    int[][] bestOrders = copy(orders);
+    costHistory.add(curCost);
+    runControl.offer(toMultiReplicas(bestOrders), bestCost, getName());
+    int noImprove = 0;
+    for (iteration = 0; iteration < maxIteration && noImprove < noImproveThreshold && !runControl.isStopped();
+         iteration++) {
+      Move bestMove = null;
+      double bestMoveCost = Double.POSITIVE_INFINITY;
+      double bestMoveScore = Double.POSITIVE_INFINITY;
+      for (int r = 0; r < replicaNumber; r++) {
+        for (Move move : getMoves(colNum)) {
+          move = move.onReplica(r);
+          int[] newOrder = move.apply(orders[r]);
+          double cost = evaluate(move, newOrder);
+          evaluationNumber++;
+          runControl.countEvaluation();
+          // aspiration: a tabu move leading to a new global best is allowed
+          if (isTabu(r, move, newOrder) && cost >= bestCost) continue;
+          double score = cost;
+          if (cost >= curCost)
+            score += frequencyPenalty * bestCost * getFrequency(r, move, newOrder) / (iteration + 1);
+          if (score < bestMoveScore) {
+            bestMove = move;
+            bestMoveScore = score;
+            bestMoveCost = cost;
+          }
+        }
+      }
+      if (bestMove == null) break; // all moves are tabu
+      applyMove(bestMove);
+      curCost = bestMoveCost;
+      if (curCost < bestCost) {
+        bestCost = curCost;
+        bestOrders = copy(orders);
+        noImprove = 0;
+        runControl.offer(toMultiReplicas(bestOrders), bestCost, getName());
+      } else {
+        noImprove++;
+      }
+      costHistory.add(curCost);
+    }
+
+    multiReplicas = toMultiReplicas(bestOrders);
+    if (objective != null) optimalCost = objective.cost(multiReplicas);
+    else optimalCost = isNewMethod
+            ? CostModel.cost(multiReplicas, queries)
+            : CostModel.totalCost(multiReplicas, queries);
+    return multiReplicas;
+  }
+
+  /**
+   * Initialize the solution if not given, the cost matrix and the memory.
+   */
+  void initialize() {
+    selectivityTable = new SelectivityTable(data, queries);
+    if (orders == null) initSolution(new DynamicProgramming(data, queries, selectivityTable).optimalReplica());
+    int colNum = data.getColNum();
+    costMatrix = new double[replicaNumber][];
+    firstRangePosition = new int[replicaNumber][];
+    for (int r = 0; r < replicaNumber; r++) evaluateReplica(r);
+    tabuUntil = new int[replicaNumber][colNum][colNum];
+    frequency = new int[replicaNumber][colNum][colNum];
+  }
+
+  /**
+   * Cost of the solution after a move, evaluated incrementally on the cost matrix. The solution is unchanged.
+   *
+   * @param move     the move, on a replica
+   * @param newOrder the order of the replica after the move
+   * @return the cost
+   */
+  double evaluate(Move move, int[] newOrder) {
+    int r = move.replica;
+    double[] oldRow = costMatrix[r];
+    costMatrix[r] = evaluateRow(r, newOrder, move.getLowestPosition());
+    double cost = cost(r, newOrder);
+    costMatrix[r] = oldRow;
+    return cost;
+  }
+
+  /**
+   * Cost of the solution with the order of a replica replaced, see CostModel.cost(Objective, ...).
+   */
+  private double cost(int r, int[] order) {
+    return CostModel.cost(objective, data, orders, r, order, costMatrix, isNewMethod);
+  }
+
+  /**
+   * Generate all moves on a replica: swap of two positions, insert a column before another, move a
+   * column to the end, and reverse a range of at least 3 columns.
+   *
+   * @param colNum number of columns
+   * @return a list of moves
+   */
+  List<Move> getMoves(int colNum) {
+    List<Move> moves = new ArrayList<>();
+    for (int i = 0; i < colNum; i++)
+      for (int j = i + 1; j < colNum; j++)
+        moves.add(new Move(Move.SWAP, i, j));
+    for (int i = 0; i < colNum; i++)
+      for (int j = 0; j < colNum; j++)
+        if (i != j && j != i + 1 && i != j + 1)
+          moves.add(new Move(Move.INSERT_BEFORE, i, j));
+    for (int i = 0; i < colNum - 2; i++)
+      moves.add(new Move(Move.INSERT_AFTER, i, colNum - 1));
+    for (int p = 0; p < colNum; p++)
+      for (int len = 3; p + len <= colNum; len++)
+        moves.add(new Move(Move.REVERSE, p, len));
+    return moves;
+  }
+
+  /**
+   * Evaluate cost of all queries on a replica, and the position of their first range column.
+   *
+   * @param r index of the replica
+   */
+  private void evaluateReplica(int r) {
+    costMatrix[r] = new double[queries.length];
+    firstRangePosition[r] = new int[queries.length];
+    for (int q = 0; q < queries.length; q++) {
+      costMatrix[r][q] = selectivityTable.cost(q, orders[r]);
+      firstRangePosition[r][q] = getFirstRangePosition(q, orders[r]);
+    }
+  }
+
+  /**
+   * Evaluate cost of all queries on a new order of a replica. Queries whose first range column is before the
+   * lowest changed position keep their cost.
+   *
+   * @param r              index of the replica
+   * @param newOrder       the new order
+   * @param lowestPosition the lowest position changed
+   * @return the cost of each query on the new order
+   */
+  private double[] evaluateRow(int r, int[] newOrder, int lowestPosition) {
+    double[] row = costMatrix[r].clone();
+    for (int q = 0; q < row.length; q++)
+      if (firstRangePosition[r][q] >= lowestPosition)
+        row[q] = selectivityTable.cost(q, newOrder);
+    return row;
+  }
+
+  private int getFirstRangePosition(int query, int[] order) {
+    for (int i = 0; i < order.length; i++)
+      if (selectivityTable.isRange(query, order[i])) return i;
+    return order.length;
+  }
+
+  /**
+   * Apply a move, and update the cost matrix and the memory. Relocated columns become tabu to go back to their
+   * old positions.
+   *
+   * @param move the move, on a replica
+   */
+  void applyMove(Move move) {
+    int r = move.replica;
+    int[] oldOrder = orders[r];
+    int[] newOrder = move.apply(oldOrder);
+    double[] row = evaluateRow(r, newOrder, move.getLowestPosition());
+    for (int col : move.getRelocatedColumns(oldOrder)) {
+      tabuUntil[r][col][indexOf(oldOrder, col)] = iteration + tenure;
+      frequency[r][col][indexOf(newOrder, col)]++;
+    }
+    orders[r] = newOrder;
+    costMatrix[r] = row;
+    for (int q = 0; q < queries.length; q++)
+      firstRangePosition[r][q] = getFirstRangePosition(q, newOrder);
+  }
+
+  private boolean isTabu(int r, Move move, int[] newOrder) {
+    for (int col : move.getRelocatedColumns(orders[r]))
+      if (tabuUntil[r][col][indexOf(newOrder, col)] > iteration) return true;
+    return false;
+  }
+
+  private int getFrequency(int r, Move move, int[] newOrder) {
+    int res = 0;
+    for (int col : move.getRelocatedColumns(orders[r]))
+      res += frequency[r][col][indexOf(newOrder, col)];
+    return res;
+  }
+
+  private static int indexOf(int[] order, int col) {
+    for (int i = 0; i < order.length; i++)
+      if (order[i] == col) return i;
+    throw new IllegalArgumentException();
+  }
+
+  private static int[][] copy(int[][] orders) {
+    int[][] res = new int[orders.length][];
+    for (int i = 0; i < res.length; i++) res[i] = orders[i].clone();
+    return res;
+  }
+
+  private MultiReplicas toMultiReplicas(int[][] orders) {
+    MultiReplicas m = new MultiReplicas();
+    for (int[] order : orders) m.add(new Replica(data, order));
+    return m;
+  }
+
+  @Override
+  public MultiReplicas getMultiReplicas() {
+    return multiReplicas;
+  }
+
+  /**
+   * Get the optimal cost after running algorithm
+   *
+   * @return the optimal cost
+   */
+  @Override
+  public double getOptimalCost() {
+    return optimalCost.doubleValue();
+  }
+
+  /**
+   * Get the record history of current cost, one for each iteration.
+   *
+   * @return the record history
+   */
+  @Override
+  public List<Double> getHistory() {
+    return costHistory;
+  }
+
+  /**
+   * Get the number of evaluated moves.
+   *
+   * @return the number of evaluations
+   */
+  public long getEvaluationNumber() {
+    return evaluationNumber;
+  }
+
+  /**
+   * A move of ArrayTransform on a replica.
+   */
+  static class Move {
+    static final int SWAP = 0;
+    static final int INSERT_BEFORE = 1;
+    static final int INSERT_AFTER = 2;
+    static final int REVERSE = 3;
+
+    private int type;
+    private int i;
+    private int j;
+    private int replica = -1;
+
+    Move(int type, int i, int j) {
+      this.type = type;
+      this.i = i;
+      this.j = j;
+    }
+
+    Move onReplica(int replica) {
+      Move move = new Move(type, i, j);
+      move.replica = replica;
+      return move;
+    }
+
+    int[] apply(int[] order) {
+      switch (type) {
+        case SWAP:
+          return ArrayTransform.swap(order, i, j);
+        case INSERT_BEFORE:
+          return ArrayTransform.insertBefore(order, i, j);
+        case INSERT_AFTER:
+          return ArrayTransform.insertAfter(order, i, j);
+        default:
+          return ArrayTransform.reverse(order, i, j);
+      }
+    }
+
+    /**
+     * The lowest position changed by the move
+     */
+    int getLowestPosition() {
+      return type == REVERSE ? i : Math.min(i, j);
+    }
+
+    /**
+     * Columns relocated by the move, which are the attributes of the move in tabu list. For a reverse, they
+     * are the columns at two ends.
+     */
+    int[] getRelocatedColumns(int[] order) {
+      switch (type) {
+        case SWAP:
+          return new int[]{order[i], order[j]};
+        case REVERSE:
+          return new int[]{order[i], order[i + j - 1]};
+        default:
+          return new int[]{order[i]};
+      }
+    }
+  }
+}
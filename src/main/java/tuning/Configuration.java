@@ -0,0 +1,36 @@
+package tuning;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Values of hyperparameters of an optimizer, by parameter name.
+ */
+public class Configuration {
+
+  private Map<String, Double> values;
+
+  Configuration(Map<String, Double> values) {
+    this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+  }
+
+  public double getDouble(String name) {
+    Double value = values.get(name);
+    if (value == null) throw new IllegalArgumentException("Unknown parameter: " + name);
+    return value;
+  }
+
+  public int getInt(String name) {
+    return (int) Math.round(getDouble(name));
+  }
+
+  public Map<String, Double> getValues() {
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return values.toString();
+  }
+}
@@ -0,0 +1,80 @@
+package tuning;
+
+import java.util.Random;
+
+/**
+ * A numeric hyperparameter of an optimizer, in a range [min, max]. It is sampled in a unit interval, mapped
+ * to the range linearly, or logarithmically for parameters spanning orders of magnitude, e.g. mutation rate.
+ * Integer parameters are rounded.
+ */
+public class Parameter {
+
+  private String name;
+  private double min;
+  private double max;
+  private boolean isInteger;
+  private boolean isLogScale;
+
+  private Parameter(String name, double min, double max, boolean isInteger, boolean isLogScale) {
+    if (min > max || (isLogScale && min <= 0)) throw new IllegalArgumentException();
+    this.name = name;
+    this.min = min;
+    this.max = max;
+    this.isInteger = isInteger;
+    this.isLogScale = isLogScale;
+  }
+
+  public static Parameter ofInt(String name, int min, int max) {
+    return new Parameter(name, min, max, true, false);
+  }
+
+  public static Parameter ofDouble(String name, double min, double max) {
+    return new Parameter(name, min, max, false, false);
+  }
+
+  public static Parameter ofLogDouble(String name, double min, double max) {
+    return new Parameter(name, min, max, false, true);
+  }
+
+  /**
+   * Sample a value uniformly in the unit interval.
+   *
+   * @param random the random number generator
+   * @return the value
+   */
+  double sample(Random random) {
+    return fromUnit(random.nextDouble());
+  }
+
+  /**
+   * Sample a value from a normal distribution around a value in the unit interval, truncated to the range.
+   *
+   * @param random the random number generator
+   * @param center the value at the center
+   * @param spread standard deviation in the unit interval
+   * @return the value
+   */
+  double sample(Random random, double center, double spread) {
+    double u = toUnit(center) + random.nextGaussian() * spread;
+    return fromUnit(Math.min(1, Math.max(0, u)));
+  }
+
+  private double toUnit(double value) {
+    if (max == min) return 0;
+    if (isLogScale) return Math.log(value / min) / Math.log(max / min);
+    return (value - min) / (max - min);
+  }
+
+  private double fromUnit(double u) {
+    double value = isLogScale ? min * Math.pow(max / min, u) : min + u * (max - min);
+    return isInteger ? Math.round(value) : value;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isInteger() {
+    return isInteger;
+  }
+}
@@ -0,0 +1,344 @@
+package tuning;
+
+import constant.Constant;
+import optimizer.Optimizer;
+import optimizer.RunControl;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tune hyperparameters of an optimizer by iterated racing, as in irace. Each iteration is a race: a set of
+ * configurations runs on a sequence of steps, each step being an instance of the workload class with a
+ * random seed, and all configurations alive run a step in parallel. After a minimum number of steps, the
+ * Friedman test checks if configurations differ, and if they do, configurations whose rank sum is worse
+ * than the best one by more than the critical difference are dropped. The best configurations of a race are
+ * the elites, kept for the next race, and new configurations of the next race are sampled around the elites,
+ * better ones more often, with a spread shrinking from race to race.
+ * A run is scored by quality per second: quality is the least cost of the step divided by the cost of the run,
+ * in (0, 1], and it is divided by the run time in seconds to a power, the time weight. The time weight is 1
+ * for quality per second, and 0 to score by quality only. Run times are measured while runs of a step share
+ * the processors, use a single thread for exact times.
+ */
+public class RacingTuner {
+
+  private TunableOptimizer target;
+
+  // parameters
+  private int iterationNumber;
+  private int configurationNumber;
+  private int eliteNumber;
+  private int stepNumber;
+  private int minStepNumber;
+  private double confidenceZ;
+  private double timeWeight = 1;
+  private long runTimeLimit;
+  private int threadNumber = Runtime.getRuntime().availableProcessors();
+  private Random random = new Random();
+
+  /**
+   * Constructor, using constant values in Constant class
+   *
+   * @param target the optimizer to tune
+   */
+  public RacingTuner(TunableOptimizer target) {
+    this.target = target;
+    this.iterationNumber = Constant.TUNING_ITERATION_NUMBER;
+    this.configurationNumber = Constant.TUNING_CONFIGURATION_NUMBER;
+    this.eliteNumber = Constant.TUNING_ELITE_NUMBER;
+    this.stepNumber = Constant.TUNING_STEP_NUMBER;
+    this.minStepNumber = Constant.TUNING_MIN_STEP_NUMBER;
+    this.confidenceZ = Constant.TUNING_CONFIDENCE_Z;
+    this.runTimeLimit = Constant.TUNING_RUN_TIME_LIMIT;
+  }
+
+  public RacingTuner withIterationNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.iterationNumber = n;
+    return this;
+  }
+
+  /**
+   * Set the number of configurations in a race, elites included
+   *
+   * @param n number of configurations
+   * @return the tuner
+   */
+  public RacingTuner withConfigurationNumber(int n) {
+    if (n <= 1) throw new IllegalArgumentException();
+    this.configurationNumber = n;
+    return this;
+  }
+
+  public RacingTuner withEliteNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.eliteNumber = n;
+    return this;
+  }
+
+  /**
+   * Set the number of steps of a race, and the number of steps before configurations are dropped
+   *
+   * @param stepNumber    number of steps
+   * @param minStepNumber number of steps before the first test
+   * @return the tuner
+   */
+  public RacingTuner withStepNumber(int stepNumber, int minStepNumber) {
+    if (minStepNumber <= 1 || stepNumber < minStepNumber) throw new IllegalArgumentException();
+    this.stepNumber = stepNumber;
+    this.minStepNumber = minStepNumber;
+    return this;
+  }
+
+  /**
+   * Set the z-value of tests, e.g. 1.645 for 95% confidence
+   *
+   * @param z the z-value
+   * @return the tuner
+   */
+  public RacingTuner withConfidenceZ(double z) {
+    if (z < 0) throw new IllegalArgumentException();
+    this.confidenceZ = z;
+    return this;
+  }
+
+  /**
+   * Set the power of run time in the score, 1 for quality per second, 0 for quality only
+   *
+   * @param timeWeight the power of run time
+   * @return the tuner
+   */
+  public RacingTuner withTimeWeight(double timeWeight) {
+    if (timeWeight < 0) throw new IllegalArgumentException();
+    this.timeWeight = timeWeight;
+    return this;
+  }
+
+  /**
+   * Set the time limit of a run, a run reaching it is stopped and scored with its best design
+   *
+   * @param millis time limit in milliseconds
+   * @return the tuner
+   */
+  public RacingTuner withRunTimeLimit(long millis) {
+    if (millis <= 0) throw new IllegalArgumentException();
+    this.runTimeLimit = millis;
+    return this;
+  }
+
+  public RacingTuner withThreadNumber(int n) {
+    if (n <= 0) throw new IllegalArgumentException();
+    this.threadNumber = n;
+    return this;
+  }
+
+  public RacingTuner withRandomSeed(long seed) {
+    this.random = new Random(seed);
+    return this;
+  }
+
+  /**
+   * Tune for each workload class
+   *
+   * @param classes instances of each workload class, by class name
+   * @return the best configuration of each workload class, by class name
+   */
+  public Map<String, Result> tune(Map<String, List<TuningInstance>> classes) {
+    Map<String, Result> res = new LinkedHashMap<>();
+    for (Map.Entry<String, List<TuningInstance>> e : classes.entrySet())
+      res.put(e.getKey(), tune(e.getValue()));
+    return res;
+  }
+
+  /*
+   * Tune for a workload class
+   * 1. sample configurations uniformly
+   * 2. for each iteration
+   * 3.  | race the configurations, keep the best ones as elites
+   * 4.  | sample new configurations around elites, with a smaller spread
+   * 5. end for
+   * 6. return the best elite
+   */
+  public Result tune(List<TuningInstance> instances) {
+    if (instances.isEmpty()) throw new IllegalArgumentException();
+    List<Configuration> configurations = new ArrayList<>();
+    for (int i = 0; i < configurationNumber; i++) configurations.add(target.sample(random));
+    List<Result> elites = null;
+    double spread = 0.3;
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadNumber);
+    try {
+      for (int it = 0; it < iterationNumber; it++) {
+        elites = race(configurations, instances, threadPool);
+        configurations = new ArrayList<>();
+        for (Result elite : elites) configurations.add(elite.configuration);
+        while (configurations.size() < configurationNumber)
+          configurations.add(target.sample(pickElite(elites).configuration, spread, random));
+        spread *= 0.6;
+      }
+    } finally {
+      threadPool.shutdown();
+    }
+    return elites.get(0);
+  }
+
+  /**
+   * Pick an elite, the i-th best one with weight proportional to (number of elites - i).
+   */
+  private Result pickElite(List<Result> elites) {
+    int n = elites.size();
+    int x = random.nextInt(n * (n + 1) / 2);
+    for (int i = 0; i < n; i++) {
+      x -= n - i;
+      if (x < 0) return elites.get(i);
+    }
+    return elites.get(0);
+  }
+
+  /*
+   * Race configurations
+   * 1. for each step
+   * 2.  | run configurations alive on the instance and seed of the step, in parallel
+   * 3.  | score runs of the step by quality per second
+   * 4.  | if [enough steps and more than one configuration alive]
+   * 5.  |  | drop configurations worse than the best one, if the Friedman test is significant
+   * 6.  | end if
+   * 7. end for
+   * 8. return configurations alive, sorted by rank sum, at most elite number of them
+   */
+  private List<Result> race(List<Configuration> configurations, List<TuningInstance> instances,
+                            ExecutorService threadPool) {
+    List<Result> alive = new ArrayList<>();
+    for (Configuration c : configurations) alive.add(new Result(c));
+    List<TuningInstance> order = new ArrayList<>(instances);
+    Collections.shuffle(order, random);
+    for (int step = 0; step < stepNumber && alive.size() > 1; step++) {
+      TuningInstance instance = order.get(step % order.size());
+      long seed = random.nextLong();
+      List<Callable<double[]>> tasks = new ArrayList<>();
+      for (Result r : alive) tasks.add(() -> run(r.configuration, instance, seed));
+      double[][] runs = new double[alive.size()][];
+      try {
+        List<Future<double[]>> futures = threadPool.invokeAll(tasks);
+        for (int i = 0; i < runs.length; i++) runs[i] = futures.get(i).get();
+      } catch (InterruptedException | ExecutionException e) {
+        throw new RuntimeException(e);
+      }
+      double leastCost = Double.POSITIVE_INFINITY;
+      for (double[] run : runs) leastCost = Math.min(leastCost, run[0]);
+      double[] scores = new double[runs.length];
+      for (int i = 0; i < runs.length; i++) {
+        double quality = Double.isInfinite(runs[i][0]) ? 0 : leastCost / runs[i][0];
+        scores[i] = quality / Math.pow(Math.max(runs[i][1], 1) / 1000.0, timeWeight);
+        alive.get(i).add(quality, runs[i][1], scores[i]);
+      }
+      // ranks of this step, 1 for the greatest score, ties share the average rank
+      Integer[] idx = new Integer[scores.length];
+      for (int i = 0; i < idx.length; i++) idx[i] = i;
+      Arrays.sort(idx, (a, b) -> Double.compare(scores[b], scores[a]));
+      for (int i = 0; i < idx.length; ) {
+        int j = i;
+        while (j + 1 < idx.length && scores[idx[j + 1]] == scores[idx[i]]) j++;
+        for (int p = i; p <= j; p++) alive.get(idx[p]).rankSum += (i + j) / 2.0 + 1;
+        i = j + 1;
+      }
+      if (step + 1 >= minStepNumber) alive = drop(alive, step + 1);
+    }
+    alive.sort(Comparator.comparingDouble(r -> r.rankSum));
+    return new ArrayList<>(alive.subList(0, Math.min(eliteNumber, alive.size())));
+  }
+
+  /**
+   * Drop configurations by the Friedman test and its post-hoc test on rank sums. The Friedman statistic is
+   * compared with the chi-square quantile by the Wilson-Hilferty approximation. A configuration is dropped
+   * if its rank sum exceeds the least one by z * sqrt(n * k * (k + 1) / 6), for n steps and k configurations.
+   *
+   * @param alive configurations alive, with rank sums over the steps
+   * @param n     number of steps
+   * @return configurations not dropped
+   */
+  private List<Result> drop(List<Result> alive, int n) {
+    int k = alive.size();
+    double sum = 0;
+    double least = Double.POSITIVE_INFINITY;
+    for (Result r : alive) {
+      sum += r.rankSum * r.rankSum;
+      least = Math.min(least, r.rankSum);
+    }
+    double statistic = 12.0 / (n * k * (k + 1)) * sum - 3.0 * n * (k + 1);
+    int df = k - 1;
+    double quantile = df * Math.pow(1 - 2.0 / (9 * df) + confidenceZ * Math.sqrt(2.0 / (9 * df)), 3);
+    if (statistic <= quantile) return alive;
+    double criticalDifference = confidenceZ * Math.sqrt(n * k * (k + 1) / 6.0);
+    List<Result> res = new ArrayList<>();
+    for (Result r : alive)
+      if (r.rankSum - least <= criticalDifference) res.add(r);
+    return res;
+  }
+
+  /**
+   * Run a configuration on an instance.
+   *
+   * @return cost of the best design, infinity if the run fails, and run time in milliseconds
+   */
+  private double[] run(Configuration configuration, TuningInstance instance, long seed) {
+    long start = System.currentTimeMillis();
+    try {
+      Optimizer optimizer = target.create(configuration, instance, seed)
+              .withRunControl(new RunControl().withTimeLimit(runTimeLimit));
+      optimizer.optimal();
+      return new double[]{optimizer.getOptimalCost(), System.currentTimeMillis() - start};
+    } catch (Exception e) {
+      return new double[]{Double.POSITIVE_INFINITY, System.currentTimeMillis() - start};
+    }
+  }
+
+  /**
+   * A configuration and its statistics over the steps of its last race: the sum of ranks, and mean quality,
+   * run time and score.
+   */
+  public static class Result {
+    private Configuration configuration;
+    private double rankSum = 0;
+    private int runNumber = 0;
+    private double qualitySum = 0;
+    private double timeSum = 0;
+    private double scoreSum = 0;
+
+    Result(Configuration configuration) {
+      this.configuration = configuration;
+    }
+
+    private void add(double quality, double time, double score) {
+      runNumber++;
+      qualitySum += quality;
+      timeSum += time;
+      scoreSum += score;
+    }
+
+    public Configuration getConfiguration() {
+      return configuration;
+    }
+
+    public int getRunNumber() {
+      return runNumber;
+    }
+
+    public double getMeanQuality() {
+      return qualitySum / runNumber;
+    }
+
+    public double getMeanTime() {
+      return timeSum / runNumber;
+    }
+
+    public double getMeanScore() {
+      return scoreSum / runNumber;
+    }
+
+    @Override
+    public String toString() {
+      return configuration + "{quality:" + getMeanQuality() + "||time:" + getMeanTime() + "ms||score:"
+              + getMeanScore() + "||runs:" + runNumber + "}";
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package tuning;
+
+import constant.Constant;
+import genetic.Genetic;
+import heterogeneous.SimulateAnneal;
+import optimizer.Optimizer;
+import rita.Rita;
+
+import java.util.*;
+
+/**
+ * An optimizer to tune: its hyperparameters, and how to create it with a configuration on an instance.
+ * Ranges of the predefined optimizers are around the defaults in Constant class.
+ */
+public class TunableOptimizer {
+
+  /**
+   * Create an optimizer with a configuration on an instance. Optimizers taking a random seed should use
+   * it, so that configurations raced on the same instance and seed see the same random numbers.
+   */
+  public interface Factory {
+    Optimizer create(Configuration configuration, TuningInstance instance, long seed);
+  }
+
+  public static final TunableOptimizer SIMULATE_ANNEAL = new TunableOptimizer("SimulateAnneal",
+          Arrays.asList(
+                  Parameter.ofDouble("temperatureDecreaseRate", 0.3, 0.95),
+                  Parameter.ofInt("optimalCountThreshold", 5, 120),
+                  Parameter.ofInt("localIterationNumber", 5, 100),
+                  Parameter.ofDouble("temperatureInitSeed", 0.5, 0.99)),
+          (c, instance, seed) -> new SimulateAnneal(instance.getDataTable(), instance.getQueries(),
+                  instance.getReplicaNumber(), Constant.IS_NEW_METHOD)
+                  .withTemperatureDecreaseRate(c.getDouble("temperatureDecreaseRate"))
+                  .withOptimalCountThreshold(c.getInt("optimalCountThreshold"))
+                  .withLocalIterationNumber(c.getInt("localIterationNumber"))
+                  .withTemperatureInitSeed(c.getDouble("temperatureInitSeed"))
+                  .withRandomSeed(seed));
+
+  public static final TunableOptimizer GENETIC = new TunableOptimizer("Genetic",
+          Arrays.asList(
+                  Parameter.ofInt("populationSize", 20, 200),
+                  Parameter.ofInt("maxIteration", 50, 2000),
+                  Parameter.ofDouble("crossoverRate", 0.1, 0.9),
+                  Parameter.ofLogDouble("mutationRate", 0.0001, 0.1)),
+          (c, instance, seed) -> new Genetic(instance.getDataTable(), instance.getQueries())
+                  .withReplicaNumber(instance.getReplicaNumber())
+                  .withPopulationSize(c.getInt("populationSize"))
+                  .withMinIteration(Math.min(Constant.GA_MIN_ITERATION, c.getInt("maxIteration")))
+                  .withMaxIteration(c.getInt("maxIteration"))
+                  .withCrossoverRate(c.getDouble("crossoverRate"))
+                  .withMutationRate(c.getDouble("mutationRate"))
+                  .withRandomSeed(seed));
+
+  public static final TunableOptimizer RITA = new TunableOptimizer("Rita",
+          Arrays.asList(
+                  Parameter.ofDouble("temperatureDecreaseRate", 0.3, 0.95),
+                  Parameter.ofInt("optimalCountThreshold", 5, 120),
+                  Parameter.ofInt("localIterationNumber", 5, 100),
+                  Parameter.ofDouble("temperatureInitSeed", 0.5, 0.99)),
+          (c, instance, seed) -> new Rita(instance.getDataTable(), instance.getQueries())
+                  .withReplicaNumber(instance.getReplicaNumber())
+                  .withTemperatureDecreaseRate(c.getDouble("temperatureDecreaseRate"))
+                  .withOptimalCountThreshold(c.getInt("optimalCountThreshold"))
+                  .withLocalIterationNumber(c.getInt("localIterationNumber"))
+                  .withTemperatureInitSeed(c.getDouble("temperatureInitSeed"))
+                  .withRandomSeed(seed));
+
+  private String name;
+  private List<Parameter> parameters;
+  private Factory factory;
+
+  public TunableOptimizer(String name, List<Parameter> parameters, Factory factory) {
+    this.name = name;
+    this.parameters = new ArrayList<>(parameters);
+    this.factory = factory;
+  }
+
+  /**
+   * Sample a configuration uniformly.
+   *
+   * @param random the random number generator
+   * @return the configuration
+   */
+  Configuration sample(Random random) {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (Parameter p : parameters) values.put(p.getName(), p.sample(random));
+    return new Configuration(values);
+  }
+
+  /**
+   * Sample a configuration around a parent configuration.
+   *
+   * @param parent the parent configuration
+   * @param spread standard deviation of each parameter in the unit interval
+   * @param random the random number generator
+   * @return the configuration
+   */
+  Configuration sample(Configuration parent, double spread, Random random) {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (Parameter p : parameters) values.put(p.getName(), p.sample(random, parent.getDouble(p.getName()), spread));
+    return new Configuration(values);
+  }
+
+  Optimizer create(Configuration configuration, TuningInstance instance, long seed) {
+    return factory.create(configuration, instance, seed);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<Parameter> getParameters() {
+    return parameters;
+  }
+}
@@ -0,0 +1,40 @@
+package tuning;
+
+import datamodel.DataTable;
+import query.Query;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.*;
+
+public class TuningDemo {
+  static Query[] getQueries(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("queries_" + colNums));
+    return (Query[]) ois.readObject();
+  }
+
+  static DataTable getDataTable(int colNums) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new FileInputStream("data_table_" + colNums));
+    return (DataTable) ois.readObject();
+  }
+
+  public static void main(String args[]) throws IOException, ClassNotFoundException {
+    // a workload class for each table, with instances of different replica numbers
+    Map<String, List<TuningInstance>> classes = new LinkedHashMap<>();
+    for (int colNums : new int[]{7, 9}) {
+      DataTable dataTable = getDataTable(colNums);
+      Query[] queries = getQueries(colNums);
+      List<TuningInstance> instances = new ArrayList<>();
+      for (int replicaNumber = 2; replicaNumber <= 5; replicaNumber++)
+        instances.add(new TuningInstance(dataTable, queries, replicaNumber));
+      classes.put("columns_" + colNums, instances);
+    }
+    for (TunableOptimizer target : Arrays.asList(TunableOptimizer.SIMULATE_ANNEAL, TunableOptimizer.GENETIC,
+            TunableOptimizer.RITA)) {
+      Map<String, RacingTuner.Result> results = new RacingTuner(target).withRunTimeLimit(30000).tune(classes);
+      for (Map.Entry<String, RacingTuner.Result> e : results.entrySet())
+        System.out.println(target.getName() + " " + e.getKey() + ": " + e.getValue());
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package tuning;
+
+import datamodel.DataTable;
+import query.Query;
+
+/**
+ * A problem instance to tune on: a data table, a workload, and the number of replicas.
+ */
+public class TuningInstance {
+
+  private DataTable dataTable;
+  private Query[] queries;
+  private int replicaNumber;
+
+  public TuningInstance(DataTable dataTable, Query[] queries, int replicaNumber) {
+    this.dataTable = dataTable;
+    this.queries = queries;
+    this.replicaNumber = replicaNumber;
+  }
+
+  public DataTable getDataTable() {
+    return dataTable;
+  }
+
+  public Query[] getQueries() {
+    return queries;
+  }
+
+  public int getReplicaNumber() {
+    return replicaNumber;
+  }
+}
@@ -0,0 +1,74 @@
+package cost;
+
+import org.junit.Test;
+import replica.DesignKey;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestDesignCache {
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    DesignCache<Double> cache = new DesignCache<>(2, 1000, 0.01);
+    DesignKey k1 = key(0, 1, 2, 3);
+    DesignKey k2 = key(1, 0, 2, 3);
+    DesignKey k3 = key(2, 1, 0, 3);
+    cache.put(k1, 1.0);
+    cache.put(k2, 2.0);
+    // k1 is used after k2, so k2 is the least recently used when k3 is put
+    assertEquals(1.0, cache.get(k1), 0);
+    cache.put(k3, 3.0);
+    assertEquals(2, cache.size());
+    assertNull(cache.get(k2));
+    assertEquals(1.0, cache.get(k1), 0);
+    assertEquals(3.0, cache.get(k3), 0);
+    assertEquals(3, cache.getHitNumber());
+    assertEquals(1, cache.getMissNumber());
+    // an evicted strategy is still known to be visited
+    assertTrue(cache.isVisited(k2));
+  }
+
+  @Test
+  public void testVisitedFilterHasNoFalseNegative() {
+    // far more strategies than the filter is sized for, and a cache of one
+    DesignCache<Double> cache = new DesignCache<>(1, 100, 0.01);
+    List<DesignKey> keys = keys(10000, 1);
+    for (DesignKey key : keys) cache.put(key, 0.0);
+    for (DesignKey key : keys) assertTrue(cache.isVisited(key));
+  }
+
+  @Test
+  public void testVisitedFilterFalsePositiveRate() {
+    DesignCache<Double> cache = new DesignCache<>(1, 2000, 0.01);
+    List<DesignKey> keys = keys(12000, 2);
+    for (DesignKey key : keys.subList(0, 2000)) cache.put(key, 0.0);
+    int falsePositive = 0;
+    for (DesignKey key : keys.subList(2000, keys.size())) if (cache.isVisited(key)) falsePositive++;
+    assertTrue("false positives: " + falsePositive, falsePositive < 10000 * 0.03);
+  }
+
+  private static DesignKey key(int... order) {
+    return DesignKey.of(new int[][]{order});
+  }
+
+  /**
+   * Distinct keys of random strategies of two replicas of 12 columns
+   */
+  private static List<DesignKey> keys(int number, long seed) {
+    Random random = new Random(seed);
+    Set<DesignKey> keys = new LinkedHashSet<>();
+    while (keys.size() < number) keys.add(DesignKey.of(new int[][]{permutation(12, random), permutation(12, random)}));
+    return new ArrayList<>(keys);
+  }
+
+  private static int[] permutation(int n, Random random) {
+    List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) list.add(i);
+    Collections.shuffle(list, random);
+    int[] res = new int[n];
+    for (int i = 0; i < n; i++) res[i] = list.get(i);
+    return res;
+  }
+}
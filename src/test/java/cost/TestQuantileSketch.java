@@ -0,0 +1,76 @@
+package cost;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestQuantileSketch {
+
+  @Test
+  public void testRelativeErrorBound() {
+    for (double accuracy : new double[]{0.01, 0.05, 0.2}) {
+      Random random = new Random(1);
+      int n = 10000;
+      double[][] points = new double[n][];
+      QuantileSketch sketch = new QuantileSketch(accuracy);
+      for (int i = 0; i < n; i++) {
+        // values over 12 orders of magnitude, and weights of queries
+        double value = Math.pow(10, -3 + 12 * random.nextDouble());
+        double weight = random.nextInt(5);
+        points[i] = new double[]{value, weight};
+        sketch.add(value, weight);
+      }
+      Arrays.sort(points, Comparator.comparingDouble(p -> p[0]));
+      for (double quantile = 0.01; quantile <= 1; quantile += 0.01) {
+        double exact = exactQuantile(points, quantile);
+        double estimate = sketch.quantile(quantile);
+        assertTrue(accuracy + " p" + quantile + ": " + estimate + " vs " + exact,
+                Math.abs(estimate - exact) <= accuracy * exact * (1 + 1e-9));
+      }
+    }
+  }
+
+  @Test
+  public void testZerosAndEmptySketch() {
+    QuantileSketch sketch = new QuantileSketch(0.01);
+    assertEquals(0, sketch.quantile(0.5), 0);
+    sketch.add(0, 3);
+    sketch.add(100, 1);
+    assertEquals(4, sketch.getTotalWeight(), 0);
+    assertEquals(0, sketch.quantile(0.75), 0);
+    assertEquals(100, sketch.quantile(0.76), 100 * 0.01);
+    assertEquals(100, sketch.quantile(1), 100 * 0.01);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeValue() {
+    new QuantileSketch(0.01).add(-1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAccuracyOutOfRange() {
+    new QuantileSketch(1);
+  }
+
+  /**
+   * The least value v such that values not greater than v weigh at least quantile * total weight
+   *
+   * @param points   values and their weights, sorted by value
+   * @param quantile the quantile
+   * @return the exact quantile
+   */
+  private static double exactQuantile(double[][] points, double quantile) {
+    double total = 0;
+    for (double[] p : points) total += p[1];
+    double cumulative = 0;
+    for (double[] p : points) {
+      cumulative += p[1];
+      if (cumulative >= quantile * total && p[1] > 0) return p[0];
+    }
+    throw new IllegalStateException();
+  }
+}
@@ -0,0 +1,109 @@
+package cost;
+
+import constant.Constant;
+import datamodel.DataTable;
+import datamodel.RandomWorkload;
+import org.junit.Test;
+import query.MiniQuery;
+import query.Query;
+import query.RangeQuery;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import static org.junit.Assert.*;
+
+public class TestQueueingObjective {
+
+  private static final double DELTA = 1e-9;
+
+  private DataTable dataTable = RandomWorkload.dataTable(3, 1000, 1);
+  // queries scanning the whole table, the same cost on every order
+  private Query[] queries = fullScans(dataTable, 10);
+  // rows a server scans per second so that a query takes 1 second, mu = 1
+  private double scanRate = new SelectivityTable(dataTable, queries).cost(new int[]{0, 1, 2})[0]
+          / Constant.COST_SCALE.doubleValue();
+
+  @Test
+  public void testMeanOfSingleServer() {
+    // M/M/1: T = 1 / (mu - lambda)
+    assertEquals(1 / (1 - 0.5), mean(0.5, 1, 1), DELTA);
+    assertEquals(1 / (1 - 0.9), mean(0.9, 1, 1), DELTA);
+  }
+
+  @Test
+  public void testMeanOfErlangC() {
+    // M/M/2, a = 0.5: C = 0.1, T = C / (2 mu - lambda) + 1 / mu
+    assertEquals(0.1 / 1.5 + 1, mean(0.5, 2, 1), DELTA);
+    // M/M/2, a = 1: C = 1 / 3
+    assertEquals(1.0 / 3 + 1, mean(1, 2, 1), DELTA);
+    // M/M/3, a = 2: C = 4 / 9
+    assertEquals(4.0 / 9 + 1, mean(2, 3, 1), DELTA);
+  }
+
+  @Test
+  public void testQuantileOfSingleServer() {
+    // M/M/1: P(T > t) = exp(-(mu - lambda) t)
+    assertEquals(Math.log(100) / (1 - 0.5), quantile(0.5, 1, 0.99), 1e-6);
+    assertEquals(Math.log(10) / (1 - 0.8), quantile(0.8, 1, 0.9), 1e-6);
+  }
+
+  @Test
+  public void testQuantileOfErlangC() {
+    // M/M/2, a = 0.5: P(T > t) = 0.9 exp(-t) + 0.1 (1.5 exp(-t) - exp(-1.5 t)) / 0.5
+    double t = quantile(0.5, 2, 0.99);
+    assertEquals(0.01, 1.2 * Math.exp(-t) - 0.2 * Math.exp(-1.5 * t), 1e-9);
+    // M/M/2, a = 1, the wait is as fast as service: P(T > t) = 2 / 3 exp(-t) + 1 / 3 (1 + t) exp(-t)
+    t = quantile(1, 2, 0.99);
+    assertEquals(0.01, Math.exp(-t) * (1 + t / 3), 1e-9);
+  }
+
+  @Test
+  public void testTiesAreSplit() {
+    // two identical replicas, each an M/M/1 of half the arrival rate
+    MultiReplicas m = new MultiReplicas()
+            .add(new Replica(dataTable, new int[]{0, 1, 2}))
+            .add(new Replica(dataTable, new int[]{0, 1, 2}));
+    QueueingObjective objective = new QueueingObjective(dataTable, queries, 1.6, 1).withScanRate(scanRate);
+    assertEquals(1 / (1 - 0.8), objective.cost(m).doubleValue(), DELTA);
+  }
+
+  @Test
+  public void testSaturationPenalty() {
+    // utilization 2 is capped, latency at the cap times utilization / cap
+    double cap = Constant.QUEUEING_MAX_UTILIZATION;
+    assertEquals(1 / (1 - cap) * 2 / cap, mean(2, 1, 1), 1e-6);
+  }
+
+  private double mean(double arrivalRate, int serverNumber, int replicaNumber) {
+    return new QueueingObjective(dataTable, queries, arrivalRate, serverNumber)
+            .withScanRate(scanRate)
+            .cost(strategy(replicaNumber))
+            .doubleValue();
+  }
+
+  private double quantile(double arrivalRate, int serverNumber, double quantile) {
+    return new QueueingObjective(dataTable, queries, arrivalRate, serverNumber)
+            .withScanRate(scanRate)
+            .withQuantile(quantile)
+            .cost(strategy(1))
+            .doubleValue();
+  }
+
+  private MultiReplicas strategy(int replicaNumber) {
+    MultiReplicas m = new MultiReplicas();
+    for (int i = 0; i < replicaNumber; i++) m.add(new Replica(dataTable, new int[]{0, 1, 2}));
+    return m;
+  }
+
+  private static Query[] fullScans(DataTable dataTable, int queryNum) {
+    Query[] queries = new Query[queryNum];
+    for (int q = 0; q < queryNum; q++) {
+      MiniQuery[] miniQueries = new MiniQuery[dataTable.getColNum()];
+      for (int c = 0; c < miniQueries.length; c++)
+        miniQueries[c] = new RangeQuery(dataTable.getColHistograms()[c].getMinX(),
+                dataTable.getColHistograms()[c].getMaxX());
+      queries[q] = new Query(miniQueries, 1);
+    }
+    return queries;
+  }
+}
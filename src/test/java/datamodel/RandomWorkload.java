@@ -0,0 +1,67 @@
+package datamodel;
+
+import query.MiniQuery;
+import query.PointQuery;
+import query.Query;
+import query.RangeQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random data tables and workloads of a seed, for tests.
+ */
+public class RandomWorkload {
+
+  private RandomWorkload() {
+  }
+
+  /**
+   * A table of columns of uniform integer values, of a random number of distinct values each
+   *
+   * @param colNum number of columns
+   * @param rowNum number of rows
+   * @param seed   seed of the random number generator
+   * @return the table
+   */
+  public static DataTable dataTable(int colNum, int rowNum, long seed) {
+    Random random = new Random(seed);
+    Histogram[] histograms = new Histogram[colNum];
+    for (int c = 0; c < colNum; c++) {
+      int distinctNum = 5 + random.nextInt(200);
+      List<Double> values = new ArrayList<>();
+      for (int i = 0; i < rowNum; i++) values.add((double) random.nextInt(distinctNum));
+      histograms[c] = new Histogram(values, 20);
+    }
+    return new DataTable(histograms);
+  }
+
+  /**
+   * A workload of queries with a point or a range on each column, half of each, of weight 1
+   *
+   * @param dataTable the table
+   * @param queryNum  number of queries
+   * @param seed      seed of the random number generator
+   * @return the workload
+   */
+  public static Query[] queries(DataTable dataTable, int queryNum, long seed) {
+    Random random = new Random(seed);
+    Query[] queries = new Query[queryNum];
+    for (int q = 0; q < queryNum; q++) {
+      MiniQuery[] miniQueries = new MiniQuery[dataTable.getColNum()];
+      for (int c = 0; c < miniQueries.length; c++) {
+        double min = dataTable.getColHistograms()[c].getMinX();
+        double max = dataTable.getColHistograms()[c].getMaxX();
+        if (random.nextBoolean()) {
+          miniQueries[c] = new PointQuery(Math.floor(min + random.nextDouble() * (max - 1 - min)));
+        } else {
+          double lowerBound = min + random.nextDouble() * (max - min) / 2;
+          miniQueries[c] = new RangeQuery(lowerBound, lowerBound + (max - lowerBound) * random.nextDouble() + 1);
+        }
+      }
+      queries[q] = new Query(miniQueries, 1);
+    }
+    return queries;
+  }
+}
@@ -0,0 +1,56 @@
+package heterogeneous;
+
+import datamodel.DataTable;
+import datamodel.RandomWorkload;
+import optimizer.RunControl;
+import org.junit.Test;
+import query.Query;
+import replica.MultiReplicas;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestSimulateAnnealCheckpoint {
+
+  private DataTable dataTable = RandomWorkload.dataTable(7, 2000, 1);
+  private Query[] queries = RandomWorkload.queries(dataTable, 100, 2);
+
+  @Test
+  public void testResumeEqualsUninterruptedRun() throws Exception {
+    SimulateAnneal full = simulateAnneal().withRandomSeed(7);
+    MultiReplicas expected = full.optimal();
+    List<Double> history = full.getHistory();
+
+    for (int budget : new int[]{1, 37, 137}) {
+      File file = File.createTempFile("simulateanneal", ".checkpoint");
+      try {
+        // stopped by the evaluation budget, the final checkpoint is written when it returns
+        simulateAnneal().withRandomSeed(7)
+                .withCheckpoint(file.getPath(), 0)
+                .withRunControl(new RunControl().withEvaluationBudget(budget))
+                .optimal();
+        SimulateAnneal resumed = simulateAnneal().resume(file.getPath());
+        MultiReplicas actual = resumed.optimal();
+
+        assertEquals("budget " + budget, expected, actual);
+        assertEquals(full.getOptimalCost(), resumed.getOptimalCost(), 0);
+        // the resumed trace is the tail of the uninterrupted one
+        List<Double> tail = resumed.getHistory();
+        assertEquals(history.subList(history.size() - tail.size() + 1, history.size()), tail.subList(1, tail.size()));
+      } finally {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Parameters are not a part of the checkpoint, so every run is set up the same
+   */
+  private SimulateAnneal simulateAnneal() {
+    return new SimulateAnneal(dataTable, queries, 3, true)
+            .withLocalIterationNumber(50)
+            .withOptimalCountThreshold(5);
+  }
+}
@@ -0,0 +1,101 @@
+package replica;
+
+import datamodel.DataTable;
+import datamodel.Histogram;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestDesignKey {
+
+  @Test
+  public void testLehmerRankOfTwentyColumns() {
+    int n = 20;
+    int[] identity = new int[n];
+    int[] reverse = new int[n];
+    for (int i = 0; i < n; i++) {
+      identity[i] = i;
+      reverse[i] = n - 1 - i;
+    }
+    // the first and the last permutation in lexicographic order, the last one is 20! - 1
+    long factorial = 1;
+    for (int i = 2; i <= n; i++) factorial *= i;
+    assertArrayEquals(new long[]{0}, DesignKey.rank(identity));
+    assertArrayEquals(new long[]{factorial - 1}, DesignKey.rank(reverse));
+
+    // swapping the last two columns is the next permutation, swapping the first two skips 19! of them
+    int[] order = identity.clone();
+    order[n - 2] = n - 1;
+    order[n - 1] = n - 2;
+    assertArrayEquals(new long[]{1}, DesignKey.rank(order));
+    order = identity.clone();
+    order[0] = 1;
+    order[1] = 0;
+    assertArrayEquals(new long[]{factorial / n}, DesignKey.rank(order));
+  }
+
+  @Test
+  public void testPackedRankBeyondTwentyColumns() {
+    int n = 21;
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) order[i] = n - 1 - i;
+    // a byte for each column, 8 columns in a long
+    long[] rank = DesignKey.rank(order);
+    assertEquals(3, rank.length);
+    for (int i = 0; i < n; i++) assertEquals(order[i], (rank[i / 8] >>> (8 * (i % 8))) & 0xFF);
+
+    int[] swapped = order.clone();
+    swapped[n - 2] = order[n - 1];
+    swapped[n - 1] = order[n - 2];
+    assertNotEquals(DesignKey.of(new int[][]{order}), DesignKey.of(new int[][]{swapped}));
+    assertEquals(DesignKey.of(new int[][]{order}), DesignKey.of(new int[][]{order.clone()}));
+  }
+
+  @Test
+  public void testPermutationsOfReplicasShareAKey() {
+    int[] a = {0, 1, 2, 3, 4};
+    int[] b = {4, 3, 2, 1, 0};
+    int[] c = {2, 0, 4, 1, 3};
+    DesignKey key = DesignKey.of(new int[][]{a, b, c});
+    assertEquals(key, DesignKey.of(new int[][]{c, a, b}));
+    assertEquals(key, DesignKey.of(new int[][]{b, c, a}));
+    assertEquals(key.hashCode(), DesignKey.of(new int[][]{b, a, c}).hashCode());
+    assertEquals(key.longHash(), DesignKey.of(new int[][]{b, a, c}).longHash());
+
+    // the same key from a multi-replica strategy, whatever the order replicas are added
+    DataTable dataTable = dataTable(5);
+    MultiReplicas m = new MultiReplicas()
+            .add(new Replica(dataTable, c))
+            .add(new Replica(dataTable, b))
+            .add(new Replica(dataTable, a));
+    assertEquals(key, DesignKey.of(m));
+  }
+
+  @Test
+  public void testDuplicationIsPartOfTheKey() {
+    int[] a = {0, 1, 2, 3, 4};
+    int[] b = {4, 3, 2, 1, 0};
+    assertNotEquals(DesignKey.of(new int[][]{a, a, b}), DesignKey.of(new int[][]{a, b, b}));
+    assertNotEquals(DesignKey.of(new int[][]{a, b}), DesignKey.of(new int[][]{a, b, b}));
+
+    DataTable dataTable = dataTable(5);
+    MultiReplicas m = new MultiReplicas()
+            .add(new Replica(dataTable, b))
+            .add(new Replica(dataTable, a))
+            .add(new Replica(dataTable, b));
+    assertEquals(DesignKey.of(new int[][]{b, a, b}), DesignKey.of(m));
+  }
+
+  private static DataTable dataTable(int colNum) {
+    Histogram[] histograms = new Histogram[colNum];
+    for (int c = 0; c < colNum; c++) {
+      List<Double> values = new ArrayList<>();
+      for (int i = 0; i < 100; i++) values.add((double) (i % (c + 2)));
+      histograms[c] = new Histogram(values, 10);
+    }
+    return new DataTable(histograms);
+  }
+}
@@ -0,0 +1,82 @@
+package searchall;
+
+import cost.CostModel;
+import cost.SelectivityTable;
+import datamodel.DataTable;
+import datamodel.RandomWorkload;
+import org.junit.Test;
+import query.Query;
+import replica.Replica;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestDynamicProgramming {
+
+  @Test
+  public void testSameCostAsSearchAll() {
+    for (int seed = 0; seed < 5; seed++) {
+      DataTable dataTable = RandomWorkload.dataTable(4 + seed % 3, 10000, seed);
+      Query[] queries = RandomWorkload.queries(dataTable, 30, seed);
+      SearchAll searchAll = new SearchAll(dataTable, queries);
+      searchAll.optimalReplica();
+      double expected = searchAll.getOptimalCost();
+
+      DynamicProgramming dp = new DynamicProgramming(dataTable, queries);
+      Replica replica = dp.optimalReplica();
+      assertEquals(expected, dp.getOptimalCost().doubleValue(), expected * 1e-9);
+      assertEquals(expected, CostModel.cost(replica, queries).doubleValue(), expected * 1e-9);
+    }
+  }
+
+  @Test
+  public void testFixedPrefixAndSuffix() {
+    DataTable dataTable = RandomWorkload.dataTable(6, 10000, 1);
+    Query[] queries = RandomWorkload.queries(dataTable, 30, 1);
+    int[] prefix = {3};
+    int[] suffix = {0, 5};
+    int[] order = new DynamicProgramming(dataTable, queries)
+            .withPrefix(prefix)
+            .withSuffix(suffix)
+            .optimalReplica()
+            .getOrder();
+    assertEquals(3, order[0]);
+    assertEquals(0, order[4]);
+    assertEquals(5, order[5]);
+
+    // the best of all orders with the same head and tail
+    double expected = Double.POSITIVE_INFINITY;
+    for (int[] perm : permutations(6))
+      if (perm[0] == 3 && perm[4] == 0 && perm[5] == 5)
+        expected = Math.min(expected, CostModel.cost(new Replica(dataTable, perm), queries).doubleValue());
+    assertEquals(expected, CostModel.cost(new Replica(dataTable, order), queries).doubleValue(), expected * 1e-9);
+  }
+
+  @Test
+  public void testCappedCost() {
+    DataTable dataTable = RandomWorkload.dataTable(5, 10000, 2);
+    Query[] queries = RandomWorkload.queries(dataTable, 30, 2);
+    SelectivityTable selectivityTable = new SelectivityTable(dataTable, queries);
+    // caps of queries on another order, as in the repair of a replica
+    double[] caps = selectivityTable.cost(new int[]{4, 3, 2, 1, 0});
+
+    double expected = Double.POSITIVE_INFINITY;
+    for (int[] perm : permutations(5)) expected = Math.min(expected, cappedCost(selectivityTable, perm, caps));
+    DynamicProgramming dp = new DynamicProgramming(dataTable, queries, selectivityTable).withCaps(caps);
+    int[] order = dp.optimalReplica().getOrder();
+    assertEquals(expected, dp.getOptimalCost().doubleValue(), expected * 1e-9);
+    assertEquals(expected, cappedCost(selectivityTable, order, caps), expected * 1e-9);
+  }
+
+  private static double cappedCost(SelectivityTable selectivityTable, int[] order, double[] caps) {
+    double[] cost = selectivityTable.cost(order);
+    double res = 0;
+    for (int q = 0; q < cost.length; q++) res += Math.min(cost[q], caps[q]);
+    return res;
+  }
+
+  private static List<int[]> permutations(int n) {
+    return new Permutation().getPerm(0, n - 1, n, false);
+  }
+}
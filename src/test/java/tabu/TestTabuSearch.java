@@ -0,0 +1,85 @@
+package tabu;
+
+import cost.CostModel;
+import datamodel.DataTable;
+import datamodel.RandomWorkload;
+import org.junit.Test;
+import query.Query;
+import replica.MultiReplicas;
+import replica.Replica;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestTabuSearch {
+
+  private static final int COL_NUM = 6;
+  private static final int REPLICA_NUM = 3;
+
+  @Test
+  public void testIncrementalCaskEffectCost() {
+    testIncrementalCost(true);
+  }
+
+  @Test
+  public void testIncrementalTotalCost() {
+    testIncrementalCost(false);
+  }
+
+  /**
+   * Apply random moves one after another, the cost of each move evaluated on the maintained cost matrix should
+   * equal the cost of the resulting solution evaluated from scratch.
+   */
+  private void testIncrementalCost(boolean isNewMethod) {
+    for (int seed = 0; seed < 3; seed++) {
+      DataTable dataTable = RandomWorkload.dataTable(COL_NUM, 10000, seed);
+      Query[] queries = RandomWorkload.queries(dataTable, 40, seed);
+      Random random = new Random(seed);
+
+      // two copies of a replica, so that the cask effect cost starts with a tie
+      int[] order = randomOrder(random);
+      MultiReplicas init = new MultiReplicas()
+              .add(new Replica(dataTable, order))
+              .add(new Replica(dataTable, order))
+              .add(new Replica(dataTable, randomOrder(random)));
+      List<int[]> orders = new ArrayList<>();
+      for (int[] o : init.getOrders()) orders.add(o.clone());
+
+      TabuSearch tabu = new TabuSearch(dataTable, queries, REPLICA_NUM, isNewMethod).initSolution(init);
+      tabu.initialize();
+      List<TabuSearch.Move> moves = tabu.getMoves(COL_NUM);
+      for (int k = 0; k < 100; k++) {
+        int r = random.nextInt(REPLICA_NUM);
+        TabuSearch.Move move = moves.get(random.nextInt(moves.size())).onReplica(r);
+        int[] newOrder = move.apply(orders.get(r));
+        double cost = tabu.evaluate(move, newOrder);
+
+        orders.set(r, newOrder);
+        double expected = cost(dataTable, queries, orders, isNewMethod);
+        assertEquals(expected, cost, expected * 1e-9);
+        tabu.applyMove(move);
+      }
+    }
+  }
+
+  private static double cost(DataTable dataTable, Query[] queries, List<int[]> orders, boolean isNewMethod) {
+    MultiReplicas multiReplicas = new MultiReplicas();
+    for (int[] order : orders) multiReplicas.add(new Replica(dataTable, order));
+    return isNewMethod
+            ? CostModel.cost(multiReplicas, queries).doubleValue()
+            : CostModel.totalCost(multiReplicas, queries).doubleValue();
+  }
+
+  private static int[] randomOrder(Random random) {
+    List<Integer> columns = new ArrayList<>();
+    for (int c = 0; c < COL_NUM; c++) columns.add(c);
+    Collections.shuffle(columns, random);
+    int[] order = new int[COL_NUM];
+    for (int c = 0; c < COL_NUM; c++) order[c] = columns.get(c);
+    return order;
+  }
+}